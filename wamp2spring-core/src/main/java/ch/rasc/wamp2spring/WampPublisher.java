@@ -110,7 +110,7 @@ public class WampPublisher {
 	public <T> void publishTo(Collection<Long> eligibleWampSessionIds, String topic,
 			@Nullable T... arguments) {
 		publish(publishMessageBuilder(topic).arguments(CollectionHelper.toList(arguments))
-				.eligible(CollectionHelper.toSet(eligibleWampSessionIds)).build());
+				.eligible(eligibleWampSessionIds).build());
 	}
 
 	/**
@@ -122,7 +122,7 @@ public class WampPublisher {
 	public <T> void publishTo(Collection<Long> eligibleWampSessionIds, String topic,
 			@Nullable Collection<T> arguments) {
 		publish(publishMessageBuilder(topic).arguments(CollectionHelper.toList(arguments))
-				.eligible(CollectionHelper.toSet(eligibleWampSessionIds)).build());
+				.eligible(eligibleWampSessionIds).build());
 	}
 
 	/**
@@ -135,7 +135,7 @@ public class WampPublisher {
 	public <T> void publishTo(Collection<Long> eligibleWampSessionIds, String topic,
 			@Nullable Map<String, T> arguments) {
 		publish(publishMessageBuilder(topic).arguments((Map<String, Object>) arguments)
-				.eligible(CollectionHelper.toSet(eligibleWampSessionIds)).build());
+				.eligible(eligibleWampSessionIds).build());
 	}
 
 	/**
@@ -188,7 +188,7 @@ public class WampPublisher {
 	public <T> void publishToAllExcept(Collection<Long> excludeWampSessionIds,
 			String topic, @Nullable T... arguments) {
 		publish(publishMessageBuilder(topic).arguments(CollectionHelper.toList(arguments))
-				.exclude(CollectionHelper.toSet(excludeWampSessionIds)).build());
+				.exclude(excludeWampSessionIds).build());
 	}
 
 	/**
@@ -202,7 +202,7 @@ public class WampPublisher {
 	public <T> void publishToAllExcept(Collection<Long> excludeWampSessionIds,
 			String topic, @Nullable Collection<T> arguments) {
 		publish(publishMessageBuilder(topic).arguments(CollectionHelper.toList(arguments))
-				.exclude(CollectionHelper.toSet(excludeWampSessionIds)).build());
+				.exclude(excludeWampSessionIds).build());
 	}
 
 	/**
@@ -216,7 +216,7 @@ public class WampPublisher {
 	public <T> void publishToAllExcept(Collection<Long> excludeWampSessionIds,
 			String topic, @Nullable Map<String, T> arguments) {
 		publish(publishMessageBuilder(topic).arguments((Map<String, Object>) arguments)
-				.exclude(CollectionHelper.toSet(excludeWampSessionIds)).build());
+				.exclude(excludeWampSessionIds).build());
 	}
 
 	/**
@@ -0,0 +1,44 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.config;
+
+/**
+ * Settings of the compact subscription registry. When enabled, a subscription stores
+ * its subscribers as a sorted array of WAMP session ids and all subscriptions of a
+ * session share one subscriber object. This reduces the heap use of applications with
+ * many subscriptions that have few subscribers each. Adding and removing a subscriber
+ * copies the array, so subscriptions with very large subscriber sets are cheaper in
+ * the default mode.
+ * <p>
+ * The compact registry is disabled by default
+ */
+public class CompactRegistry {
+
+	private boolean enabled = false;
+
+	public void enable() {
+		this.enabled = true;
+	}
+
+	public void disable() {
+		this.enabled = false;
+	}
+
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+}
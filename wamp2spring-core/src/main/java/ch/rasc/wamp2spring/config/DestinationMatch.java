@@ -18,6 +18,7 @@ package ch.rasc.wamp2spring.config;
 import org.springframework.lang.Nullable;
 
 import ch.rasc.wamp2spring.pubsub.MatchPolicy;
+import ch.rasc.wamp2spring.util.UriComponents;
 
 /**
  * Matches a topic or a procedure
@@ -39,7 +40,7 @@ public class DestinationMatch {
 		this.matchPolicy = matchPolicy;
 
 		if (matchPolicy == MatchPolicy.WILDCARD) {
-			this.wildcardComponents = destination.split("\\.");
+			this.wildcardComponents = UriComponents.split(destination);
 		}
 		else {
 			this.wildcardComponents = null;
@@ -69,8 +70,8 @@ public class DestinationMatch {
 			return queryDestination.startsWith(this.destination);
 		}
 
-		String[] components = queryDestination.split("\\.");
-		return matchesWildcard(components);
+		return this.wildcardComponents != null
+				&& UriComponents.matchesWildcard(this.wildcardComponents, queryDestination);
 	}
 
 	/**
@@ -0,0 +1,121 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.config;
+
+import ch.rasc.wamp2spring.message.EventBatchMessage;
+
+/**
+ * Settings of the optional outbound write batching. When enabled the transports
+ * collect the EVENT frames of a session and write them to the network together. A
+ * batch is flushed when it reaches {@link #getMaxMessages()} frames or
+ * {@link #getMaxBytes()} bytes, when the first frame of the batch is older than
+ * {@link #getLingerMillis()} or when a message other than an EVENT is sent to the
+ * session.
+ * <p>
+ * Batching is disabled by default
+ * <p>
+ * With {@link #setPackEvents(boolean)} the router additionally advertises the
+ * {@link EventBatchMessage#FEATURE} feature for the broker role. Sessions that request
+ * the feature for their subscriber role receive a batch as one
+ * {@link EventBatchMessage} instead of one frame per EVENT.
+ *
+ * <pre class="code">
+ * &#64;Override
+ * void configureOutboundBatching(OutboundBatching batching) {
+ * 	batching.enable();
+ * 	batching.setLingerMillis(2);
+ * }
+ * </pre>
+ */
+public class OutboundBatching {
+
+	private boolean enabled = false;
+
+	private int maxMessages = 32;
+
+	private int maxBytes = 16 * 1024;
+
+	private long lingerMillis = 5;
+
+	private boolean packEvents = false;
+
+	public void enable() {
+		this.enabled = true;
+	}
+
+	public void disable() {
+		this.enabled = false;
+	}
+
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	public int getMaxMessages() {
+		return this.maxMessages;
+	}
+
+	/**
+	 * Maximum number of frames in one batch. Default 32
+	 */
+	public void setMaxMessages(int maxMessages) {
+		if (maxMessages < 1) {
+			throw new IllegalArgumentException("maxMessages must be at least 1");
+		}
+		this.maxMessages = maxMessages;
+	}
+
+	public int getMaxBytes() {
+		return this.maxBytes;
+	}
+
+	/**
+	 * Number of bytes after which a batch is flushed. Default 16 KB
+	 */
+	public void setMaxBytes(int maxBytes) {
+		if (maxBytes < 1) {
+			throw new IllegalArgumentException("maxBytes must be at least 1");
+		}
+		this.maxBytes = maxBytes;
+	}
+
+	public long getLingerMillis() {
+		return this.lingerMillis;
+	}
+
+	/**
+	 * Maximum time in milliseconds a frame waits in a batch. Default 5 ms
+	 */
+	public void setLingerMillis(long lingerMillis) {
+		if (lingerMillis < 1) {
+			throw new IllegalArgumentException("lingerMillis must be at least 1");
+		}
+		this.lingerMillis = lingerMillis;
+	}
+
+	public boolean isPackEvents() {
+		return this.packEvents;
+	}
+
+	/**
+	 * Packs the events of a batch into one {@link EventBatchMessage} for the sessions
+	 * that negotiated the extension. Default false
+	 */
+	public void setPackEvents(boolean packEvents) {
+		this.packEvents = packEvents;
+	}
+
+}
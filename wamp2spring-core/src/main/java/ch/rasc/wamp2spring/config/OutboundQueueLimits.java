@@ -0,0 +1,175 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.config;
+
+import java.nio.file.Path;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * Settings of the optional bounded outbound queues. When enabled each session gets its
+ * own queue of at most {@link #getCapacity()} messages in front of the connection.
+ * Once a slow session fills up its queue the {@link OverflowPolicy} decides what
+ * happens with further EVENT messages. All other messages, like RESULT or INVOCATION,
+ * are never dropped.
+ * <p>
+ * {@link OverflowPolicy#SPILL} keeps all events. Events that do not fit into the
+ * queue are serialized and written to a memory mapped file of the session and read
+ * back in order when the connection catches up. The spill files are bounded per
+ * session ({@link #getMaxSpillBytesPerSession()}) and in total
+ * ({@link #getMaxSpillBytesTotal()}). A session that exceeds one of the bounds is
+ * closed.
+ * <p>
+ * Bounded queues are disabled by default
+ *
+ * <pre class="code">
+ * &#64;Override
+ * void configureOutboundQueueLimits(OutboundQueueLimits limits) {
+ * 	limits.enable();
+ * 	limits.setCapacity(500);
+ * 	limits.setOverflowPolicy(OverflowPolicy.CONFLATE);
+ * }
+ * </pre>
+ */
+public class OutboundQueueLimits {
+
+	public enum OverflowPolicy {
+		/**
+		 * Removes the oldest queued EVENT to make room for the new message
+		 */
+		DROP_OLDEST,
+
+		/**
+		 * Discards the new EVENT and keeps the queued ones
+		 */
+		DROP_NEWEST,
+
+		/**
+		 * Keeps only the latest EVENT per subscription and topic in the queue. A new
+		 * EVENT replaces a queued EVENT of the same subscription and topic and takes
+		 * over its position. When the queue is full with EVENTs of other topics the
+		 * oldest EVENT is removed.
+		 */
+		CONFLATE,
+
+		/**
+		 * Closes the session when the queue is full. The capacity acts as the maximum
+		 * lag of the session.
+		 */
+		DISCONNECT,
+
+		/**
+		 * Writes the events that do not fit into the queue to a memory mapped spill file
+		 * of the session. Once the session has spilled events all further events are
+		 * spilled until the file is drained, so the events keep their order. Messages
+		 * other than EVENTs stay in the queue and may overtake spilled events. The
+		 * session is closed when the spill limits are exceeded.
+		 */
+		SPILL
+	}
+
+	private boolean enabled = false;
+
+	private int capacity = 1024;
+
+	private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+	@Nullable
+	private Path spillDirectory;
+
+	private int maxSpillBytesPerSession = 64 * 1024 * 1024;
+
+	private long maxSpillBytesTotal = 1024L * 1024 * 1024;
+
+	public void enable() {
+		this.enabled = true;
+	}
+
+	public void disable() {
+		this.enabled = false;
+	}
+
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	/**
+	 * Maximum number of queued messages of one session. Default 1024
+	 */
+	public void setCapacity(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be at least 1");
+		}
+		this.capacity = capacity;
+	}
+
+	public OverflowPolicy getOverflowPolicy() {
+		return this.overflowPolicy;
+	}
+
+	/**
+	 * What happens when a queue is full. Default {@link OverflowPolicy#DROP_OLDEST}
+	 */
+	public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	@Nullable
+	public Path getSpillDirectory() {
+		return this.spillDirectory;
+	}
+
+	/**
+	 * Directory of the spill files. Default is the temporary directory of the JVM
+	 */
+	public void setSpillDirectory(@Nullable Path spillDirectory) {
+		this.spillDirectory = spillDirectory;
+	}
+
+	public int getMaxSpillBytesPerSession() {
+		return this.maxSpillBytesPerSession;
+	}
+
+	/**
+	 * Size of the spill file of one session. Default 64 MB
+	 */
+	public void setMaxSpillBytesPerSession(int maxSpillBytesPerSession) {
+		if (maxSpillBytesPerSession < 1) {
+			throw new IllegalArgumentException(
+					"maxSpillBytesPerSession must be at least 1");
+		}
+		this.maxSpillBytesPerSession = maxSpillBytesPerSession;
+	}
+
+	public long getMaxSpillBytesTotal() {
+		return this.maxSpillBytesTotal;
+	}
+
+	/**
+	 * Maximum number of bytes in the spill files of all sessions. Default 1 GB
+	 */
+	public void setMaxSpillBytesTotal(long maxSpillBytesTotal) {
+		if (maxSpillBytesTotal < 1) {
+			throw new IllegalArgumentException("maxSpillBytesTotal must be at least 1");
+		}
+		this.maxSpillBytesTotal = maxSpillBytesTotal;
+	}
+
+}
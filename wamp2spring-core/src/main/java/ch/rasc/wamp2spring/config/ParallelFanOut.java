@@ -0,0 +1,99 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.config;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * Settings of the parallel fan-out of publications. When enabled, the deliveries to a
+ * subscription with at least {@link #getThreshold()} subscribers are split into
+ * {@link #getParallelism()} chunks that are processed on the {@link #getExecutor()}.
+ * A subscriber is always assigned to the same chunk, so the events of a subscriber
+ * keep the order of the publications.
+ * <p>
+ * Parallel fan-out is disabled by default
+ */
+public class ParallelFanOut {
+
+	private boolean enabled = false;
+
+	private int threshold = 10_000;
+
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+
+	@Nullable
+	private Executor executor;
+
+	public void enable() {
+		this.enabled = true;
+	}
+
+	public void disable() {
+		this.enabled = false;
+	}
+
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	public int getThreshold() {
+		return this.threshold;
+	}
+
+	/**
+	 * Number of subscribers from which the deliveries of a subscription are split.
+	 * Default 10000
+	 */
+	public void setThreshold(int threshold) {
+		if (threshold < 1) {
+			throw new IllegalArgumentException("threshold must be at least 1");
+		}
+		this.threshold = threshold;
+	}
+
+	public int getParallelism() {
+		return this.parallelism;
+	}
+
+	/**
+	 * Number of chunks a large subscriber set is split into. Default is the number of
+	 * processors
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be at least 1");
+		}
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Returns the executor of the chunks. Default is the common {@link ForkJoinPool}
+	 */
+	public Executor getExecutor() {
+		if (this.executor != null) {
+			return this.executor;
+		}
+		return ForkJoinPool.commonPool();
+	}
+
+	public void setExecutor(@Nullable Executor executor) {
+		this.executor = executor;
+	}
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.config;
+
+/**
+ * Groups the optional settings of the WebSocket transports, so the constructors of
+ * the transport handlers do not need a new overload for every setting.
+ * <p>
+ * {@link WampConfiguration} creates one instance from the
+ * {@link WampConfigurer#configureOutboundBatching(OutboundBatching)} and
+ * {@link WampConfigurer#configureOutboundQueueLimits(OutboundQueueLimits)} callbacks.
+ * Code that creates the handlers itself only has to set what it wants to change.
+ *
+ * <pre class="code">
+ * TransportSettings settings = new TransportSettings();
+ * settings.getOutboundBatching().enable();
+ * new WampSubProtocolHandler(codecs, clientInboundChannel, sessionIdAllocator,
+ * 		features, settings);
+ * </pre>
+ */
+public class TransportSettings {
+
+	private OutboundBatching outboundBatching = new OutboundBatching();
+
+	private OutboundQueueLimits outboundQueueLimits = new OutboundQueueLimits();
+
+	public OutboundBatching getOutboundBatching() {
+		return this.outboundBatching;
+	}
+
+	public void setOutboundBatching(OutboundBatching outboundBatching) {
+		this.outboundBatching = outboundBatching;
+	}
+
+	public OutboundQueueLimits getOutboundQueueLimits() {
+		return this.outboundQueueLimits;
+	}
+
+	public void setOutboundQueueLimits(OutboundQueueLimits outboundQueueLimits) {
+		this.outboundQueueLimits = outboundQueueLimits;
+	}
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.config;
+
+import ch.rasc.wamp2spring.util.UriDictionary;
+
+/**
+ * Settings of the {@link UriDictionary} of the application context. The decoders
+ * replace the topic and procedure URIs of incoming messages with canonical instances
+ * from the dictionary. The dictionary holds at most {@link #getMaximumSize()} URIs,
+ * URIs longer than {@link #getMaxUriLength()} characters are never added.
+ * <p>
+ * Interning is enabled by default
+ *
+ * <pre class="code">
+ * &#64;Override
+ * void configureUriInterning(UriInterning uriInterning) {
+ * 	uriInterning.setMaximumSize(50_000);
+ * }
+ * </pre>
+ */
+public class UriInterning {
+
+	private boolean enabled = true;
+
+	private int maximumSize = 10_000;
+
+	private int maxUriLength = 256;
+
+	public void enable() {
+		this.enabled = true;
+	}
+
+	public void disable() {
+		this.enabled = false;
+	}
+
+	public boolean isEnabled() {
+		return this.enabled;
+	}
+
+	public int getMaximumSize() {
+		return this.maximumSize;
+	}
+
+	public void setMaximumSize(int maximumSize) {
+		this.maximumSize = maximumSize;
+	}
+
+	public int getMaxUriLength() {
+		return this.maxUriLength;
+	}
+
+	public void setMaxUriLength(int maxUriLength) {
+		this.maxUriLength = maxUriLength;
+	}
+
+}
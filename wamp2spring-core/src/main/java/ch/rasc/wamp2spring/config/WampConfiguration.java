@@ -42,6 +42,8 @@ import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 
 import ch.rasc.wamp2spring.WampPublisher;
+import ch.rasc.wamp2spring.message.JacksonWampCodec;
+import ch.rasc.wamp2spring.message.WampCodec;
 import ch.rasc.wamp2spring.pubsub.EventStore;
 import ch.rasc.wamp2spring.pubsub.MemoryEventStore;
 import ch.rasc.wamp2spring.pubsub.PubSubMessageHandler;
@@ -49,12 +51,32 @@ import ch.rasc.wamp2spring.pubsub.SubscriptionRegistry;
 import ch.rasc.wamp2spring.rpc.ProcedureRegistry;
 import ch.rasc.wamp2spring.rpc.RpcMessageHandler;
 import ch.rasc.wamp2spring.util.HandlerMethodService;
+import ch.rasc.wamp2spring.util.SessionIdAllocator;
+import ch.rasc.wamp2spring.util.UriDictionary;
 
 public class WampConfiguration {
 
 	@Nullable
 	protected ConversionService internalConversionService;
 
+	@Nullable
+	protected List<WampCodec> internalWampCodecs;
+
+	@Nullable
+	protected OutboundBatching internalOutboundBatching;
+
+	@Nullable
+	protected ParallelFanOut internalParallelFanOut;
+
+	@Nullable
+	protected OutboundQueueLimits internalOutboundQueueLimits;
+
+	@Nullable
+	protected CompactRegistry internalCompactRegistry;
+
+	@Nullable
+	protected UriInterning internalUriInterning;
+
 	protected final List<WampConfigurer> configurers = new ArrayList<>();
 
 	protected final Features features = new Features();
@@ -189,7 +211,7 @@ public class WampConfiguration {
 			PubSubMessageHandler pubSubMessageHandler = new PubSubMessageHandler(
 					clientInboundChannel(), brokerChannel(), clientOutboundChannel(),
 					subscriptionRegistry(), handlerMethodService(applicationContext),
-					this.features, eventStore());
+					this.features, eventStore(), parallelFanOut());
 			return pubSubMessageHandler;
 		}
 		return new NoOpMessageHandler();
@@ -197,7 +219,7 @@ public class WampConfiguration {
 
 	@Bean
 	public SubscriptionRegistry subscriptionRegistry() {
-		return new SubscriptionRegistry();
+		return new SubscriptionRegistry(compactRegistry().isEnabled());
 	}
 
 	@Bean
@@ -206,6 +228,7 @@ public class WampConfiguration {
 			RpcMessageHandler rpcMessageHandler = new RpcMessageHandler(
 					clientInboundChannel(), clientOutboundChannel(), procedureRegistry(),
 					handlerMethodService(applicationContext), this.features);
+			rpcMessageHandler.setUriDictionary(uriDictionary());
 			return rpcMessageHandler;
 		}
 		return new NoOpMessageHandler();
@@ -230,6 +253,139 @@ public class WampConfiguration {
 		// nothing here
 	}
 
+	/**
+	 * Returns the codecs the transports offer to the clients. The order of the list is
+	 * the order of preference of the sub-protocols during the handshake.
+	 */
+	protected List<WampCodec> wampCodecs() {
+		if (this.internalWampCodecs == null) {
+			List<WampCodec> codecs = JacksonWampCodec.defaultCodecs(jsonJsonFactory(),
+					msgpackJsonFactory(), cborJsonFactory(), smileJsonFactory(),
+					uriDictionary());
+
+			configureCodecs(codecs);
+			for (WampConfigurer wc : this.configurers) {
+				wc.configureCodecs(codecs);
+			}
+			this.internalWampCodecs = codecs;
+		}
+		return this.internalWampCodecs;
+	}
+
+	protected void configureCodecs(@SuppressWarnings("unused") List<WampCodec> codecs) {
+		// nothing here
+	}
+
+	/**
+	 * Returns the settings of the outbound write batching of the transports
+	 */
+	protected OutboundBatching outboundBatching() {
+		if (this.internalOutboundBatching == null) {
+			OutboundBatching batching = new OutboundBatching();
+			configureOutboundBatching(batching);
+			for (WampConfigurer wc : this.configurers) {
+				wc.configureOutboundBatching(batching);
+			}
+			this.internalOutboundBatching = batching;
+		}
+		return this.internalOutboundBatching;
+	}
+
+	protected void configureOutboundBatching(
+			@SuppressWarnings("unused") OutboundBatching batching) {
+		// nothing here
+	}
+
+	/**
+	 * Returns the settings of the bounded per session outbound queues of the transports
+	 */
+	protected OutboundQueueLimits outboundQueueLimits() {
+		if (this.internalOutboundQueueLimits == null) {
+			OutboundQueueLimits limits = new OutboundQueueLimits();
+			configureOutboundQueueLimits(limits);
+			for (WampConfigurer wc : this.configurers) {
+				wc.configureOutboundQueueLimits(limits);
+			}
+			this.internalOutboundQueueLimits = limits;
+		}
+		return this.internalOutboundQueueLimits;
+	}
+
+	protected void configureOutboundQueueLimits(
+			@SuppressWarnings("unused") OutboundQueueLimits limits) {
+		// nothing here
+	}
+
+	/**
+	 * Returns the settings the transport handlers are created with
+	 */
+	protected TransportSettings transportSettings() {
+		TransportSettings settings = new TransportSettings();
+		settings.setOutboundBatching(outboundBatching());
+		settings.setOutboundQueueLimits(outboundQueueLimits());
+		return settings;
+	}
+
+	/**
+	 * Returns the settings of the parallel fan-out of publications
+	 */
+	protected ParallelFanOut parallelFanOut() {
+		if (this.internalParallelFanOut == null) {
+			ParallelFanOut fanOut = new ParallelFanOut();
+			configureParallelFanOut(fanOut);
+			for (WampConfigurer wc : this.configurers) {
+				wc.configureParallelFanOut(fanOut);
+			}
+			this.internalParallelFanOut = fanOut;
+		}
+		return this.internalParallelFanOut;
+	}
+
+	protected void configureParallelFanOut(
+			@SuppressWarnings("unused") ParallelFanOut fanOut) {
+		// nothing here
+	}
+
+	/**
+	 * Returns the settings of the compact subscription registry
+	 */
+	protected CompactRegistry compactRegistry() {
+		if (this.internalCompactRegistry == null) {
+			CompactRegistry compactRegistry = new CompactRegistry();
+			configureCompactRegistry(compactRegistry);
+			for (WampConfigurer wc : this.configurers) {
+				wc.configureCompactRegistry(compactRegistry);
+			}
+			this.internalCompactRegistry = compactRegistry;
+		}
+		return this.internalCompactRegistry;
+	}
+
+	protected void configureCompactRegistry(
+			@SuppressWarnings("unused") CompactRegistry compactRegistry) {
+		// nothing here
+	}
+
+	/**
+	 * Returns the settings of the URI dictionary
+	 */
+	protected UriInterning uriInterning() {
+		if (this.internalUriInterning == null) {
+			UriInterning uriInterning = new UriInterning();
+			configureUriInterning(uriInterning);
+			for (WampConfigurer wc : this.configurers) {
+				wc.configureUriInterning(uriInterning);
+			}
+			this.internalUriInterning = uriInterning;
+		}
+		return this.internalUriInterning;
+	}
+
+	protected void configureUriInterning(
+			@SuppressWarnings("unused") UriInterning uriInterning) {
+		// nothing here
+	}
+
 	protected ConversionService conversionService() {
 		if (this.internalConversionService == null) {
 			this.internalConversionService = new DefaultFormattingConversionService();
@@ -244,6 +400,25 @@ public class WampConfiguration {
 		return this.eventStore;
 	}
 
+	/**
+	 * The dictionary of canonical topic and procedure URIs that is shared by the
+	 * decoders and the RPC handler of this application context
+	 */
+	@Bean
+	public UriDictionary uriDictionary() {
+		UriInterning uriInterning = uriInterning();
+		if (uriInterning.isEnabled()) {
+			return new UriDictionary(uriInterning.getMaximumSize(),
+					uriInterning.getMaxUriLength());
+		}
+		return UriDictionary.NONE;
+	}
+
+	@Bean
+	public SessionIdAllocator sessionIdAllocator() {
+		return new SessionIdAllocator();
+	}
+
 	@Bean
 	public ProcedureRegistry procedureRegistry() {
 		return new ProcedureRegistry(this.features);
@@ -20,6 +20,8 @@ import java.util.List;
 import org.springframework.messaging.handler.invocation.HandlerMethodArgumentResolver;
 import org.springframework.messaging.support.AbstractMessageChannel;
 
+import ch.rasc.wamp2spring.message.WampCodec;
+
 /**
  * Defines methods for configuring WAMP support.
  *
@@ -47,6 +49,67 @@ public interface WampConfigurer {
 		// nothing here
 	}
 
+	/**
+	 * Configures the codecs of the supported WebSocket sub-protocols. The list initially
+	 * contains the codecs for wamp.2.msgpack, wamp.2.json, wamp.2.cbor and wamp.2.smile.
+	 * Codecs can be added, replaced or removed. The order of the list is the order of
+	 * preference during the handshake.
+	 * @param codecs the codecs
+	 */
+	default void configureCodecs(@SuppressWarnings("unused") List<WampCodec> codecs) {
+		// nothing here
+	}
+
+	/**
+	 * Configures the batching of outbound EVENT frames. Batching is disabled by default.
+	 * @param batching the batching settings
+	 */
+	default void configureOutboundBatching(
+			@SuppressWarnings("unused") OutboundBatching batching) {
+		// nothing here
+	}
+
+	/**
+	 * Configures the bounded outbound queues of the sessions and what happens to slow
+	 * sessions that fill up their queue. Bounded queues are disabled by default.
+	 * @param limits the queue settings
+	 */
+	default void configureOutboundQueueLimits(
+			@SuppressWarnings("unused") OutboundQueueLimits limits) {
+		// nothing here
+	}
+
+	/**
+	 * Configures the parallel fan-out of publications to large subscriber sets.
+	 * Parallel fan-out is disabled by default.
+	 * @param fanOut the fan-out settings
+	 */
+	default void configureParallelFanOut(
+			@SuppressWarnings("unused") ParallelFanOut fanOut) {
+		// nothing here
+	}
+
+	/**
+	 * Configures the compact representation of the subscription registry for
+	 * applications with many subscriptions. The compact registry is disabled by
+	 * default.
+	 * @param compactRegistry the compact registry settings
+	 */
+	default void configureCompactRegistry(
+			@SuppressWarnings("unused") CompactRegistry compactRegistry) {
+		// nothing here
+	}
+
+	/**
+	 * Configures the size and the URI length limit of the dictionary of canonical topic
+	 * and procedure URIs. Interning is enabled by default.
+	 * @param uriInterning the dictionary settings
+	 */
+	default void configureUriInterning(
+			@SuppressWarnings("unused") UriInterning uriInterning) {
+		// nothing here
+	}
+
 	/**
 	 * Configures wamp2spring features
 	 * <p>
@@ -20,6 +20,7 @@ import org.springframework.messaging.Message;
 import org.springframework.messaging.handler.invocation.HandlerMethodArgumentResolver;
 
 import ch.rasc.wamp2spring.annotation.WampSessionId;
+import ch.rasc.wamp2spring.message.WampMessage;
 import ch.rasc.wamp2spring.message.WampMessageHeader;
 
 /**
@@ -36,6 +37,9 @@ public class WampSessionIdMethodArgumentResolver
 	@Override
 	public Object resolveArgument(MethodParameter parameter, Message<?> message)
 			throws Exception {
+		if (message instanceof WampMessage) {
+			return ((WampMessage) message).getWampSessionId();
+		}
 		return message.getHeaders().get(WampMessageHeader.WAMP_SESSION_ID.name());
 	}
 
@@ -25,6 +25,8 @@ import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 
+import ch.rasc.wamp2spring.util.UriDictionary;
+
 /**
  * [CALL, Request|id, Options|dict, Procedure|uri]
  *
@@ -72,29 +74,40 @@ public class CallMessage extends WampMessage {
 	}
 
 	public static CallMessage deserialize(JsonParser jp) throws IOException {
+		return deserialize(jp, UriDictionary.NONE);
+	}
+
+	static CallMessage deserialize(JsonParser jp, UriDictionary uriDictionary)
+			throws IOException {
 		jp.nextToken();
 		long request = jp.getLongValue();
 
 		boolean discloseMe = false;
-		jp.nextToken();
-		Map<String, Object> options = ParserUtil.readObject(jp);
-		if (options != null) {
-			discloseMe = (boolean) options.getOrDefault("disclose_me", false);
+		if (jp.nextToken() == JsonToken.START_OBJECT) {
+			String option;
+			while ((option = ParserUtil.nextKey(jp)) != null) {
+				if (option.equals("disclose_me")) {
+					discloseMe = ParserUtil.readBoolean(jp, false);
+				}
+				else {
+					jp.skipChildren();
+				}
+			}
 		}
 
 		jp.nextToken();
-		String procedure = jp.getValueAsString();
+		String procedure = uriDictionary.intern(jp.getValueAsString());
 
 		List<Object> arguments = null;
 		JsonToken token = jp.nextToken();
 		if (token == JsonToken.START_ARRAY) {
-			arguments = ParserUtil.readArray(jp);
+			arguments = LazyArgumentList.read(jp);
 		}
 
 		Map<String, Object> argumentsKw = null;
 		token = jp.nextToken();
 		if (token == JsonToken.START_OBJECT) {
-			argumentsKw = ParserUtil.readObject(jp);
+			argumentsKw = LazyArgumentMap.read(jp);
 		}
 
 		return new CallMessage(request, procedure, arguments, argumentsKw, discloseMe);
@@ -125,7 +125,7 @@ public class ErrorMessage extends WampMessage {
 		long request = jp.getLongValue();
 
 		jp.nextToken();
-		ParserUtil.readObject(jp);
+		jp.skipChildren();
 
 		jp.nextToken();
 		String error = jp.getValueAsString();
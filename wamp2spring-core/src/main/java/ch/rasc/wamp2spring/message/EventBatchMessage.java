@@ -0,0 +1,144 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.message;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Container of several EVENT messages for the same session. Only sent to sessions
+ * that requested the {@link #FEATURE} feature for the subscriber role in their HELLO
+ * and whose router advertised it for the broker role in the WELCOME.
+ * <p>
+ * [[EVENT, ...], [EVENT, ...], ...]
+ * <p>
+ * With the JSON codec the batch is written by concatenating the events, and an event
+ * that shares its encoding with the other receivers (see
+ * {@link EventMessage#copyForReceiver(String)}) is copied from the shared bytes instead
+ * of being serialized again. The binary formats serialize every event of a batch for
+ * each receiver: their generators cannot embed raw values, and Smile encodes repeated
+ * names and values as back references to earlier parts of the same frame.
+ */
+public class EventBatchMessage extends WampMessage {
+
+	/**
+	 * Name of the extension in the features of the subscriber and broker roles
+	 */
+	public static final String FEATURE = "event_batching";
+
+	static final int CODE = -2;
+
+	private final List<EventMessage> events;
+
+	public EventBatchMessage(List<EventMessage> events) {
+		super(CODE);
+		this.events = Collections.unmodifiableList(events);
+	}
+
+	/**
+	 * Reads the events of a batch. The parser is positioned on the start of the first
+	 * event.
+	 */
+	static EventBatchMessage deserialize(JsonParser jp) throws IOException {
+		List<EventMessage> events = new ArrayList<>();
+		JsonToken token = jp.currentToken();
+		while (token == JsonToken.START_ARRAY) {
+			if (jp.nextToken() != JsonToken.VALUE_NUMBER_INT
+					|| jp.getValueAsInt() != EventMessage.CODE) {
+				throw new IOException("Batch contains a message that is not an EVENT");
+			}
+			events.add(EventMessage.deserialize(jp));
+			if (jp.currentToken() != JsonToken.END_ARRAY) {
+				jp.nextToken();
+			}
+			token = jp.nextToken();
+		}
+		return new EventBatchMessage(events);
+	}
+
+	@Override
+	public void serialize(JsonGenerator generator) throws IOException {
+		for (EventMessage event : this.events) {
+			generator.writeStartArray();
+			event.serialize(generator);
+			generator.writeEndArray();
+		}
+	}
+
+	/**
+	 * Writes the batch as JSON into the stream, copying the shared encodings of the
+	 * events
+	 */
+	void writeJson(JacksonWampCodec codec, OutputStream out) throws IOException {
+		JsonFactory jsonFactory = codec.getJsonFactory();
+		out.write('[');
+		for (int i = 0; i < this.events.size(); i++) {
+			if (i > 0) {
+				out.write(',');
+			}
+			EventMessage event = this.events.get(i);
+			if (event.isEncodingShared()) {
+				out.write(event.serialize(codec));
+			}
+			else {
+				event.serialize(jsonFactory, out);
+			}
+		}
+		out.write(']');
+	}
+
+	/**
+	 * Writes the batch as JSON text into the writer, copying the shared encodings of the
+	 * events
+	 */
+	void writeJson(JacksonWampCodec codec, Writer out) throws IOException {
+		JsonFactory jsonFactory = codec.getJsonFactory();
+		out.write('[');
+		for (int i = 0; i < this.events.size(); i++) {
+			if (i > 0) {
+				out.write(',');
+			}
+			EventMessage event = this.events.get(i);
+			if (event.isEncodingShared()) {
+				out.write(new String(event.serialize(codec), StandardCharsets.UTF_8));
+			}
+			else {
+				event.serialize(jsonFactory, out);
+			}
+		}
+		out.write(']');
+	}
+
+	public List<EventMessage> getEvents() {
+		return this.events;
+	}
+
+	@Override
+	public String toString() {
+		return "EventBatchMessage [events=" + this.events + "]";
+	}
+
+}
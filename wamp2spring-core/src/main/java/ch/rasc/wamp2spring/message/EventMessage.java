@@ -78,6 +78,23 @@ public class EventMessage extends WampMessage {
 		}
 	}
 
+	/**
+	 * Creates a copy of this event for another receiver. The copy shares the serialized
+	 * forms with this message, so an event delivered to many subscribers is only
+	 * serialized once per wire format.
+	 *
+	 * @param receiverWebSocketSessionId the WebSocket session id of the receiver
+	 * @return the copy of this event
+	 */
+	public EventMessage copyForReceiver(String receiverWebSocketSessionId) {
+		EventMessage copy = new EventMessage(this.subscriptionId, this.publicationId,
+				this.topic, this.publisher, this.retained, this.arguments,
+				this.argumentsKw);
+		copy.setReceiverWebSocketSessionId(receiverWebSocketSessionId);
+		copy.shareEncodings(this);
+		return copy;
+	}
+
 	public static EventMessage deserialize(JsonParser jp) throws IOException {
 		jp.nextToken();
 		long subscription = jp.getLongValue();
@@ -85,25 +102,37 @@ public class EventMessage extends WampMessage {
 		jp.nextToken();
 		long publication = jp.getLongValue();
 
-		jp.nextToken();
 		String topic = null;
 		Number publisher = null;
 		boolean retained = false;
-		Map<String, Object> details = ParserUtil.readObject(jp);
-		if (details != null) {
-			topic = (String) details.get("topic");
-			publisher = (Number) details.get("publisher");
-			retained = (boolean) details.getOrDefault("retained", false);
+		if (jp.nextToken() == JsonToken.START_OBJECT) {
+			String key;
+			while ((key = ParserUtil.nextKey(jp)) != null) {
+				switch (key) {
+				case "topic":
+					topic = ParserUtil.readString(jp);
+					break;
+				case "publisher":
+					publisher = ParserUtil.readNumber(jp);
+					break;
+				case "retained":
+					retained = ParserUtil.readBoolean(jp, false);
+					break;
+				default:
+					jp.skipChildren();
+				}
+			}
 		}
 
 		List<Object> arguments = null;
 		JsonToken token = jp.nextToken();
 		if (token == JsonToken.START_ARRAY) {
 			arguments = ParserUtil.readArray(jp);
+			token = jp.nextToken();
 		}
 
+		// stops at the end of the message, so events can be read from a batch
 		Map<String, Object> argumentsKw = null;
-		token = jp.nextToken();
 		if (token == JsonToken.START_OBJECT) {
 			argumentsKw = ParserUtil.readObject(jp);
 		}
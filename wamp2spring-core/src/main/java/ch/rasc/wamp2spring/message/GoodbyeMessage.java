@@ -16,12 +16,12 @@
 package ch.rasc.wamp2spring.message;
 
 import java.io.IOException;
-import java.util.Map;
 
 import org.springframework.lang.Nullable;
 
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 
 import ch.rasc.wamp2spring.WampError;
 
@@ -54,10 +54,16 @@ public class GoodbyeMessage extends WampMessage {
 	public static GoodbyeMessage deserialize(JsonParser jp) throws IOException {
 		String msg = null;
 
-		jp.nextToken();
-		Map<String, Object> details = ParserUtil.readObject(jp);
-		if (details != null) {
-			msg = (String) details.get("message");
+		if (jp.nextToken() == JsonToken.START_OBJECT) {
+			String key;
+			while ((key = ParserUtil.nextKey(jp)) != null) {
+				if (key.equals("message")) {
+					msg = ParserUtil.readString(jp);
+				}
+				else {
+					jp.skipChildren();
+				}
+			}
 		}
 
 		jp.nextToken();
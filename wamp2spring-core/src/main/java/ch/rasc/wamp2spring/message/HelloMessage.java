@@ -100,6 +100,19 @@ public class HelloMessage extends WampMessage {
 		return this.roles;
 	}
 
+	/**
+	 * Returns true if the client announced the feature for the role
+	 */
+	public boolean hasFeature(String role, String feature) {
+		for (WampRole wampRole : this.roles) {
+			if (wampRole.getRole().equals(role)
+					&& wampRole.getFeatures().contains(feature)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	@Override
 	public String toString() {
 		return "HelloMessage [realm=" + this.realm + ", roles=" + this.roles + "]";
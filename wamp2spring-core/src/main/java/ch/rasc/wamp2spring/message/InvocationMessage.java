@@ -82,11 +82,17 @@ public class InvocationMessage extends WampMessage {
 		jp.nextToken();
 		long registration = jp.getLongValue();
 
-		jp.nextToken();
 		Number caller = null;
-		Map<String, Object> details = ParserUtil.readObject(jp);
-		if (details != null) {
-			caller = (Number) details.get("caller");
+		if (jp.nextToken() == JsonToken.START_OBJECT) {
+			String key;
+			while ((key = ParserUtil.nextKey(jp)) != null) {
+				if (key.equals("caller")) {
+					caller = ParserUtil.readNumber(jp);
+				}
+				else {
+					jp.skipChildren();
+				}
+			}
 		}
 
 		List<Object> arguments = null;
@@ -0,0 +1,149 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.message;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.lang.Nullable;
+
+import com.fasterxml.jackson.core.JsonFactory;
+
+import ch.rasc.wamp2spring.util.UriDictionary;
+
+/**
+ * {@link WampCodec} backed by a Jackson {@link JsonFactory}. Used for the built-in
+ * JSON, MessagePack, CBOR and Smile sub-protocols.
+ * <p>
+ * The decoder replaces the topic and procedure URIs of the decoded messages with the
+ * canonical instances of its {@link UriDictionary}.
+ */
+public class JacksonWampCodec implements WampCodec {
+
+	private final String protocol;
+
+	private final JsonFactory jsonFactory;
+
+	private final boolean binary;
+
+	private final boolean json;
+
+	private final UriDictionary uriDictionary;
+
+	public JacksonWampCodec(String protocol, JsonFactory jsonFactory, boolean binary) {
+		this(protocol, jsonFactory, binary, UriDictionary.NONE);
+	}
+
+	public JacksonWampCodec(String protocol, JsonFactory jsonFactory, boolean binary,
+			UriDictionary uriDictionary) {
+		this.protocol = protocol;
+		this.jsonFactory = jsonFactory;
+		this.binary = binary;
+		this.uriDictionary = uriDictionary;
+		this.json = JsonFactory.FORMAT_NAME_JSON.equals(jsonFactory.getFormatName());
+	}
+
+	/**
+	 * Returns the codecs of the four built-in sub-protocols in their default order of
+	 * preference: MessagePack, JSON, CBOR and Smile.
+	 */
+	public static List<WampCodec> defaultCodecs(JsonFactory jsonFactory,
+			JsonFactory msgpackFactory, JsonFactory cborFactory, JsonFactory smileFactory) {
+		return defaultCodecs(jsonFactory, msgpackFactory, cborFactory, smileFactory,
+				UriDictionary.NONE);
+	}
+
+	/**
+	 * Returns the codecs of the four built-in sub-protocols that share the
+	 * {@link UriDictionary}
+	 */
+	public static List<WampCodec> defaultCodecs(JsonFactory jsonFactory,
+			JsonFactory msgpackFactory, JsonFactory cborFactory, JsonFactory smileFactory,
+			UriDictionary uriDictionary) {
+		List<WampCodec> codecs = new ArrayList<>();
+		codecs.add(new JacksonWampCodec(WampCodec.MSGPACK_PROTOCOL, msgpackFactory, true,
+				uriDictionary));
+		codecs.add(new JacksonWampCodec(WampCodec.JSON_PROTOCOL, jsonFactory, false,
+				uriDictionary));
+		codecs.add(new JacksonWampCodec(WampCodec.CBOR_PROTOCOL, cborFactory, true,
+				uriDictionary));
+		codecs.add(new JacksonWampCodec(WampCodec.SMILE_PROTOCOL, smileFactory, true,
+				uriDictionary));
+		return codecs;
+	}
+
+	@Override
+	public String getProtocol() {
+		return this.protocol;
+	}
+
+	@Override
+	public boolean isBinary() {
+		return this.binary;
+	}
+
+	public JsonFactory getJsonFactory() {
+		return this.jsonFactory;
+	}
+
+	@Override
+	@Nullable
+	public WampMessage decode(ByteBuffer payload) throws IOException {
+		return WampMessage.deserialize(this.jsonFactory, payload, this.uriDictionary);
+	}
+
+	@Override
+	@Nullable
+	public WampMessage decode(InputStream payload) throws IOException {
+		return WampMessage.deserialize(this.jsonFactory, payload, this.uriDictionary);
+	}
+
+	@Override
+	@Nullable
+	public WampMessage decode(String payload) throws IOException {
+		return WampMessage.deserialize(this.jsonFactory, payload, this.uriDictionary);
+	}
+
+	@Override
+	public void encode(WampMessage message, OutputStream out) throws IOException {
+		if (this.json && message instanceof EventBatchMessage) {
+			((EventBatchMessage) message).writeJson(this, out);
+			return;
+		}
+		message.serialize(this.jsonFactory, out);
+	}
+
+	@Override
+	public void encode(WampMessage message, Writer out) throws IOException {
+		if (this.json && message instanceof EventBatchMessage) {
+			((EventBatchMessage) message).writeJson(this, out);
+			return;
+		}
+		message.serialize(this.jsonFactory, out);
+	}
+
+	@Override
+	public String toString() {
+		return "JacksonWampCodec [protocol=" + this.protocol + ", binary=" + this.binary
+				+ "]";
+	}
+
+}
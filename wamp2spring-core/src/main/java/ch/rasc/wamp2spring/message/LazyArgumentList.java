@@ -0,0 +1,131 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.message;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.lang.Nullable;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+/**
+ * Immutable Arguments list of a decoded message. Dictionaries and lists in the arguments
+ * are kept as buffered tokens and each one is only turned into a map or list when its
+ * position is read, so reading a scalar argument does not decode the other arguments.
+ * A handler method binds them straight into its parameter types with
+ * {@link #bind(int, ObjectMapper, JavaType)} instead.
+ */
+public final class LazyArgumentList extends AbstractList<Object> {
+
+	/**
+	 * The scalar arguments and a {@link TokenBuffer} for each dictionary or list
+	 */
+	private final Object[] elements;
+
+	/**
+	 * The decoded map or list of each buffered element, null until the element is read.
+	 * Decoded buffers are never null. Only created when the list contains buffers.
+	 */
+	@Nullable
+	private final AtomicReferenceArray<Object> decodedBuffers;
+
+	private LazyArgumentList(Object[] elements, boolean buffered) {
+		this.elements = elements;
+		this.decodedBuffers = buffered ? new AtomicReferenceArray<>(elements.length)
+				: null;
+	}
+
+	/**
+	 * Reads the list the parser is positioned on
+	 */
+	static LazyArgumentList read(JsonParser jp) throws IOException {
+		List<Object> elements = new ArrayList<>();
+		boolean buffered = false;
+		JsonToken token = jp.nextToken();
+		while (token != JsonToken.END_ARRAY) {
+			Object element = ParserUtil.readBuffered(jp);
+			buffered |= element instanceof TokenBuffer;
+			elements.add(element);
+			token = jp.nextToken();
+		}
+		return new LazyArgumentList(elements.toArray(), buffered);
+	}
+
+	/**
+	 * Returns true if the argument at the position is a dictionary that has not been
+	 * decoded
+	 */
+	public boolean isObject(int index) {
+		Object element = this.elements[index];
+		return element instanceof TokenBuffer
+				&& ((TokenBuffer) element).firstToken() == JsonToken.START_OBJECT;
+	}
+
+	/**
+	 * Returns true if the argument at the position is a dictionary or list that has
+	 * been decoded into a map or list by a read
+	 */
+	public boolean isDecoded(int index) {
+		return this.elements[index] instanceof TokenBuffer
+				&& this.decodedBuffers.get(index) != null;
+	}
+
+	/**
+	 * Binds the argument at the position to the type without decoding it into a map or
+	 * list first
+	 */
+	@Nullable
+	public Object bind(int index, ObjectMapper objectMapper, JavaType type)
+			throws IOException {
+		Object element = this.elements[index];
+		if (element instanceof TokenBuffer) {
+			try (JsonParser parser = ((TokenBuffer) element).asParser(objectMapper)) {
+				return objectMapper.readValue(parser, type);
+			}
+		}
+		return objectMapper.convertValue(element, type);
+	}
+
+	@Override
+	public Object get(int index) {
+		Object element = this.elements[index];
+		if (!(element instanceof TokenBuffer)) {
+			return element;
+		}
+		Object decoded = this.decodedBuffers.get(index);
+		if (decoded == null) {
+			decoded = ParserUtil.decodeBuffered(element);
+			if (!this.decodedBuffers.compareAndSet(index, null, decoded)) {
+				decoded = this.decodedBuffers.get(index);
+			}
+		}
+		return decoded;
+	}
+
+	@Override
+	public int size() {
+		return this.elements.length;
+	}
+
+}
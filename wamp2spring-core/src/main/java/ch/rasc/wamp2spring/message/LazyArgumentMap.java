@@ -0,0 +1,167 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.message;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.lang.Nullable;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+/**
+ * Immutable ArgumentsKw dictionary of a decoded message. Dictionaries and lists in the
+ * values are kept as buffered tokens and each one is only turned into a map or list
+ * when its key is read, so reading a scalar value does not decode the other values. A
+ * handler method binds them straight into its parameter types with
+ * {@link #bind(String, ObjectMapper, JavaType)} instead.
+ */
+public final class LazyArgumentMap extends AbstractMap<String, Object> {
+
+	/**
+	 * The scalar values and a {@link TokenBuffer} for each dictionary or list
+	 */
+	private final Map<String, Object> entries;
+
+	/**
+	 * The decoded map or list of each buffered value that has been read. Only created
+	 * when the dictionary contains buffers.
+	 */
+	@Nullable
+	private final Map<String, Object> decodedBuffers;
+
+	private LazyArgumentMap(Map<String, Object> entries, boolean buffered) {
+		this.entries = entries;
+		this.decodedBuffers = buffered ? new ConcurrentHashMap<>(4) : null;
+	}
+
+	/**
+	 * Reads the dictionary the parser is positioned on
+	 */
+	static LazyArgumentMap read(JsonParser jp) throws IOException {
+		Map<String, Object> entries = new HashMap<>();
+		boolean buffered = false;
+		String key;
+		while ((key = ParserUtil.nextKey(jp)) != null) {
+			Object value = ParserUtil.readBuffered(jp);
+			buffered |= value instanceof TokenBuffer;
+			entries.put(key, value);
+		}
+		return new LazyArgumentMap(entries, buffered);
+	}
+
+	/**
+	 * Returns true if the value of the key is a dictionary that has not been decoded
+	 */
+	public boolean isObject(String key) {
+		Object value = this.entries.get(key);
+		return value instanceof TokenBuffer
+				&& ((TokenBuffer) value).firstToken() == JsonToken.START_OBJECT;
+	}
+
+	/**
+	 * Returns true if the value of the key is a dictionary or list that has been decoded
+	 * into a map or list by a read
+	 */
+	public boolean isDecoded(String key) {
+		return this.entries.get(key) instanceof TokenBuffer
+				&& this.decodedBuffers.containsKey(key);
+	}
+
+	/**
+	 * Binds the value of the key to the type without decoding it into a map or list
+	 * first
+	 */
+	@Nullable
+	public Object bind(String key, ObjectMapper objectMapper, JavaType type)
+			throws IOException {
+		Object value = this.entries.get(key);
+		if (value instanceof TokenBuffer) {
+			try (JsonParser parser = ((TokenBuffer) value).asParser(objectMapper)) {
+				return objectMapper.readValue(parser, type);
+			}
+		}
+		return objectMapper.convertValue(value, type);
+	}
+
+	@Override
+	public Object get(Object key) {
+		return decode(key, this.entries.get(key));
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return this.entries.containsKey(key);
+	}
+
+	@Override
+	public int size() {
+		return this.entries.size();
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		return new AbstractSet<Entry<String, Object>>() {
+			@Override
+			public Iterator<Entry<String, Object>> iterator() {
+				Iterator<Entry<String, Object>> it = LazyArgumentMap.this.entries
+						.entrySet().iterator();
+				return new Iterator<Entry<String, Object>>() {
+					@Override
+					public boolean hasNext() {
+						return it.hasNext();
+					}
+
+					@Override
+					public Entry<String, Object> next() {
+						Entry<String, Object> entry = it.next();
+						return new SimpleImmutableEntry<>(entry.getKey(),
+								decode(entry.getKey(), entry.getValue()));
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return LazyArgumentMap.this.entries.size();
+			}
+		};
+	}
+
+	/**
+	 * Returns the value itself or, for a buffered value, its decoded map or list. Each
+	 * buffer is decoded once.
+	 */
+	@Nullable
+	private Object decode(Object key, @Nullable Object value) {
+		if (!(value instanceof TokenBuffer)) {
+			return value;
+		}
+		return this.decodedBuffers.computeIfAbsent((String) key,
+				k -> ParserUtil.decodeBuffered(value));
+	}
+
+}
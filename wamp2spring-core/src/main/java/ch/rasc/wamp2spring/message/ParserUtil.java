@@ -16,7 +16,9 @@
 package ch.rasc.wamp2spring.message;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,9 +27,32 @@ import org.springframework.lang.Nullable;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import ch.rasc.wamp2spring.util.CollectionHelper;
 
 /**
  * JSON parsing helper methods
+ * <p>
+ * The messages read the dictionaries with known keys, like the options of a PUBLISH,
+ * entry by entry with {@link #nextKey(JsonParser)} and the typed read methods, and skip
+ * the values of unknown keys with {@link JsonParser#skipChildren()}. This way no
+ * intermediate map is created for a dictionary the message only reads a few values from.
+ *
+ * <pre class="code">
+ * if (jp.currentToken() == JsonToken.START_OBJECT) {
+ * 	String key;
+ * 	while ((key = ParserUtil.nextKey(jp)) != null) {
+ * 		switch (key) {
+ * 		case "disclose_me":
+ * 			discloseMe = ParserUtil.readBoolean(jp, false);
+ * 			break;
+ * 		default:
+ * 			jp.skipChildren();
+ * 		}
+ * 	}
+ * }
+ * </pre>
  */
 public class ParserUtil {
 	@Nullable
@@ -39,17 +64,7 @@ public class ParserUtil {
 		List<Object> result = new ArrayList<>();
 		JsonToken token = jp.nextToken();
 		while (token != JsonToken.END_ARRAY) {
-
-			if (token == JsonToken.START_ARRAY) {
-				result.add(readArray(jp));
-			}
-			else if (token == JsonToken.START_OBJECT) {
-				result.add(readObject(jp));
-			}
-			else {
-				result.add(getValue(jp));
-			}
-
+			result.add(readValue(jp));
 			token = jp.nextToken();
 		}
 
@@ -63,26 +78,194 @@ public class ParserUtil {
 		}
 
 		Map<String, Object> result = new HashMap<>();
-		JsonToken token = jp.nextToken();
-		while (token != JsonToken.END_OBJECT) {
-			String key = jp.getText();
-			token = jp.nextToken();
+		String key;
+		while ((key = nextKey(jp)) != null) {
+			result.put(key, readValue(jp));
+		}
 
-			if (token == JsonToken.START_ARRAY) {
-				result.put(key, readArray(jp));
-			}
-			else if (token == JsonToken.START_OBJECT) {
-				result.put(key, readObject(jp));
+		return result;
+
+	}
+
+	/**
+	 * Reads the current value. Arrays are returned as lists and objects as maps.
+	 */
+	@Nullable
+	public static Object readValue(JsonParser jp) throws IOException {
+		JsonToken token = jp.currentToken();
+		if (token == JsonToken.START_ARRAY) {
+			return readArray(jp);
+		}
+		if (token == JsonToken.START_OBJECT) {
+			return readObject(jp);
+		}
+		return getValue(jp);
+	}
+
+	/**
+	 * Moves the parser, positioned in a dictionary, to the value of the next entry.
+	 *
+	 * @return the key of the entry or null at the end of the dictionary
+	 */
+	@Nullable
+	public static String nextKey(JsonParser jp) throws IOException {
+		if (jp.nextToken() != JsonToken.FIELD_NAME) {
+			return null;
+		}
+		String key = jp.currentName();
+		jp.nextToken();
+		return key;
+	}
+
+	/**
+	 * Reads the current value as boolean. Any other value is skipped.
+	 *
+	 * @return the boolean or the default value if the current value is not a boolean
+	 */
+	public static boolean readBoolean(JsonParser jp, boolean defaultValue)
+			throws IOException {
+		JsonToken token = jp.currentToken();
+		if (token == JsonToken.VALUE_TRUE) {
+			return true;
+		}
+		if (token == JsonToken.VALUE_FALSE) {
+			return false;
+		}
+		jp.skipChildren();
+		return defaultValue;
+	}
+
+	/**
+	 * Reads the current value as string. Any other value is skipped.
+	 *
+	 * @return the string or null if the current value is not a string
+	 */
+	@Nullable
+	public static String readString(JsonParser jp) throws IOException {
+		if (jp.currentToken() == JsonToken.VALUE_STRING) {
+			return jp.getText();
+		}
+		jp.skipChildren();
+		return null;
+	}
+
+	/**
+	 * Reads the current value as number. Any other value is skipped.
+	 *
+	 * @return the number or null if the current value is not a number
+	 */
+	@Nullable
+	public static Number readNumber(JsonParser jp) throws IOException {
+		JsonToken token = jp.currentToken();
+		if (token != null && token.isNumeric()) {
+			return jp.getNumberValue();
+		}
+		jp.skipChildren();
+		return null;
+	}
+
+	/**
+	 * Reads the integers of the current array, like the exclude and eligible session id
+	 * lists of a PUBLISH, without boxing them. Elements that are not integers are
+	 * skipped, as is a current value that is not an array.
+	 *
+	 * @return the distinct ids in ascending order or null if the current value is not an
+	 * array
+	 */
+	@Nullable
+	public static long[] readIdArray(JsonParser jp) throws IOException {
+		if (jp.currentToken() != JsonToken.START_ARRAY) {
+			jp.skipChildren();
+			return null;
+		}
+
+		long[] ids = new long[8];
+		int size = 0;
+		JsonToken token = jp.nextToken();
+		while (token != JsonToken.END_ARRAY) {
+			if (token == JsonToken.VALUE_NUMBER_INT) {
+				if (size == ids.length) {
+					ids = Arrays.copyOf(ids, size * 2);
+				}
+				ids[size++] = jp.getLongValue();
 			}
 			else {
-				result.put(key, getValue(jp));
+				jp.skipChildren();
 			}
-
 			token = jp.nextToken();
 		}
 
-		return result;
+		return CollectionHelper.toSortedDistinct(ids, size);
+	}
+
+	/**
+	 * Reads the current value for a {@link LazyArgumentList} or {@link LazyArgumentMap}.
+	 * Scalars are read, objects and arrays are copied into a {@link TokenBuffer}.
+	 */
+	@Nullable
+	static Object readBuffered(JsonParser jp) throws IOException {
+		JsonToken token = jp.currentToken();
+		if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+			TokenBuffer buffer = new TokenBuffer(jp);
+			copyStructure(jp, buffer);
+			return buffer;
+		}
+		return getValue(jp);
+	}
 
+	/**
+	 * Copies the current object or array into the buffer. Unlike
+	 * {@link TokenBuffer#copyCurrentStructure(JsonParser)}, which defers the parsing of
+	 * floating point numbers, the numbers are copied with the type
+	 * {@link #getValue(JsonParser)} reads them with, so decoding the buffer returns the
+	 * same values as reading the parser directly.
+	 */
+	private static void copyStructure(JsonParser jp, TokenBuffer buffer)
+			throws IOException {
+		int depth = 0;
+		do {
+			JsonToken token = jp.currentToken();
+			if (token == JsonToken.VALUE_NUMBER_FLOAT) {
+				switch (jp.getNumberType()) {
+				case FLOAT:
+					buffer.writeNumber(jp.getFloatValue());
+					break;
+				case BIG_DECIMAL:
+					buffer.writeNumber(jp.getDecimalValue());
+					break;
+				default:
+					buffer.writeNumber(jp.getDoubleValue());
+				}
+			}
+			else {
+				buffer.copyCurrentEvent(jp);
+				if (token.isStructStart()) {
+					depth++;
+				}
+				else if (token.isStructEnd()) {
+					depth--;
+				}
+			}
+		}
+		while (depth > 0 && jp.nextToken() != null);
+	}
+
+	/**
+	 * Turns a value returned by {@link #readBuffered(JsonParser)} into the value
+	 * {@link #readValue(JsonParser)} returns.
+	 */
+	@Nullable
+	static Object decodeBuffered(@Nullable Object value) {
+		if (!(value instanceof TokenBuffer)) {
+			return value;
+		}
+		try (JsonParser parser = ((TokenBuffer) value).asParser()) {
+			parser.nextToken();
+			return readValue(parser);
+		}
+		catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
 	}
 
 	@Nullable
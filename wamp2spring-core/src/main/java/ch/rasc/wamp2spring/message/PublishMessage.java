@@ -16,14 +16,17 @@
 package ch.rasc.wamp2spring.message;
 
 import java.io.IOException;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.function.LongConsumer;
 
 import org.springframework.lang.Nullable;
 
@@ -32,6 +35,7 @@ import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 
 import ch.rasc.wamp2spring.util.CollectionHelper;
+import ch.rasc.wamp2spring.util.UriDictionary;
 
 /**
  * [PUBLISH, Request|id, Options|dict, Topic|uri]
@@ -56,11 +60,14 @@ public class PublishMessage extends WampMessage {
 
 	private final String topic;
 
+	/**
+	 * The distinct session ids of the exclude and eligible lists in ascending order
+	 */
 	@Nullable
-	private final Set<Number> exclude;
+	private final long[] excludeIds;
 
 	@Nullable
-	private final Set<Number> eligible;
+	private final long[] eligibleIds;
 
 	@Nullable
 	private final List<Object> arguments;
@@ -71,7 +78,7 @@ public class PublishMessage extends WampMessage {
 	private PublishMessage(long requestId, String topic, @Nullable List<Object> arguments,
 			@Nullable Map<String, Object> argumentsKw, boolean acknowledge,
 			boolean excludeMe, boolean discloseMe, boolean retain,
-			@Nullable Set<Number> exclude, @Nullable Set<Number> eligible) {
+			@Nullable long[] excludeIds, @Nullable long[] eligibleIds) {
 		super(CODE);
 		this.requestId = requestId;
 		this.topic = topic;
@@ -81,14 +88,15 @@ public class PublishMessage extends WampMessage {
 		this.excludeMe = excludeMe;
 		this.discloseMe = discloseMe;
 		this.retain = retain;
-		this.exclude = exclude;
-		this.eligible = eligible;
+		this.excludeIds = excludeIds;
+		this.eligibleIds = eligibleIds;
 	}
 
 	PublishMessage(Builder builder) {
 		this(builder.requestId, builder.topic, builder.arguments, builder.argumentsKw,
 				builder.acknowledge, builder.excludeMe, builder.discloseMe,
-				builder.retain, builder.exclude, builder.eligible);
+				builder.retain, Builder.toIds(builder.exclude, builder.excludeSize),
+				Builder.toIds(builder.eligible, builder.eligibleSize));
 	}
 
 	public static Builder builder(long requestId, String topic) {
@@ -114,11 +122,19 @@ public class PublishMessage extends WampMessage {
 		@Nullable
 		Map<String, Object> argumentsKw;
 
+		/**
+		 * The added ids in the first excludeSize and eligibleSize slots, unsorted and
+		 * possibly with duplicates
+		 */
 		@Nullable
-		Set<Number> exclude;
+		long[] exclude;
+
+		int excludeSize;
 
 		@Nullable
-		Set<Number> eligible;
+		long[] eligible;
+
+		int eligibleSize;
 
 		public Builder(long requestId, String topic) {
 			this.requestId = requestId;
@@ -174,40 +190,75 @@ public class PublishMessage extends WampMessage {
 		}
 
 		public Builder exclude(Collection<Long> excludeWampSessionIds) {
-			this.exclude = excludeWampSessionIds.stream().map(l -> (Number) l)
-					.collect(Collectors.toSet());
+			this.exclude = toArray(excludeWampSessionIds);
+			this.excludeSize = this.exclude.length;
 			return this;
 		}
 
 		public Builder eligible(Collection<Long> eligibleWampSessionIds) {
-			this.eligible = eligibleWampSessionIds.stream().map(l -> (Number) l)
-					.collect(Collectors.toSet());
+			this.eligible = toArray(eligibleWampSessionIds);
+			this.eligibleSize = this.eligible.length;
 			return this;
 		}
 
 		public Builder addExclude(Number excludeWampSessionId) {
-			if (this.exclude == null) {
-				this.exclude = new HashSet<>();
-			}
-			this.exclude.add(excludeWampSessionId);
+			this.exclude = append(this.exclude, this.excludeSize,
+					excludeWampSessionId.longValue());
+			this.excludeSize++;
 			return this;
 		}
 
 		public Builder addEligible(Number eligibleWampSessionId) {
-			if (this.eligible == null) {
-				this.eligible = new HashSet<>();
-			}
-			this.eligible.add(eligibleWampSessionId);
+			this.eligible = append(this.eligible, this.eligibleSize,
+					eligibleWampSessionId.longValue());
+			this.eligibleSize++;
 			return this;
 		}
 
 		public PublishMessage build() {
 			return new PublishMessage(this);
 		}
+
+		private static long[] toArray(Collection<Long> ids) {
+			long[] result = new long[ids.size()];
+			int i = 0;
+			for (Long id : ids) {
+				result[i++] = id;
+			}
+			return result;
+		}
+
+		private static long[] append(@Nullable long[] ids, int size, long id) {
+			long[] result = ids;
+			if (result == null) {
+				result = new long[4];
+			}
+			else if (size == result.length) {
+				result = Arrays.copyOf(result, size * 2);
+			}
+			result[size] = id;
+			return result;
+		}
+
+		/**
+		 * Returns a sorted, distinct copy of the added ids. Copies the ids, so the
+		 * builder can be reused.
+		 */
+		@Nullable
+		static long[] toIds(@Nullable long[] ids, int size) {
+			if (ids == null) {
+				return null;
+			}
+			return CollectionHelper.toSortedDistinct(Arrays.copyOf(ids, size), size);
+		}
 	}
 
-	@SuppressWarnings("unchecked")
 	public static PublishMessage deserialize(JsonParser jp) throws IOException {
+		return deserialize(jp, UriDictionary.NONE);
+	}
+
+	static PublishMessage deserialize(JsonParser jp, UriDictionary uriDictionary)
+			throws IOException {
 		jp.nextToken();
 		long request = jp.getLongValue();
 
@@ -215,40 +266,49 @@ public class PublishMessage extends WampMessage {
 		boolean excludeMe = true;
 		boolean discloseMe = false;
 		boolean retain = false;
-		Set<Number> exclude = null;
-		Set<Number> eligible = null;
-		jp.nextToken();
-		Map<String, Object> options = ParserUtil.readObject(jp);
-		if (options != null) {
-			acknowledge = (boolean) options.getOrDefault("acknowledge", false);
-			excludeMe = (boolean) options.getOrDefault("exclude_me", true);
-			discloseMe = (boolean) options.getOrDefault("disclose_me", false);
-			retain = (boolean) options.getOrDefault("retain", false);
-
-			List<Number> excludeArray = (List<Number>) options.get("exclude");
-			if (excludeArray != null) {
-				exclude = new HashSet<>(excludeArray);
-			}
-
-			List<Number> eligibleArray = (List<Number>) options.get("eligible");
-			if (eligibleArray != null) {
-				eligible = new HashSet<>(eligibleArray);
+		long[] exclude = null;
+		long[] eligible = null;
+		if (jp.nextToken() == JsonToken.START_OBJECT) {
+			String option;
+			while ((option = ParserUtil.nextKey(jp)) != null) {
+				switch (option) {
+				case "acknowledge":
+					acknowledge = ParserUtil.readBoolean(jp, false);
+					break;
+				case "exclude_me":
+					excludeMe = ParserUtil.readBoolean(jp, true);
+					break;
+				case "disclose_me":
+					discloseMe = ParserUtil.readBoolean(jp, false);
+					break;
+				case "retain":
+					retain = ParserUtil.readBoolean(jp, false);
+					break;
+				case "exclude":
+					exclude = ParserUtil.readIdArray(jp);
+					break;
+				case "eligible":
+					eligible = ParserUtil.readIdArray(jp);
+					break;
+				default:
+					jp.skipChildren();
+				}
 			}
 		}
 
 		jp.nextToken();
-		String topic = jp.getValueAsString();
+		String topic = uriDictionary.intern(jp.getValueAsString());
 
 		List<Object> arguments = null;
 		JsonToken token = jp.nextToken();
 		if (token == JsonToken.START_ARRAY) {
-			arguments = ParserUtil.readArray(jp);
+			arguments = LazyArgumentList.read(jp);
 		}
 
 		Map<String, Object> argumentsKw = null;
 		token = jp.nextToken();
 		if (token == JsonToken.START_OBJECT) {
-			argumentsKw = ParserUtil.readObject(jp);
+			argumentsKw = LazyArgumentMap.read(jp);
 		}
 
 		return new PublishMessage(request, topic, arguments, argumentsKw, acknowledge,
@@ -277,12 +337,14 @@ public class PublishMessage extends WampMessage {
 			generator.writeBooleanField("retain", this.retain);
 		}
 
-		if (this.exclude != null) {
-			generator.writeObjectField("exclude", this.exclude);
+		if (this.excludeIds != null) {
+			generator.writeFieldName("exclude");
+			generator.writeArray(this.excludeIds, 0, this.excludeIds.length);
 		}
 
-		if (this.eligible != null) {
-			generator.writeObjectField("eligible", this.eligible);
+		if (this.eligibleIds != null) {
+			generator.writeFieldName("eligible");
+			generator.writeArray(this.eligibleIds, 0, this.eligibleIds.length);
 		}
 
 		generator.writeEndObject();
@@ -337,14 +399,60 @@ public class PublishMessage extends WampMessage {
 		return this.argumentsKw;
 	}
 
+	/**
+	 * Returns a read-only view of the distinct session ids of the exclude list. The view
+	 * is created on each call, the delivery uses {@link #isExcluded(long)} instead.
+	 */
 	@Nullable
 	public Set<Number> getExclude() {
-		return this.exclude;
+		return this.excludeIds != null ? new IdSetView(this.excludeIds) : null;
 	}
 
+	/**
+	 * Returns a read-only view of the distinct session ids of the eligible list. The
+	 * view is created on each call, the delivery uses {@link #isEligible(long)} and
+	 * {@link #forEachEligibleId(LongConsumer)} instead.
+	 */
 	@Nullable
 	public Set<Number> getEligible() {
-		return this.eligible;
+		return this.eligibleIds != null ? new IdSetView(this.eligibleIds) : null;
+	}
+
+	/**
+	 * Returns the number of distinct session ids of the eligible list or -1 when the
+	 * publication has no eligible list
+	 */
+	public int getEligibleCount() {
+		return this.eligibleIds != null ? this.eligibleIds.length : -1;
+	}
+
+	/**
+	 * Passes the distinct session ids of the eligible list in ascending order to the
+	 * consumer. Does nothing when the publication has no eligible list.
+	 */
+	public void forEachEligibleId(LongConsumer consumer) {
+		if (this.eligibleIds != null) {
+			for (long eligibleId : this.eligibleIds) {
+				consumer.accept(eligibleId);
+			}
+		}
+	}
+
+	/**
+	 * Returns true when the publication has no eligible list or the list contains the
+	 * session id
+	 */
+	public boolean isEligible(long wampSessionId) {
+		return this.eligibleIds == null
+				|| Arrays.binarySearch(this.eligibleIds, wampSessionId) >= 0;
+	}
+
+	/**
+	 * Returns true when the exclude list of the publication contains the session id
+	 */
+	public boolean isExcluded(long wampSessionId) {
+		return this.excludeIds != null
+				&& Arrays.binarySearch(this.excludeIds, wampSessionId) >= 0;
 	}
 
 	@Override
@@ -352,9 +460,58 @@ public class PublishMessage extends WampMessage {
 		return "PublishMessage [requestId=" + this.requestId + ", acknowledge="
 				+ this.acknowledge + ", excludeMe=" + this.excludeMe + ", discloseMe="
 				+ this.discloseMe + ", retain=" + this.retain + ", topic=" + this.topic
-				+ ", exclude=" + this.exclude + ", eligible=" + this.eligible
+				+ ", exclude=" + Arrays.toString(this.excludeIds) + ", eligible="
+				+ Arrays.toString(this.eligibleIds)
 				+ ", arguments=" + this.arguments + ", argumentsKw=" + this.argumentsKw
 				+ "]";
 	}
 
+	/**
+	 * Read-only {@link Set} view of a sorted id array. Iterates the ids as Longs, the
+	 * lookup accepts all integral number types.
+	 */
+	private static final class IdSetView extends AbstractSet<Number> {
+
+		private final long[] ids;
+
+		IdSetView(long[] ids) {
+			this.ids = ids;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			if (o instanceof Long || o instanceof Integer || o instanceof Short
+					|| o instanceof Byte) {
+				return Arrays.binarySearch(this.ids, ((Number) o).longValue()) >= 0;
+			}
+			return false;
+		}
+
+		@Override
+		public Iterator<Number> iterator() {
+			return new Iterator<Number>() {
+				private int index;
+
+				@Override
+				public boolean hasNext() {
+					return this.index < IdSetView.this.ids.length;
+				}
+
+				@Override
+				public Number next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					return IdSetView.this.ids[this.index++];
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return this.ids.length;
+		}
+
+	}
+
 }
@@ -16,10 +16,12 @@
 package ch.rasc.wamp2spring.message;
 
 import java.io.IOException;
-import java.util.Map;
 
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import ch.rasc.wamp2spring.util.UriDictionary;
 
 /**
  * [REGISTER, Request|id, Options|dict, Procedure|uri]
@@ -46,18 +48,29 @@ public class RegisterMessage extends WampMessage {
 	}
 
 	public static RegisterMessage deserialize(JsonParser jp) throws IOException {
+		return deserialize(jp, UriDictionary.NONE);
+	}
+
+	static RegisterMessage deserialize(JsonParser jp, UriDictionary uriDictionary)
+			throws IOException {
 		jp.nextToken();
 		long request = jp.getLongValue();
 
 		boolean discloseCaller = false;
-		jp.nextToken();
-		Map<String, Object> options = ParserUtil.readObject(jp);
-		if (options != null) {
-			discloseCaller = (boolean) options.getOrDefault("disclose_caller", false);
+		if (jp.nextToken() == JsonToken.START_OBJECT) {
+			String option;
+			while ((option = ParserUtil.nextKey(jp)) != null) {
+				if (option.equals("disclose_caller")) {
+					discloseCaller = ParserUtil.readBoolean(jp, false);
+				}
+				else {
+					jp.skipChildren();
+				}
+			}
 		}
 
 		jp.nextToken();
-		String procedure = jp.getValueAsString();
+		String procedure = uriDictionary.intern(jp.getValueAsString());
 
 		return new RegisterMessage(request, procedure, discloseCaller);
 	}
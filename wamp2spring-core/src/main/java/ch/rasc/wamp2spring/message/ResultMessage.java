@@ -69,7 +69,7 @@ public class ResultMessage extends WampMessage {
 		long request = jp.getLongValue();
 
 		jp.nextToken();
-		ParserUtil.readObject(jp);
+		jp.skipChildren();
 
 		List<Object> arguments = null;
 		JsonToken token = jp.nextToken();
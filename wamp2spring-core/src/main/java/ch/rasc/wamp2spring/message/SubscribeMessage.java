@@ -17,12 +17,15 @@ package ch.rasc.wamp2spring.message;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 
 import ch.rasc.wamp2spring.pubsub.MatchPolicy;
+import ch.rasc.wamp2spring.util.UriDictionary;
 
 /**
  * A Subscriber subscribes to a topic with this message.
@@ -76,27 +79,48 @@ public class SubscribeMessage extends WampMessage {
 	}
 
 	public static SubscribeMessage deserialize(JsonParser jp) throws IOException {
+		return deserialize(jp, UriDictionary.NONE);
+	}
+
+	static SubscribeMessage deserialize(JsonParser jp, UriDictionary uriDictionary)
+			throws IOException {
 		jp.nextToken();
 		long request = jp.getLongValue();
 
 		MatchPolicy match = MatchPolicy.EXACT;
 
-		jp.nextToken();
 		boolean getRetained = false;
-		Map<String, Object> options = ParserUtil.readObject(jp);
-		if (options != null) {
-			String extValue = (String) options.get("match");
-			if (extValue != null) {
-				match = MatchPolicy.fromExtValue(extValue);
-				if (match == null) {
-					match = MatchPolicy.EXACT;
+		Map<String, Object> options = null;
+		if (jp.nextToken() == JsonToken.START_OBJECT) {
+			// the options are kept for the subscription meta API
+			options = new HashMap<>(4);
+			String option;
+			while ((option = ParserUtil.nextKey(jp)) != null) {
+				Object value;
+				switch (option) {
+				case "match":
+					String extValue = ParserUtil.readString(jp);
+					if (extValue != null) {
+						match = MatchPolicy.fromExtValue(extValue);
+						if (match == null) {
+							match = MatchPolicy.EXACT;
+						}
+					}
+					value = extValue;
+					break;
+				case "get_retained":
+					getRetained = ParserUtil.readBoolean(jp, false);
+					value = getRetained;
+					break;
+				default:
+					value = ParserUtil.readValue(jp);
 				}
+				options.put(option, value);
 			}
-			getRetained = (boolean) options.getOrDefault("get_retained", false);
 		}
 
 		jp.nextToken();
-		String topic = jp.getValueAsString();
+		String topic = uriDictionary.intern(jp.getValueAsString());
 
 		return new SubscribeMessage(request, topic, match, getRetained, options);
 	}
@@ -0,0 +1,112 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.message;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * Serializes and deserializes WAMP messages for one WebSocket sub-protocol.
+ * <p>
+ * The transports pick the codec whose {@link #getProtocol()} matches the negotiated
+ * sub-protocol once during the handshake and use it for all messages of the session.
+ * Codecs are registered with
+ * {@link ch.rasc.wamp2spring.config.WampConfigurer#configureCodecs(java.util.List)}.
+ * Implementations must be thread safe.
+ */
+public interface WampCodec {
+
+	String JSON_PROTOCOL = "wamp.2.json";
+
+	String MSGPACK_PROTOCOL = "wamp.2.msgpack";
+
+	String CBOR_PROTOCOL = "wamp.2.cbor";
+
+	String SMILE_PROTOCOL = "wamp.2.smile";
+
+	/**
+	 * Returns the WebSocket sub-protocol this codec handles, e.g. wamp.2.json
+	 */
+	String getProtocol();
+
+	/**
+	 * Returns true if messages are sent in binary WebSocket frames, false for text
+	 * frames
+	 */
+	boolean isBinary();
+
+	/**
+	 * Deserializes a message from the remaining bytes of the buffer. Must not change the
+	 * position of the buffer.
+	 *
+	 * @return the message or null if the message code is unknown
+	 */
+	@Nullable
+	WampMessage decode(ByteBuffer payload) throws IOException;
+
+	/**
+	 * Deserializes a message from a stream. Used for payloads that are split over
+	 * multiple buffers.
+	 *
+	 * @return the message or null if the message code is unknown
+	 */
+	@Nullable
+	default WampMessage decode(InputStream payload) throws IOException {
+		return decode(ByteBuffer.wrap(payload.readAllBytes()));
+	}
+
+	/**
+	 * Deserializes a message from the payload of a text frame.
+	 *
+	 * @return the message or null if the message code is unknown
+	 */
+	@Nullable
+	default WampMessage decode(String payload) throws IOException {
+		return decode(ByteBuffer.wrap(payload.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Serializes the message into the stream. The stream must not be closed.
+	 */
+	void encode(WampMessage message, OutputStream out) throws IOException;
+
+	/**
+	 * Serializes the message as text into the writer. Only called for text codecs. The
+	 * writer must not be closed.
+	 */
+	default void encode(WampMessage message, Writer out) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		encode(message, bos);
+		out.write(bos.toString(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Serializes the message into a new byte array.
+	 */
+	default byte[] encode(WampMessage message) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		encode(message, bos);
+		return bos.toByteArray();
+	}
+
+}
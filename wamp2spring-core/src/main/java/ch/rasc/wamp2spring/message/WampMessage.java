@@ -15,12 +15,19 @@
  */
 package ch.rasc.wamp2spring.message;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
 /**
  * Base class of the WampMessages
 */
 import java.security.Principal;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.springframework.lang.Nullable;
 import org.springframework.messaging.Message;
@@ -31,18 +38,41 @@ import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+import ch.rasc.wamp2spring.util.UriDictionary;
 
 public abstract class WampMessage implements Message<Object> {
 
 	private final static Object EMPTY_OBJECT = new Object();
 
-	private final MutableMessageHeaders messageHeaders = new MutableMessageHeaders();
-
 	private final int code;
 
+	/*
+	 * The routing headers are stored in fields. A MessageHeaders instance is only
+	 * created when getHeaders() is called, for example by a channel interceptor.
+	 */
+	@Nullable
+	private String webSocketSessionId;
+
+	@Nullable
+	private Principal principal;
+
+	@Nullable
+	private Long wampSessionId;
+
+	@Nullable
+	private MessageHeaders messageHeaders;
+
+	/**
+	 * Serialized forms of this message keyed by the factory or codec that created them.
+	 * Shared between copies of a message that only differ in their routing headers.
+	 */
+	@Nullable
+	private Map<Object, byte[]> sharedEncodings;
+
 	WampMessage(int code) {
 		this.code = code;
-		setHeader(WampMessageHeader.WAMP_MESSAGE_CODE, code);
 	}
 
 	/**
@@ -55,19 +85,48 @@ public abstract class WampMessage implements Message<Object> {
 	/**
 	 * Overwrites or inserts a new header into the message. Null values are ignored
 	 *
+	 * The {@link WampMessageHeader#WAMP_MESSAGE_CODE} header is derived from the message
+	 * type and can't be overwritten.
+	 *
 	 * @param header the header
 	 * @param value an arbitrary value. null values are ignored
 	 */
 	public void setHeader(WampMessageHeader header, @Nullable Object value) {
-		if (value != null) {
-			this.messageHeaders.getRawHeaders().put(header.name(), value);
+		if (value == null) {
+			return;
+		}
+		switch (header) {
+		case WEBSOCKET_SESSION_ID:
+			this.webSocketSessionId = (String) value;
+			break;
+		case PRINCIPAL:
+			this.principal = (Principal) value;
+			break;
+		case WAMP_SESSION_ID:
+			this.wampSessionId = value instanceof Long ? (Long) value
+					: Long.valueOf(((Number) value).longValue());
+			break;
+		default:
+			return;
 		}
+		this.messageHeaders = null;
 	}
 
 	@SuppressWarnings("unchecked")
 	@Nullable
 	public <T> T getHeader(WampMessageHeader header) {
-		return (T) this.messageHeaders.get(header.name());
+		switch (header) {
+		case WEBSOCKET_SESSION_ID:
+			return (T) this.webSocketSessionId;
+		case PRINCIPAL:
+			return (T) this.principal;
+		case WAMP_SESSION_ID:
+			return (T) this.wampSessionId;
+		case WAMP_MESSAGE_CODE:
+			return (T) Integer.valueOf(this.code);
+		default:
+			return null;
+		}
 	}
 
 	/**
@@ -75,7 +134,7 @@ public abstract class WampMessage implements Message<Object> {
 	 */
 	@Nullable
 	public String getWebSocketSessionId() {
-		return getHeader(WampMessageHeader.WEBSOCKET_SESSION_ID);
+		return this.webSocketSessionId;
 	}
 
 	/**
@@ -83,7 +142,7 @@ public abstract class WampMessage implements Message<Object> {
 	 */
 	@Nullable
 	public Principal getPrincipal() {
-		return getHeader(WampMessageHeader.PRINCIPAL);
+		return this.principal;
 	}
 
 	/**
@@ -91,7 +150,7 @@ public abstract class WampMessage implements Message<Object> {
 	 */
 	@Nullable
 	public Long getWampSessionId() {
-		return getHeader(WampMessageHeader.WAMP_SESSION_ID);
+		return this.wampSessionId;
 	}
 
 	protected void setReceiver(WampMessage message) {
@@ -110,23 +169,230 @@ public abstract class WampMessage implements Message<Object> {
 		return EMPTY_OBJECT;
 	}
 
+	/**
+	 * Returns the headers as Spring {@link MessageHeaders}. The instance is created on
+	 * the first call and recreated after a header has changed.
+	 */
 	@Override
 	public MessageHeaders getHeaders() {
-		return this.messageHeaders;
+		MessageHeaders headers = this.messageHeaders;
+		if (headers == null) {
+			Map<String, Object> raw = new HashMap<>(8);
+			raw.put(WampMessageHeader.WAMP_MESSAGE_CODE.name(), this.code);
+			if (this.webSocketSessionId != null) {
+				raw.put(WampMessageHeader.WEBSOCKET_SESSION_ID.name(),
+						this.webSocketSessionId);
+			}
+			if (this.principal != null) {
+				raw.put(WampMessageHeader.PRINCIPAL.name(), this.principal);
+			}
+			if (this.wampSessionId != null) {
+				raw.put(WampMessageHeader.WAMP_SESSION_ID.name(), this.wampSessionId);
+			}
+			headers = new WampMessageHeaders(raw);
+			this.messageHeaders = headers;
+		}
+		return headers;
 	}
 
 	public abstract void serialize(JsonGenerator generator) throws IOException;
 
-	@SuppressWarnings("unchecked")
+	/**
+	 * Serializes the message into a WAMP array with the provided factory. When this
+	 * message shares its encodings with other copies (see
+	 * {@link #shareEncodings(WampMessage)}) the message is only serialized once per
+	 * factory and all copies return the same array, which must not be modified.
+	 *
+	 * @param jsonFactory the factory of the wire format
+	 * @return the serialized message
+	 */
+	public byte[] serialize(JsonFactory jsonFactory) throws IOException {
+		Map<Object, byte[]> encodings = this.sharedEncodings;
+		if (encodings == null) {
+			return writeBytes(jsonFactory);
+		}
+
+		byte[] bytes = encodings.get(jsonFactory);
+		if (bytes == null) {
+			bytes = writeBytes(jsonFactory);
+			byte[] existing = encodings.putIfAbsent(jsonFactory, bytes);
+			if (existing != null) {
+				bytes = existing;
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Serializes the message with the provided codec. Like
+	 * {@link #serialize(JsonFactory)} the message is only serialized once per codec when
+	 * it shares its encodings with other copies.
+	 *
+	 * @param codec the codec of the session
+	 * @return the serialized message
+	 */
+	public byte[] serialize(WampCodec codec) throws IOException {
+		Map<Object, byte[]> encodings = this.sharedEncodings;
+		if (encodings == null) {
+			return codec.encode(this);
+		}
+
+		byte[] bytes = encodings.get(codec);
+		if (bytes == null) {
+			bytes = codec.encode(this);
+			byte[] existing = encodings.putIfAbsent(codec, bytes);
+			if (existing != null) {
+				bytes = existing;
+			}
+		}
+		return bytes;
+	}
+
+	private byte[] writeBytes(JsonFactory jsonFactory) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		serialize(jsonFactory, bos);
+		return bos.toByteArray();
+	}
+
+	/**
+	 * Serializes the message into a WAMP array and writes it into the provided stream.
+	 * The stream is not closed.
+	 *
+	 * @param jsonFactory the factory of the wire format
+	 * @param out the target stream
+	 */
+	public void serialize(JsonFactory jsonFactory, OutputStream out) throws IOException {
+		try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			generator.writeStartArray();
+			serialize(generator);
+			generator.writeEndArray();
+		}
+	}
+
+	/**
+	 * Serializes the message into a WAMP array and writes it as text into the provided
+	 * writer. Only applicable to text based formats like JSON. The writer is not
+	 * closed.
+	 *
+	 * @param jsonFactory the factory of the wire format
+	 * @param out the target writer
+	 */
+	public void serialize(JsonFactory jsonFactory, Writer out) throws IOException {
+		try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+			generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+			generator.writeStartArray();
+			serialize(generator);
+			generator.writeEndArray();
+		}
+	}
+
+	/**
+	 * Returns true when this message shares its serialized forms with other copies. A
+	 * transport should then use {@link #serialize(WampCodec)} so the message is only
+	 * serialized once.
+	 */
+	public boolean isEncodingShared() {
+		return this.sharedEncodings != null;
+	}
+
+	/**
+	 * Lets this message use the encoding cache of the provided message. Only call this
+	 * when both messages serialize into the same bytes.
+	 */
+	protected void shareEncodings(WampMessage message) {
+		Map<Object, byte[]> encodings = message.sharedEncodings;
+		if (encodings == null) {
+			encodings = new ConcurrentHashMap<>(4);
+			message.sharedEncodings = encodings;
+		}
+		this.sharedEncodings = encodings;
+	}
+
 	@Nullable
 	public static <T extends WampMessage> T deserialize(JsonFactory jsonFactory,
 			byte[] json) throws JsonParseException, IOException {
+		return readMessage(jsonFactory.createParser(json), UriDictionary.NONE);
+	}
 
-		try (JsonParser jp = jsonFactory.createParser(json)) {
+	/**
+	 * Deserializes a message from the remaining bytes of the buffer without copying
+	 * them. Heap buffers are parsed directly from their backing array, honoring the
+	 * array offset and the position of the buffer. Direct buffers are streamed into the
+	 * parser. The position of the provided buffer is not changed.
+	 *
+	 * @param jsonFactory the factory of the wire format
+	 * @param buffer the buffer containing the serialized message
+	 * @return the message or null if the message code is unknown
+	 */
+	@Nullable
+	public static <T extends WampMessage> T deserialize(JsonFactory jsonFactory,
+			ByteBuffer buffer) throws JsonParseException, IOException {
+		return deserialize(jsonFactory, buffer, UriDictionary.NONE);
+	}
+
+	@Nullable
+	static <T extends WampMessage> T deserialize(JsonFactory jsonFactory,
+			ByteBuffer buffer, UriDictionary uriDictionary)
+			throws JsonParseException, IOException {
+		if (buffer.hasArray()) {
+			return readMessage(
+					jsonFactory.createParser(buffer.array(),
+							buffer.arrayOffset() + buffer.position(), buffer.remaining()),
+					uriDictionary);
+		}
+		return readMessage(
+				jsonFactory.createParser(
+						new ByteBufferBackedInputStream(buffer.duplicate())),
+				uriDictionary);
+	}
+
+	/**
+	 * Deserializes a message from a text frame without encoding it into bytes first.
+	 */
+	@Nullable
+	public static <T extends WampMessage> T deserialize(JsonFactory jsonFactory,
+			String json) throws JsonParseException, IOException {
+		return deserialize(jsonFactory, json, UriDictionary.NONE);
+	}
+
+	@Nullable
+	static <T extends WampMessage> T deserialize(JsonFactory jsonFactory, String json,
+			UriDictionary uriDictionary) throws JsonParseException, IOException {
+		return readMessage(jsonFactory.createParser(json), uriDictionary);
+	}
+
+	/**
+	 * Deserializes a message from a stream. Used for payloads that are split over
+	 * multiple buffers.
+	 */
+	@Nullable
+	public static <T extends WampMessage> T deserialize(JsonFactory jsonFactory,
+			InputStream json) throws JsonParseException, IOException {
+		return deserialize(jsonFactory, json, UriDictionary.NONE);
+	}
+
+	@Nullable
+	static <T extends WampMessage> T deserialize(JsonFactory jsonFactory,
+			InputStream json, UriDictionary uriDictionary)
+			throws JsonParseException, IOException {
+		return readMessage(jsonFactory.createParser(json), uriDictionary);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Nullable
+	private static <T extends WampMessage> T readMessage(JsonParser parser,
+			UriDictionary uriDictionary) throws IOException {
+
+		try (JsonParser jp = parser) {
 			if (jp.nextToken() != JsonToken.START_ARRAY) {
 				throw new IOException("Not a JSON array");
 			}
-			if (jp.nextToken() != JsonToken.VALUE_NUMBER_INT) {
+			JsonToken token = jp.nextToken();
+			if (token == JsonToken.START_ARRAY) {
+				return (T) EventBatchMessage.deserialize(jp);
+			}
+			if (token != JsonToken.VALUE_NUMBER_INT) {
 				throw new IOException("Wrong message format");
 			}
 
@@ -144,11 +410,11 @@ public abstract class WampMessage implements Message<Object> {
 			case ErrorMessage.CODE:
 				return (T) ErrorMessage.deserialize(jp);
 			case PublishMessage.CODE:
-				return (T) PublishMessage.deserialize(jp);
+				return (T) PublishMessage.deserialize(jp, uriDictionary);
 			case PublishedMessage.CODE:
 				return (T) PublishedMessage.deserialize(jp);
 			case SubscribeMessage.CODE:
-				return (T) SubscribeMessage.deserialize(jp);
+				return (T) SubscribeMessage.deserialize(jp, uriDictionary);
 			case SubscribedMessage.CODE:
 				return (T) SubscribedMessage.deserialize(jp);
 			case UnsubscribeMessage.CODE:
@@ -158,11 +424,11 @@ public abstract class WampMessage implements Message<Object> {
 			case EventMessage.CODE:
 				return (T) EventMessage.deserialize(jp);
 			case CallMessage.CODE:
-				return (T) CallMessage.deserialize(jp);
+				return (T) CallMessage.deserialize(jp, uriDictionary);
 			case ResultMessage.CODE:
 				return (T) ResultMessage.deserialize(jp);
 			case RegisterMessage.CODE:
-				return (T) RegisterMessage.deserialize(jp);
+				return (T) RegisterMessage.deserialize(jp, uriDictionary);
 			case RegisteredMessage.CODE:
 				return (T) RegisteredMessage.deserialize(jp);
 			case UnregisterMessage.CODE:
@@ -182,15 +448,10 @@ public abstract class WampMessage implements Message<Object> {
 	}
 
 	@SuppressWarnings("serial")
-	private static class MutableMessageHeaders extends MessageHeaders {
-
-		public MutableMessageHeaders() {
-			super(null, MessageHeaders.ID_VALUE_NONE, -1L);
-		}
+	private static class WampMessageHeaders extends MessageHeaders {
 
-		@Override
-		public Map<String, Object> getRawHeaders() {
-			return super.getRawHeaders();
+		WampMessageHeaders(Map<String, Object> headers) {
+			super(headers, MessageHeaders.ID_VALUE_NONE, -1L);
 		}
 	}
 
@@ -58,7 +58,7 @@ public class YieldMessage extends WampMessage {
 		long request = jp.getLongValue();
 
 		jp.nextToken();
-		ParserUtil.readObject(jp);
+		jp.skipChildren();
 
 		List<Object> arguments = null;
 		JsonToken token = jp.nextToken();
@@ -0,0 +1,126 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.pubsub;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import ch.rasc.wamp2spring.config.ParallelFanOut;
+
+/**
+ * Serial lanes on a shared executor that process the chunks of a parallel fan-out.
+ * <p>
+ * The tasks of one lane run one after the other in submission order, and a subscriber
+ * is always assigned to the same lane. As long as any lane has work left, every
+ * publication has to go through the lanes. Otherwise an event delivered inline could
+ * overtake an event of an earlier publication that is still queued.
+ */
+final class FanOutLanes {
+
+	private static final Log logger = LogFactory.getLog(FanOutLanes.class);
+
+	private final Lane[] lanes;
+
+	private final int threshold;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	FanOutLanes(ParallelFanOut settings) {
+		this.threshold = settings.getThreshold();
+		this.lanes = new Lane[settings.getParallelism()];
+		Executor executor = settings.getExecutor();
+		for (int i = 0; i < this.lanes.length; i++) {
+			this.lanes[i] = new Lane(executor);
+		}
+	}
+
+	int size() {
+		return this.lanes.length;
+	}
+
+	/**
+	 * Returns true if the deliveries to a subscriber set of the given size must be
+	 * dispatched to the lanes
+	 */
+	boolean isParallel(int subscriberCount) {
+		return subscriberCount >= this.threshold || this.inFlight.get() > 0;
+	}
+
+	int laneOf(Subscriber subscriber) {
+		return Math.floorMod(Objects.hashCode(subscriber.getWebSocketSessionId()),
+				this.lanes.length);
+	}
+
+	void execute(int lane, Runnable task) {
+		this.inFlight.incrementAndGet();
+		this.lanes[lane].execute(() -> {
+			try {
+				task.run();
+			}
+			finally {
+				this.inFlight.decrementAndGet();
+			}
+		});
+	}
+
+	private static final class Lane implements Runnable {
+
+		private final Executor executor;
+
+		private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+		private final AtomicInteger pending = new AtomicInteger();
+
+		Lane(Executor executor) {
+			this.executor = executor;
+		}
+
+		void execute(Runnable task) {
+			this.tasks.offer(task);
+			if (this.pending.getAndIncrement() == 0) {
+				try {
+					this.executor.execute(this);
+				}
+				catch (RejectedExecutionException e) {
+					// drain on the calling thread, the lane must not stall
+					run();
+				}
+			}
+		}
+
+		@Override
+		public void run() {
+			do {
+				Runnable task = this.tasks.poll();
+				try {
+					task.run();
+				}
+				catch (Throwable ex) {
+					logger.error("Fan-out task failed", ex);
+				}
+			}
+			while (this.pending.decrementAndGet() != 0);
+		}
+	}
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.pubsub;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.lang.Nullable;
+
+import ch.rasc.wamp2spring.util.ConcurrentLongHashMap;
+
+/**
+ * Default subscriber set. A concurrent hash set of the subscribers plus an index by
+ * WAMP session id. Adding and removing a subscriber is constant time regardless of the
+ * size of the set.
+ */
+final class IndexedSubscriberSet extends SubscriberSet {
+
+	private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+	private final ConcurrentLongHashMap<Subscriber> subscribersByWampSessionId = new ConcurrentLongHashMap<>(
+			16, 1);
+
+	@Override
+	public boolean add(Subscriber subscriber) {
+		boolean added = this.subscribers.add(subscriber);
+		this.subscribersByWampSessionId.put(subscriber.getWampSessionId(), subscriber);
+		return added;
+	}
+
+	@Override
+	public boolean remove(@Nullable Object o) {
+		if (!(o instanceof Subscriber)) {
+			return false;
+		}
+		this.subscribersByWampSessionId.remove(((Subscriber) o).getWampSessionId());
+		return this.subscribers.remove(o);
+	}
+
+	@Override
+	public boolean contains(@Nullable Object o) {
+		return this.subscribers.contains(o);
+	}
+
+	@Override
+	public Iterator<Subscriber> iterator() {
+		return this.subscribers.iterator();
+	}
+
+	@Override
+	public int size() {
+		return this.subscribers.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.subscribers.isEmpty();
+	}
+
+	@Override
+	@Nullable
+	Subscriber get(long wampSessionId) {
+		return this.subscribersByWampSessionId.get(wampSessionId);
+	}
+
+	@Override
+	long estimatedBytes() {
+		int size = this.subscribers.size();
+		int tableLength = 16;
+		while (size > tableLength - (tableLength >>> 2)) {
+			tableLength <<= 1;
+		}
+		// this set, the key set view, the hash map, its table and one node per entry
+		long bytes = RegistryFootprint.align(RegistryFootprint.OBJECT_HEADER + 8) + 24
+				+ 64 + RegistryFootprint.referenceArray(tableLength)
+				+ (long) size * RegistryFootprint.HASH_NODE;
+		bytes += (long) size * RegistryFootprint.SUBSCRIBER;
+		return bytes + RegistryFootprint.longHashMap(this.subscribersByWampSessionId);
+	}
+
+}
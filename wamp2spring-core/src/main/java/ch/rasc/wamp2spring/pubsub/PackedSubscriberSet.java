@@ -0,0 +1,166 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.pubsub;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.springframework.lang.Nullable;
+
+import ch.rasc.wamp2spring.util.ConcurrentLongHashMap;
+
+/**
+ * Subscriber set of the compact registry. Stores only the sorted WAMP session ids of
+ * the subscribers in a copy on write array. The {@link Subscriber} objects are interned
+ * in a map of the registry that is shared by all subscriptions, so each session has
+ * one subscriber object no matter how many topics it is subscribed to.
+ */
+final class PackedSubscriberSet extends SubscriberSet {
+
+	private static final long[] EMPTY = new long[0];
+
+	private final ConcurrentLongHashMap<Subscriber> sessionHandles;
+
+	private volatile long[] wampSessionIds = EMPTY;
+
+	PackedSubscriberSet(ConcurrentLongHashMap<Subscriber> sessionHandles) {
+		this.sessionHandles = sessionHandles;
+	}
+
+	@Override
+	public synchronized boolean add(Subscriber subscriber) {
+		long wampSessionId = subscriber.getWampSessionId();
+		long[] current = this.wampSessionIds;
+		int ix = Arrays.binarySearch(current, wampSessionId);
+		if (ix >= 0) {
+			return false;
+		}
+
+		this.sessionHandles.putIfAbsent(wampSessionId, subscriber);
+
+		int insertAt = -ix - 1;
+		long[] copy = new long[current.length + 1];
+		System.arraycopy(current, 0, copy, 0, insertAt);
+		copy[insertAt] = wampSessionId;
+		System.arraycopy(current, insertAt, copy, insertAt + 1,
+				current.length - insertAt);
+		this.wampSessionIds = copy;
+		return true;
+	}
+
+	@Override
+	public synchronized boolean remove(@Nullable Object o) {
+		if (!(o instanceof Subscriber)) {
+			return false;
+		}
+		long[] current = this.wampSessionIds;
+		int ix = Arrays.binarySearch(current, ((Subscriber) o).getWampSessionId());
+		if (ix < 0) {
+			return false;
+		}
+
+		if (current.length == 1) {
+			this.wampSessionIds = EMPTY;
+		}
+		else {
+			long[] copy = new long[current.length - 1];
+			System.arraycopy(current, 0, copy, 0, ix);
+			System.arraycopy(current, ix + 1, copy, ix, current.length - ix - 1);
+			this.wampSessionIds = copy;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean contains(@Nullable Object o) {
+		return o instanceof Subscriber && Arrays.binarySearch(this.wampSessionIds,
+				((Subscriber) o).getWampSessionId()) >= 0;
+	}
+
+	@Override
+	public Iterator<Subscriber> iterator() {
+		return new SubscriberIterator(this.wampSessionIds);
+	}
+
+	@Override
+	public int size() {
+		return this.wampSessionIds.length;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.wampSessionIds.length == 0;
+	}
+
+	@Override
+	@Nullable
+	Subscriber get(long wampSessionId) {
+		if (Arrays.binarySearch(this.wampSessionIds, wampSessionId) >= 0) {
+			return this.sessionHandles.get(wampSessionId);
+		}
+		return null;
+	}
+
+	@Override
+	long estimatedBytes() {
+		// the interned subscribers are accounted by the registry
+		return RegistryFootprint.align(RegistryFootprint.OBJECT_HEADER + 8)
+				+ RegistryFootprint.longArray(this.wampSessionIds.length);
+	}
+
+	/**
+	 * Iterates over a snapshot of the session ids. Skips the sessions that have been
+	 * closed since the snapshot was taken.
+	 */
+	private final class SubscriberIterator implements Iterator<Subscriber> {
+		private final long[] snapshot;
+
+		private int index;
+
+		@Nullable
+		private Subscriber next;
+
+		SubscriberIterator(long[] snapshot) {
+			this.snapshot = snapshot;
+			advance();
+		}
+
+		private void advance() {
+			this.next = null;
+			while (this.next == null && this.index < this.snapshot.length) {
+				this.next = PackedSubscriberSet.this.sessionHandles
+						.get(this.snapshot[this.index++]);
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.next != null;
+		}
+
+		@Override
+		public Subscriber next() {
+			Subscriber subscriber = this.next;
+			if (subscriber == null) {
+				throw new NoSuchElementException();
+			}
+			advance();
+			return subscriber;
+		}
+	}
+
+}
@@ -17,6 +17,7 @@ package ch.rasc.wamp2spring.pubsub;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -30,6 +31,7 @@ import org.springframework.context.SmartLifecycle;
 import org.springframework.context.event.EventListener;
 import org.springframework.core.MethodIntrospector;
 import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.lang.Nullable;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.MessageHandler;
@@ -42,6 +44,7 @@ import ch.rasc.wamp2spring.WampError;
 import ch.rasc.wamp2spring.annotation.WampListener;
 import ch.rasc.wamp2spring.config.Feature;
 import ch.rasc.wamp2spring.config.Features;
+import ch.rasc.wamp2spring.config.ParallelFanOut;
 import ch.rasc.wamp2spring.event.WampDisconnectEvent;
 import ch.rasc.wamp2spring.event.WampSubscriptionCreatedEvent;
 import ch.rasc.wamp2spring.event.WampSubscriptionDeletedEvent;
@@ -86,11 +89,24 @@ public class PubSubMessageHandler implements MessageHandler, SmartLifecycle,
 
 	private final EventStore eventStore;
 
+	@Nullable
+	private final FanOutLanes fanOutLanes;
+
 	public PubSubMessageHandler(SubscribableChannel clientInboundChannel,
 			SubscribableChannel brokerChannel, MessageChannel clientOutboundChannel,
 			SubscriptionRegistry subscriptionRegistry,
 			HandlerMethodService handlerMethodService, Features features,
 			EventStore eventStore) {
+		this(clientInboundChannel, brokerChannel, clientOutboundChannel,
+				subscriptionRegistry, handlerMethodService, features, eventStore,
+				new ParallelFanOut());
+	}
+
+	public PubSubMessageHandler(SubscribableChannel clientInboundChannel,
+			SubscribableChannel brokerChannel, MessageChannel clientOutboundChannel,
+			SubscriptionRegistry subscriptionRegistry,
+			HandlerMethodService handlerMethodService, Features features,
+			EventStore eventStore, ParallelFanOut parallelFanOut) {
 		this.clientInboundChannel = clientInboundChannel;
 		this.brokerChannel = brokerChannel;
 		this.clientOutboundChannel = clientOutboundChannel;
@@ -98,6 +114,8 @@ public class PubSubMessageHandler implements MessageHandler, SmartLifecycle,
 		this.handlerMethodService = handlerMethodService;
 		this.features = features;
 		this.eventStore = eventStore;
+		this.fanOutLanes = parallelFanOut.isEnabled() ? new FanOutLanes(parallelFanOut)
+				: null;
 	}
 
 	public void setAutoStartup(boolean autoStartup) {
@@ -203,7 +221,7 @@ public class PubSubMessageHandler implements MessageHandler, SmartLifecycle,
 				return;
 			}
 
-			long publicationId = IdGenerator.newRandomId(null);
+			long publicationId = IdGenerator.newRandomId();
 			handlePublishMessage(publishMessage, publicationId);
 
 			if (publishMessage.isAcknowledge()) {
@@ -248,7 +266,7 @@ public class PubSubMessageHandler implements MessageHandler, SmartLifecycle,
 		if (isEligible(publishMessage, subscriber)) {
 			EventMessage eventMessage = new EventMessage(
 					subscriber.getWebSocketSessionId(), subscription.getSubscriptionId(),
-					IdGenerator.newRandomId(null), topic, publisher, true,
+					IdGenerator.newRandomId(), topic, publisher, true,
 					publishMessage);
 			sendMessageToClient(eventMessage);
 		}
@@ -309,6 +327,10 @@ public class PubSubMessageHandler implements MessageHandler, SmartLifecycle,
 
 		if (subscriptions.size() > 0) {
 			Long publisher = null;
+			int eligibleCount = this.features
+					.isEnabled(Feature.BROKER_SUBSCRIBER_BLACKWHITE_LISTING)
+							? publishMessage.getEligibleCount()
+							: -1;
 
 			for (Subscription subscription : subscriptions) {
 				String topic = null;
@@ -319,13 +341,36 @@ public class PubSubMessageHandler implements MessageHandler, SmartLifecycle,
 					publisher = publishMessage.getWampSessionId();
 				}
 
-				for (Subscriber subscriber : subscription.getSubscribers()) {
-					if (isEligible(publishMessage, subscriber)) {
-						EventMessage eventMessage = new EventMessage(
-								subscriber.getWebSocketSessionId(),
-								subscription.getSubscriptionId(), publicationId, topic,
-								publisher, false, publishMessage);
-						sendMessageToClient(eventMessage);
+				// all subscribers of a subscription receive the same event. Only the
+				// receiver differs, so the copies share the serialized bytes
+				Set<Subscriber> subscribers = subscription.getSubscribers();
+				if (eligibleCount >= 0 && eligibleCount < subscribers.size()) {
+					publishEligible(publishMessage,
+							new EventMessage(null, subscription.getSubscriptionId(),
+									publicationId, topic, publisher, false,
+									publishMessage),
+							subscription, eligibleCount);
+				}
+				else if (this.fanOutLanes != null
+						&& this.fanOutLanes.isParallel(subscribers.size())) {
+					publishParallel(publishMessage,
+							new EventMessage(null, subscription.getSubscriptionId(),
+									publicationId, topic, publisher, false,
+									publishMessage),
+							subscribers, this.fanOutLanes);
+				}
+				else {
+					EventMessage subscriptionEvent = null;
+					for (Subscriber subscriber : subscribers) {
+						if (isEligible(publishMessage, subscriber)) {
+							if (subscriptionEvent == null) {
+								subscriptionEvent = new EventMessage(null,
+										subscription.getSubscriptionId(), publicationId,
+										topic, publisher, false, publishMessage);
+							}
+							sendMessageToClient(subscriptionEvent
+									.copyForReceiver(subscriber.getWebSocketSessionId()));
+						}
 					}
 				}
 
@@ -363,6 +408,69 @@ public class PubSubMessageHandler implements MessageHandler, SmartLifecycle,
 		}
 	}
 
+	/**
+	 * Delivers the event only to the sessions of the eligible list. Looks up each
+	 * session in the index of the subscription instead of testing every subscriber.
+	 * Goes through the lanes like a broadcast whenever they are in use, so the event
+	 * cannot overtake an earlier event to the same session that is still queued.
+	 */
+	private void publishEligible(PublishMessage publishMessage,
+			EventMessage subscriptionEvent, Subscription subscription,
+			int eligibleCount) {
+		List<Subscriber> targets = new ArrayList<>(eligibleCount);
+		publishMessage.forEachEligibleId(eligibleId -> {
+			Subscriber subscriber = subscription.getSubscriber(eligibleId);
+			if (subscriber != null) {
+				targets.add(subscriber);
+			}
+		});
+
+		if (this.fanOutLanes != null && this.fanOutLanes.isParallel(targets.size())) {
+			publishParallel(publishMessage, subscriptionEvent, targets,
+					this.fanOutLanes);
+			return;
+		}
+
+		for (Subscriber subscriber : targets) {
+			if (isEligible(publishMessage, subscriber)) {
+				sendMessageToClient(subscriptionEvent
+						.copyForReceiver(subscriber.getWebSocketSessionId()));
+			}
+		}
+	}
+
+	/**
+	 * Splits the subscribers into one chunk per lane and delivers the chunks on the
+	 * lanes. The calling thread only assigns the subscribers to their lane.
+	 */
+	private void publishParallel(PublishMessage publishMessage,
+			EventMessage subscriptionEvent, Collection<Subscriber> subscribers,
+			FanOutLanes lanes) {
+		@SuppressWarnings("unchecked")
+		List<Subscriber>[] chunks = new List[lanes.size()];
+		for (Subscriber subscriber : subscribers) {
+			int lane = lanes.laneOf(subscriber);
+			if (chunks[lane] == null) {
+				chunks[lane] = new ArrayList<>();
+			}
+			chunks[lane].add(subscriber);
+		}
+
+		for (int lane = 0; lane < chunks.length; lane++) {
+			List<Subscriber> chunk = chunks[lane];
+			if (chunk != null) {
+				lanes.execute(lane, () -> {
+					for (Subscriber subscriber : chunk) {
+						if (isEligible(publishMessage, subscriber)) {
+							sendMessageToClient(subscriptionEvent
+									.copyForReceiver(subscriber.getWebSocketSessionId()));
+						}
+					}
+				});
+			}
+		}
+	}
+
 	private boolean isEligible(PublishMessage publishMessage, Subscriber subscriber) {
 
 		String myWebSocketSessionId = publishMessage.getWebSocketSessionId();
@@ -375,13 +483,8 @@ public class PubSubMessageHandler implements MessageHandler, SmartLifecycle,
 		}
 
 		if (this.features.isEnabled(Feature.BROKER_SUBSCRIBER_BLACKWHITE_LISTING)) {
-			if (publishMessage.getEligible() != null && !publishMessage.getEligible()
-					.contains(subscriber.getWampSessionId())) {
-				return false;
-			}
-
-			if (publishMessage.getExclude() != null && publishMessage.getExclude()
-					.contains(subscriber.getWampSessionId())) {
+			if (!publishMessage.isEligible(subscriber.getWampSessionId())
+					|| publishMessage.isExcluded(subscriber.getWampSessionId())) {
 				return false;
 			}
 		}
@@ -429,6 +532,7 @@ public class PubSubMessageHandler implements MessageHandler, SmartLifecycle,
 
 			InvocableHandlerMethod handlerMethod = new InvocableHandlerMethod(
 					new HandlerMethod(this.applicationContext.getBean(beanName), method));
+			this.handlerMethodService.prepare(handlerMethod);
 
 			String[] topics = (String[]) AnnotationUtils
 					.getValue(wampEventListenerAnnotation);
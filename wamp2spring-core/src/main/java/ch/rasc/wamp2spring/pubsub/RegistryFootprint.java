@@ -0,0 +1,120 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.pubsub;
+
+import ch.rasc.wamp2spring.util.ConcurrentLongHashMap;
+
+/**
+ * Estimated heap use of the subscriptions and their subscribers in the
+ * {@link SubscriptionRegistry}. The estimate assumes a 64 bit JVM with compressed
+ * references and does not include the topic strings and the subscribe options.
+ */
+public class RegistryFootprint {
+
+	static final int OBJECT_HEADER = 12;
+
+	static final int SUBSCRIBER = 24;
+
+	static final int HASH_NODE = 32;
+
+	private final boolean compact;
+
+	private final int subscriptions;
+
+	private final long subscribers;
+
+	private final int sessions;
+
+	private final long estimatedBytes;
+
+	RegistryFootprint(boolean compact, int subscriptions, long subscribers, int sessions,
+			long estimatedBytes) {
+		this.compact = compact;
+		this.subscriptions = subscriptions;
+		this.subscribers = subscribers;
+		this.sessions = sessions;
+		this.estimatedBytes = estimatedBytes;
+	}
+
+	/**
+	 * Returns true when the registry uses the compact representation
+	 */
+	public boolean isCompact() {
+		return this.compact;
+	}
+
+	public int getSubscriptions() {
+		return this.subscriptions;
+	}
+
+	/**
+	 * Returns the number of subscriber entries of all subscriptions. A session that is
+	 * subscribed to two topics counts twice.
+	 */
+	public long getSubscribers() {
+		return this.subscribers;
+	}
+
+	/**
+	 * Returns the number of sessions with at least one subscription
+	 */
+	public int getSessions() {
+		return this.sessions;
+	}
+
+	public long getEstimatedBytes() {
+		return this.estimatedBytes;
+	}
+
+	public long getEstimatedBytesPerSubscription() {
+		if (this.subscriptions == 0) {
+			return 0;
+		}
+		return this.estimatedBytes / this.subscriptions;
+	}
+
+	@Override
+	public String toString() {
+		return "RegistryFootprint [compact=" + this.compact + ", subscriptions="
+				+ this.subscriptions + ", subscribers=" + this.subscribers + ", sessions="
+				+ this.sessions + ", estimatedBytes=" + this.estimatedBytes
+				+ ", estimatedBytesPerSubscription="
+				+ getEstimatedBytesPerSubscription() + "]";
+	}
+
+	static long align(long bytes) {
+		return bytes + 7 & ~7L;
+	}
+
+	static long referenceArray(int length) {
+		return align(16 + 4L * length);
+	}
+
+	static long longArray(int length) {
+		return align(16 + 8L * length);
+	}
+
+	/**
+	 * Estimates a {@link ConcurrentLongHashMap}: the map, its sections with their lock
+	 * state and the key and value arrays of the tables. The values are not included.
+	 */
+	static long longHashMap(ConcurrentLongHashMap<?> map) {
+		int sections = map.sections();
+		return 24 + referenceArray(sections) + sections * (56L + 24 + 16 + 16)
+				+ 12L * map.capacity();
+	}
+
+}
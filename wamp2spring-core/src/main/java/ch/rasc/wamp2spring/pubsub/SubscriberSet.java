@@ -0,0 +1,40 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.pubsub;
+
+import java.util.AbstractSet;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * The subscribers of a subscription. Iterators are weakly consistent, a publication
+ * iterates the set while other sessions subscribe and unsubscribe.
+ */
+abstract class SubscriberSet extends AbstractSet<Subscriber> {
+
+	/**
+	 * Returns the subscriber of the WAMP session or null when the session is not
+	 * subscribed
+	 */
+	@Nullable
+	abstract Subscriber get(long wampSessionId);
+
+	/**
+	 * Returns the estimated heap use of the set in bytes
+	 */
+	abstract long estimatedBytes();
+
+}
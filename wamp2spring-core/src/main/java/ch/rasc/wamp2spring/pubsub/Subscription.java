@@ -19,7 +19,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.springframework.lang.Nullable;
 
@@ -31,7 +30,7 @@ class Subscription {
 
 	private final long subscriptionId;
 
-	private final Set<Subscriber> subscribers;
+	private final SubscriberSet subscribers;
 
 	private final long createdTimeMillis;
 
@@ -41,13 +40,13 @@ class Subscription {
 	private List<InvocableHandlerMethod> eventListenerHandlerMethods = null;
 
 	Subscription(String topic, MatchPolicy matchPolicy, long subscriptionId,
-			Map<String, Object> options) {
+			Map<String, Object> options, SubscriberSet subscribers) {
 		this.createdTimeMillis = System.currentTimeMillis();
 
 		this.topicMatch = new DestinationMatch(topic, matchPolicy);
 
 		this.subscriptionId = subscriptionId;
-		this.subscribers = ConcurrentHashMap.newKeySet();
+		this.subscribers = subscribers;
 		this.options = options;
 	}
 
@@ -94,6 +93,21 @@ class Subscription {
 		return this.subscribers;
 	}
 
+	@Nullable
+	Subscriber getSubscriber(long wampSessionId) {
+		return this.subscribers.get(wampSessionId);
+	}
+
+	/**
+	 * Returns the estimated heap use of the subscription and its subscribers in bytes
+	 */
+	long estimatedBytes() {
+		// the subscription with its destination match
+		long bytes = RegistryFootprint.align(RegistryFootprint.OBJECT_HEADER + 32)
+				+ RegistryFootprint.align(RegistryFootprint.OBJECT_HEADER + 12);
+		return bytes + this.subscribers.estimatedBytes();
+	}
+
 	public Map<String, Object> getOptions() {
 		return this.options;
 	}
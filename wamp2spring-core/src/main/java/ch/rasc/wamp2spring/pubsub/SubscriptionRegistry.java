@@ -28,13 +28,14 @@ import java.util.stream.Collectors;
 
 import org.springframework.lang.Nullable;
 
+import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
-import com.github.benmanes.caffeine.cache.LoadingCache;
 
 import ch.rasc.wamp2spring.WampError;
-import ch.rasc.wamp2spring.config.DestinationMatch;
+import ch.rasc.wamp2spring.config.CompactRegistry;
 import ch.rasc.wamp2spring.message.SubscribeMessage;
 import ch.rasc.wamp2spring.message.UnsubscribeMessage;
+import ch.rasc.wamp2spring.util.ConcurrentLongHashMap;
 import ch.rasc.wamp2spring.util.IdGenerator;
 
 /**
@@ -46,14 +47,33 @@ public class SubscriptionRegistry {
 	private final EnumMap<MatchPolicy, Map<String, Subscription>> subscriptionsByMatch = new EnumMap<>(
 			MatchPolicy.class);
 
-	private final Map<Long, Subscription> subscriptionsById = new ConcurrentHashMap<>();
+	private final ConcurrentLongHashMap<Subscription> subscriptionsById = new ConcurrentLongHashMap<>();
 
-	private final LoadingCache<String, Set<Subscription>> subscriptionsCache = Caffeine
-			.newBuilder().maximumSize(512).build(this::internalFindSubscriptions);
+	private final SubscriptionTrie patternSubscriptions = new SubscriptionTrie();
 
-	private final Object monitor = new Object();
+	private final Map<String, Set<Subscription>> subscriptionsByWebSocketSessionId = new ConcurrentHashMap<>();
+
+	private final Cache<String, MatchSnapshot> subscriptionsCache = Caffeine.newBuilder()
+			.maximumSize(512).build();
+
+	/**
+	 * One interned subscriber per WAMP session. Only used by the compact registry.
+	 */
+	@Nullable
+	private final ConcurrentLongHashMap<Subscriber> sessionHandles;
 
 	public SubscriptionRegistry() {
+		this(false);
+	}
+
+	/**
+	 * Creates a registry
+	 *
+	 * @param compact true to store the subscribers in the compact representation. See
+	 * {@link CompactRegistry}
+	 */
+	public SubscriptionRegistry(boolean compact) {
+		this.sessionHandles = compact ? new ConcurrentLongHashMap<>() : null;
 		this.subscriptionsByMatch.put(MatchPolicy.EXACT,
 				new ConcurrentHashMap<String, Subscription>());
 		this.subscriptionsByMatch.put(MatchPolicy.PREFIX,
@@ -65,31 +85,26 @@ public class SubscriptionRegistry {
 	SubscribeResult subscribe(SubscribeMessage subscribeMessage) {
 		Map<String, Subscription> subscriptionMap = this.subscriptionsByMatch
 				.get(subscribeMessage.getMatchPolicy());
-
-		boolean created = false;
-
-		Subscription subscription = subscriptionMap.get(subscribeMessage.getTopic());
-		if (subscription == null) {
-			synchronized (this.monitor) {
-				subscription = subscriptionMap.get(subscribeMessage.getTopic());
-				if (subscription == null) {
-					long subscriptionId = IdGenerator.newLinearId(lastSubscriptionId);
-					subscription = new Subscription(subscribeMessage.getTopic(),
-							subscribeMessage.getMatchPolicy(), subscriptionId,
-							subscribeMessage.getOptions());
-					subscriptionMap.put(subscription.getTopic(), subscription);
-					this.subscriptionsById.put(subscriptionId, subscription);
-					created = true;
-					invalidateCacheEntries(subscription);
-				}
-			}
-		}
 		Subscriber subscriber = new Subscriber(subscribeMessage.getWebSocketSessionId(),
 				subscribeMessage.getWampSessionId());
-		subscription.addSubscriber(subscriber);
+
+		boolean[] created = { false };
+		Subscription subscription = subscriptionMap.compute(subscribeMessage.getTopic(),
+				(topic, existing) -> {
+					Subscription result = existing;
+					if (result == null) {
+						result = createSubscription(topic,
+								subscribeMessage.getMatchPolicy(),
+								subscribeMessage.getOptions());
+						created[0] = true;
+					}
+					result.addSubscriber(subscriber);
+					addSessionSubscription(subscriber.getWebSocketSessionId(), result);
+					return result;
+				});
 
 		return new SubscribeResult(subscribeMessage.getWampSessionId(), subscription,
-				created);
+				created[0]);
 	}
 
 	void subscribeEventHandlers(List<EventListenerInfo> eventListeners) {
@@ -97,23 +112,59 @@ public class SubscriptionRegistry {
 			Map<String, Subscription> subscriptionMap = this.subscriptionsByMatch
 					.get(eventListener.getMatch());
 			for (String topic : eventListener.getTopic()) {
-				synchronized (this.monitor) {
-					Subscription subscription = subscriptionMap.get(topic);
-					if (subscription == null) {
-						long subscriptionId = IdGenerator.newLinearId(lastSubscriptionId);
-						subscription = new Subscription(topic, eventListener.getMatch(),
-								subscriptionId, null);
-						subscriptionMap.put(subscription.getTopic(), subscription);
-						this.subscriptionsById.put(subscriptionId, subscription);
-						invalidateCacheEntries(subscription);
+				subscriptionMap.compute(topic, (t, existing) -> {
+					Subscription result = existing;
+					if (result == null) {
+						result = createSubscription(t, eventListener.getMatch(), null);
 					}
-					subscription.addEventListenerHandlerMethod(
-							eventListener.getHandlerMethod());
-				}
+					result.addEventListenerHandlerMethod(eventListener.getHandlerMethod());
+					return result;
+				});
 			}
 		}
 	}
 
+	/**
+	 * Creates a new subscription and adds it to the id and pattern indexes. Called from
+	 * within a compute function of the topic map, which serializes creation and deletion
+	 * of the same topic.
+	 */
+	private Subscription createSubscription(String topic, MatchPolicy matchPolicy,
+			@Nullable Map<String, Object> options) {
+		long subscriptionId = IdGenerator.newLinearId(lastSubscriptionId);
+		Subscription subscription;
+		if (this.sessionHandles != null) {
+			subscription = new Subscription(topic, matchPolicy, subscriptionId,
+					compactOptions(options), new PackedSubscriberSet(this.sessionHandles));
+		}
+		else {
+			subscription = new Subscription(topic, matchPolicy, subscriptionId, options,
+					new IndexedSubscriberSet());
+		}
+		this.subscriptionsById.put(subscriptionId, subscription);
+		this.patternSubscriptions.add(subscription);
+		return subscription;
+	}
+
+	/**
+	 * Copies the options into an immutable map that only holds the entries. Options with
+	 * null values are kept as they are.
+	 */
+	@Nullable
+	private static Map<String, Object> compactOptions(
+			@Nullable Map<String, Object> options) {
+		if (options == null) {
+			return null;
+		}
+		if (options.isEmpty()) {
+			return Collections.emptyMap();
+		}
+		if (options.containsValue(null)) {
+			return options;
+		}
+		return Map.copyOf(options);
+	}
+
 	UnsubscribeResult unsubscribe(UnsubscribeMessage message) {
 		Subscription subscription = this.subscriptionsById
 				.get(message.getSubscriptionId());
@@ -122,19 +173,9 @@ public class SubscriptionRegistry {
 			Subscriber subscriber = new Subscriber(message.getWebSocketSessionId(),
 					message.getWampSessionId());
 
-			synchronized (this.monitor) {
-				if (subscription.removeSubscriber(subscriber)) {
-					boolean deleted = false;
-					if (!subscription.hasSubscribers()) {
-						this.subscriptionsByMatch.get(subscription.getMatchPolicy())
-								.remove(subscription.getTopic());
-						this.subscriptionsById.remove(subscription.getSubscriptionId());
-						deleted = true;
-						invalidateCacheEntries(subscription);
-					}
-					return new UnsubscribeResult(message.getWampSessionId(), subscription,
-							deleted);
-				}
+			UnsubscribeResult result = removeSubscriber(subscription, subscriber);
+			if (result != null) {
+				return result;
 			}
 		}
 
@@ -144,41 +185,112 @@ public class SubscriptionRegistry {
 
 	List<UnsubscribeResult> removeWebSocketSessionId(String webSocketSessionId,
 			long wampSessionId) {
-		List<UnsubscribeResult> results = new ArrayList<>();
-		for (MatchPolicy matchPolicy : MatchPolicy.values()) {
-			Map<String, Subscription> subscriptionMap = this.subscriptionsByMatch
-					.get(matchPolicy);
-
-			for (Subscription subscription : subscriptionMap.values()) {
-				Subscriber subscriber = new Subscriber(webSocketSessionId, wampSessionId);
-
-				synchronized (this.monitor) {
-					if (subscription.removeSubscriber(subscriber)) {
-						boolean deleted = false;
-						if (!subscription.hasSubscribers()) {
-							subscriptionMap.remove(subscription.getTopic());
-							this.subscriptionsById
-									.remove(subscription.getSubscriptionId());
-							deleted = true;
-							invalidateCacheEntries(subscription);
-						}
+		if (this.sessionHandles != null) {
+			// iterators of the packed subscriber sets skip the removed session
+			this.sessionHandles.remove(wampSessionId);
+		}
 
-						results.add(new UnsubscribeResult(wampSessionId, subscription,
-								deleted));
-					}
+		List<UnsubscribeResult> results = null;
+		Subscriber subscriber = new Subscriber(webSocketSessionId, wampSessionId);
+		Set<Subscription> subscriptions;
+		// a subscribe that runs concurrently creates a new entry, loop until none is left
+		while ((subscriptions = this.subscriptionsByWebSocketSessionId
+				.remove(webSocketSessionId)) != null) {
+			if (results == null) {
+				results = new ArrayList<>(subscriptions.size());
+			}
+			for (Subscription subscription : subscriptions) {
+				UnsubscribeResult result = removeSubscriber(subscription, subscriber);
+				if (result != null) {
+					results.add(result);
 				}
 			}
-
 		}
-		return results;
+		return results != null ? results : Collections.emptyList();
 	}
 
+	/**
+	 * Detaches the subscriber from the subscription and deletes the subscription when no
+	 * subscriber and no event listener is attached to it anymore. Only the topic of the
+	 * subscription is locked while doing this. The session index is updated under the
+	 * same lock, so it always agrees with the subscribers of the subscription.
+	 *
+	 * @return the result or null if the subscriber was not attached to the subscription
+	 */
 	@Nullable
+	private UnsubscribeResult removeSubscriber(Subscription subscription,
+			Subscriber subscriber) {
+		boolean[] removed = { false };
+		boolean[] deleted = { false };
+
+		this.subscriptionsByMatch.get(subscription.getMatchPolicy()).computeIfPresent(
+				subscription.getTopic(), (topic, existing) -> {
+					if (existing != subscription
+							|| !existing.removeSubscriber(subscriber)) {
+						return existing;
+					}
+					removed[0] = true;
+					removeSessionSubscription(subscriber.getWebSocketSessionId(),
+							existing);
+					if (!existing.hasSubscribers()) {
+						this.subscriptionsById.remove(existing.getSubscriptionId());
+						this.patternSubscriptions.remove(existing);
+						deleted[0] = true;
+						return null;
+					}
+					return existing;
+				});
+
+		if (!removed[0]) {
+			return null;
+		}
+		return new UnsubscribeResult(subscriber.getWampSessionId(), subscription,
+				deleted[0]);
+	}
+
+	private void addSessionSubscription(@Nullable String webSocketSessionId,
+			Subscription subscription) {
+		if (webSocketSessionId != null) {
+			this.subscriptionsByWebSocketSessionId.compute(webSocketSessionId,
+					(k, subscriptions) -> {
+						Set<Subscription> result = subscriptions;
+						if (result == null) {
+							result = ConcurrentHashMap.newKeySet();
+						}
+						result.add(subscription);
+						return result;
+					});
+		}
+	}
+
+	private void removeSessionSubscription(@Nullable String webSocketSessionId,
+			Subscription subscription) {
+		if (webSocketSessionId != null) {
+			this.subscriptionsByWebSocketSessionId.computeIfPresent(webSocketSessionId,
+					(k, subscriptions) -> {
+						subscriptions.remove(subscription);
+						return subscriptions.isEmpty() ? null : subscriptions;
+					});
+		}
+	}
+
+	/**
+	 * Returns all subscriptions matching the topic. The returned set is an immutable
+	 * snapshot that is shared between callers and reused as long as neither the exact
+	 * subscription of the topic nor one of the pattern branches the snapshot has been
+	 * computed from has changed. Changes to other topics do not invalidate it.
+	 */
 	Set<Subscription> findSubscriptions(String topic) {
-		return this.subscriptionsCache.get(topic);
+		MatchSnapshot snapshot = this.subscriptionsCache.getIfPresent(topic);
+		if (snapshot == null || !snapshot.isCurrent(this.subscriptionsByMatch
+				.get(MatchPolicy.EXACT).get(topic))) {
+			snapshot = internalFindSubscriptions(topic);
+			this.subscriptionsCache.put(topic, snapshot);
+		}
+		return snapshot.subscriptions;
 	}
 
-	private Set<Subscription> internalFindSubscriptions(String topic) {
+	private MatchSnapshot internalFindSubscriptions(String topic) {
 		Set<Subscription> subscriptions = new HashSet<>();
 
 		Subscription exactSubscription = this.subscriptionsByMatch.get(MatchPolicy.EXACT)
@@ -187,34 +299,11 @@ public class SubscriptionRegistry {
 			subscriptions.add(exactSubscription);
 		}
 
-		Map<String, Subscription> prefixSubscriptionMap = this.subscriptionsByMatch
-				.get(MatchPolicy.PREFIX);
-		for (Subscription prefixSubscription : prefixSubscriptionMap.values()) {
-			if (prefixSubscription.getTopicMatch().matches(topic)) {
-				subscriptions.add(prefixSubscription);
-			}
-		}
-
-		Map<String, Subscription> wildcardSubscriptionMap = this.subscriptionsByMatch
-				.get(MatchPolicy.WILDCARD);
-		String[] components = topic.split("\\.");
-		for (Subscription wildcardSubscription : wildcardSubscriptionMap.values()) {
-			if (wildcardSubscription.getTopicMatch().matchesWildcard(components)) {
-				subscriptions.add(wildcardSubscription);
-			}
-		}
-
-		return subscriptions;
-	}
+		SubscriptionTrie.Match patternMatch = this.patternSubscriptions
+				.collectMatches(topic, subscriptions);
 
-	private void invalidateCacheEntries(Subscription subscription) {
-		if (subscription.getMatchPolicy() == MatchPolicy.EXACT) {
-			this.subscriptionsCache.invalidate(subscription.getTopic());
-		}
-		else {
-			DestinationMatch topicMatch = subscription.getTopicMatch();
-			this.subscriptionsCache.asMap().keySet().removeIf(topicMatch::matches);
-		}
+		return new MatchSnapshot(exactSubscription, patternMatch,
+				Collections.unmodifiableSet(subscriptions));
 	}
 
 	/**
@@ -315,6 +404,35 @@ public class SubscriptionRegistry {
 		return null;
 	}
 
+	/**
+	 * Returns the number of subscriptions and subscribers and their estimated heap use
+	 *
+	 * @return the footprint of the registry
+	 */
+	public RegistryFootprint footprint() {
+		int subscriptions = 0;
+		long subscribers = 0;
+		long bytes = 0;
+		for (Subscription subscription : this.subscriptionsById.values()) {
+			subscriptions++;
+			subscribers += subscription.getSubscribers().size();
+			bytes += subscription.estimatedBytes();
+		}
+
+		int sessions;
+		if (this.sessionHandles != null) {
+			sessions = this.sessionHandles.size();
+			bytes += RegistryFootprint.longHashMap(this.sessionHandles)
+					+ (long) sessions * RegistryFootprint.SUBSCRIBER;
+		}
+		else {
+			sessions = this.subscriptionsByWebSocketSessionId.size();
+		}
+
+		return new RegistryFootprint(this.sessionHandles != null, subscriptions,
+				subscribers, sessions, bytes);
+	}
+
 	/**
 	 * Checks if a particular topic currently has attached subscriptions
 	 *
@@ -325,4 +443,25 @@ public class SubscriptionRegistry {
 		return !getMatchSubscriptions(topic).isEmpty();
 	}
 
+	private static final class MatchSnapshot {
+		@Nullable
+		private final Subscription exactSubscription;
+
+		private final SubscriptionTrie.Match patternMatch;
+
+		final Set<Subscription> subscriptions;
+
+		MatchSnapshot(@Nullable Subscription exactSubscription,
+				SubscriptionTrie.Match patternMatch, Set<Subscription> subscriptions) {
+			this.exactSubscription = exactSubscription;
+			this.patternMatch = patternMatch;
+			this.subscriptions = subscriptions;
+		}
+
+		boolean isCurrent(@Nullable Subscription currentExactSubscription) {
+			return this.exactSubscription == currentExactSubscription
+					&& this.patternMatch.isCurrent();
+		}
+	}
+
 }
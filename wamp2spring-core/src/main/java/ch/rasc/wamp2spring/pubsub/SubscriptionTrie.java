@@ -0,0 +1,300 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.pubsub;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.springframework.lang.Nullable;
+
+import ch.rasc.wamp2spring.util.UriComponents;
+
+/**
+ * Index of the {@link MatchPolicy#PREFIX} and {@link MatchPolicy#WILDCARD}
+ * subscriptions. Both are stored in a trie keyed by the dot separated components of
+ * the topic URI, so a lookup only walks the branches that match the published topic.
+ * <p>
+ * Prefix subscriptions are stored at the node of their last complete component. The
+ * remaining (possibly partial) component is kept as a tail string on that node because
+ * a prefix subscription matches on the character level (<code>com.myapp.us</code>
+ * matches <code>com.myapp.user</code>).
+ * <p>
+ * Wildcard subscriptions are stored at the node of their last component. An empty
+ * component is the wildcard and matches any component of the topic.
+ * <p>
+ * Lookups and mutations may run concurrently. Mutations of the same topic must be
+ * serialized by the caller.
+ * <p>
+ * Every node carries a version that is incremented after a subscription or a child has
+ * been added to or removed from it. A lookup records the versions of all nodes it has
+ * visited in a {@link Match}, which is therefore able to tell if a later change has
+ * touched one of the branches the result was computed from.
+ */
+class SubscriptionTrie {
+
+	private final Node prefixRoot = new Node();
+
+	private final Node wildcardRoot = new Node();
+
+	void add(Subscription subscription) {
+		while (!tryAdd(subscription)) {
+			// a node on the path has been pruned concurrently, try again
+		}
+	}
+
+	private boolean tryAdd(Subscription subscription) {
+		String topic = subscription.getTopic();
+		List<Node> path = new ArrayList<>();
+		if (subscription.getMatchPolicy() == MatchPolicy.PREFIX) {
+			Node node = this.prefixRoot;
+			int start = 0;
+			int dot;
+			while ((dot = topic.indexOf('.', start)) != -1) {
+				node = child(node, topic.substring(start, dot));
+				path.add(node);
+				start = dot + 1;
+			}
+			node.prefixTails.put(topic.substring(start), subscription);
+			node.version.incrementAndGet();
+		}
+		else if (subscription.getMatchPolicy() == MatchPolicy.WILDCARD) {
+			Node node = this.wildcardRoot;
+			for (String component : UriComponents.split(topic)) {
+				node = child(node, component);
+				path.add(node);
+			}
+			node.wildcardSubscription = subscription;
+			node.version.incrementAndGet();
+		}
+
+		for (Node node : path) {
+			if (node.pruned) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the child node of the component and creates it if it does not exist yet.
+	 * The version of the parent is incremented when a new child has been inserted.
+	 */
+	private static Node child(Node parent, String component) {
+		Node child = parent.children.get(component);
+		if (child == null) {
+			Node newChild = new Node();
+			child = parent.children.putIfAbsent(component, newChild);
+			if (child == null) {
+				parent.version.incrementAndGet();
+				child = newChild;
+			}
+		}
+		return child;
+	}
+
+	void remove(Subscription subscription) {
+		String topic = subscription.getTopic();
+		if (subscription.getMatchPolicy() == MatchPolicy.PREFIX) {
+			List<String> path = new ArrayList<>();
+			int start = 0;
+			int dot;
+			while ((dot = topic.indexOf('.', start)) != -1) {
+				path.add(topic.substring(start, dot));
+				start = dot + 1;
+			}
+			String tail = topic.substring(start);
+			remove(this.prefixRoot, path, 0,
+					node -> node.prefixTails.remove(tail, subscription));
+		}
+		else if (subscription.getMatchPolicy() == MatchPolicy.WILDCARD) {
+			List<String> path = Arrays.asList(UriComponents.split(topic));
+			remove(this.wildcardRoot, path, 0, node -> {
+				if (node.wildcardSubscription == subscription) {
+					node.wildcardSubscription = null;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Walks down the path, applies the removal on the last node and prunes all nodes
+	 * that become empty on the way back up.
+	 * <p>
+	 * A node is flagged as pruned before its emptiness is checked and a concurrent
+	 * {@link #tryAdd(Subscription)} checks the flags after it has written into the
+	 * nodes. So either the pruning sees the new entry and keeps the node, or the add
+	 * sees the flag and starts over.
+	 */
+	private static void remove(Node node, List<String> path, int depth,
+			Consumer<Node> removal) {
+		if (depth == path.size()) {
+			removal.accept(node);
+			node.version.incrementAndGet();
+			return;
+		}
+		String component = path.get(depth);
+		Node child = node.children.get(component);
+		if (child != null) {
+			remove(child, path, depth + 1, removal);
+			Node remaining = node.children.computeIfPresent(component, (k, c) -> {
+				c.pruned = true;
+				if (c.isEmpty()) {
+					return null;
+				}
+				c.pruned = false;
+				return c;
+			});
+			if (remaining == null) {
+				node.version.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Adds all prefix and wildcard subscriptions matching the topic to the provided set
+	 * and returns a {@link Match} that is current as long as no visited node has
+	 * changed.
+	 */
+	Match collectMatches(String topic, Set<Subscription> result) {
+		Match match = new Match();
+		collectPrefixMatches(topic, result, match);
+		match.visit(this.wildcardRoot);
+		if (!this.wildcardRoot.isEmpty()) {
+			int limit = UriComponents.limit(topic);
+			collectWildcardMatches(this.wildcardRoot, topic,
+					UriComponents.first(topic, limit), limit, result, match);
+		}
+		return match;
+	}
+
+	private void collectPrefixMatches(String topic, Set<Subscription> result,
+			Match match) {
+		Node node = this.prefixRoot;
+		int start = 0;
+		while (true) {
+			match.visit(node);
+			for (Map.Entry<String, Subscription> entry : node.prefixTails.entrySet()) {
+				if (topic.startsWith(entry.getKey(), start)) {
+					result.add(entry.getValue());
+				}
+			}
+
+			int dot = topic.indexOf('.', start);
+			if (dot == -1) {
+				return;
+			}
+			node = node.children.get(topic.substring(start, dot));
+			if (node == null) {
+				return;
+			}
+			start = dot + 1;
+		}
+	}
+
+	/**
+	 * Walks the wildcard trie along the components of the topic. The components are
+	 * addressed by their offsets in the topic, the topic is not split.
+	 *
+	 * @param start the start offset of the current component or -1 when all components
+	 * have been consumed
+	 */
+	private static void collectWildcardMatches(Node node, String topic, int start,
+			int limit, Set<Subscription> result, Match match) {
+		if (start == -1) {
+			Subscription subscription = node.wildcardSubscription;
+			if (subscription != null) {
+				result.add(subscription);
+			}
+			return;
+		}
+
+		int end = UriComponents.end(topic, start, limit);
+		int next = end + 1 > limit ? -1 : end + 1;
+		if (end > start) {
+			Node child = node.children.get(topic.substring(start, end));
+			if (child != null) {
+				match.visit(child);
+				collectWildcardMatches(child, topic, next, limit, result, match);
+			}
+		}
+		// an empty component of the topic only matches the wildcard child
+		Node wildcardChild = node.children.get("");
+		if (wildcardChild != null) {
+			match.visit(wildcardChild);
+			collectWildcardMatches(wildcardChild, topic, next, limit, result, match);
+		}
+	}
+
+	private static class Node {
+		final Map<String, Node> children = new ConcurrentHashMap<>();
+
+		final Map<String, Subscription> prefixTails = new ConcurrentHashMap<>();
+
+		@Nullable
+		volatile Subscription wildcardSubscription;
+
+		volatile boolean pruned;
+
+		final AtomicLong version = new AtomicLong();
+
+		boolean isEmpty() {
+			return this.children.isEmpty() && this.prefixTails.isEmpty()
+					&& this.wildcardSubscription == null;
+		}
+	}
+
+	/**
+	 * The nodes a lookup has visited together with the versions they had when the
+	 * lookup read them. A version is always read before the content of the node, so a
+	 * concurrent change either is part of the result or makes the match stale.
+	 */
+	static final class Match {
+		private Node[] nodes = new Node[8];
+
+		private long[] versions = new long[8];
+
+		private int size;
+
+		void visit(Node node) {
+			if (this.size == this.nodes.length) {
+				this.nodes = Arrays.copyOf(this.nodes, this.size * 2);
+				this.versions = Arrays.copyOf(this.versions, this.size * 2);
+			}
+			this.nodes[this.size] = node;
+			this.versions[this.size] = node.version.get();
+			this.size++;
+		}
+
+		/**
+		 * Returns true when none of the visited nodes has changed since the lookup.
+		 */
+		boolean isCurrent() {
+			for (int i = 0; i < this.size; i++) {
+				if (this.nodes[i].version.get() != this.versions[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+}
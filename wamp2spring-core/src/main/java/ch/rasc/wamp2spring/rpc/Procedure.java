@@ -15,10 +15,16 @@
  */
 package ch.rasc.wamp2spring.rpc;
 
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
 
 import ch.rasc.wamp2spring.message.RegisterMessage;
+import ch.rasc.wamp2spring.util.ConcurrentLongHashSet;
 
 public class Procedure {
 	private final String procedure;
@@ -29,7 +35,9 @@ public class Procedure {
 
 	private final long registrationId;
 
-	private final Set<Long> pendingInvocations;
+	private final ConcurrentLongHashSet pendingInvocations;
+
+	private final Set<Long> pendingInvocationsView = new PendingInvocationsView();
 
 	public Procedure(RegisterMessage registerMessage, long registrationId,
 			boolean isDealerCallerIdentificationFeatureEnabled) {
@@ -42,7 +50,7 @@ public class Procedure {
 			this.discloseCaller = false;
 		}
 		this.registrationId = registrationId;
-		this.pendingInvocations = ConcurrentHashMap.newKeySet();
+		this.pendingInvocations = new ConcurrentLongHashSet(16, 1);
 	}
 
 	public String getProcedure() {
@@ -65,8 +73,17 @@ public class Procedure {
 		this.pendingInvocations.remove(requestId);
 	}
 
+	/**
+	 * Returns a read-only view of the request ids of the pending invocations. Iterating
+	 * the view boxes every id, internal callers use
+	 * {@link #forEachPendingInvocation(LongConsumer)} instead.
+	 */
 	public Set<Long> getPendingInvocations() {
-		return this.pendingInvocations;
+		return this.pendingInvocationsView;
+	}
+
+	void forEachPendingInvocation(LongConsumer consumer) {
+		this.pendingInvocations.forEach(consumer);
 	}
 
 	public boolean isDiscloseCaller() {
@@ -81,4 +98,30 @@ public class Procedure {
 				+ this.pendingInvocations + "]";
 	}
 
+	private final class PendingInvocationsView extends AbstractSet<Long> {
+
+		@Override
+		public boolean contains(Object o) {
+			return o instanceof Long
+					&& Procedure.this.pendingInvocations.contains((Long) o);
+		}
+
+		@Override
+		public int size() {
+			return Procedure.this.pendingInvocations.size();
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return Procedure.this.pendingInvocations.isEmpty();
+		}
+
+		@Override
+		public Iterator<Long> iterator() {
+			List<Long> snapshot = new ArrayList<>();
+			Procedure.this.pendingInvocations.forEach(snapshot::add);
+			return Collections.unmodifiableList(snapshot).iterator();
+		}
+	}
+
 }
@@ -34,6 +34,7 @@ import ch.rasc.wamp2spring.message.RegisterMessage;
 import ch.rasc.wamp2spring.message.UnregisterMessage;
 import ch.rasc.wamp2spring.message.WampMessage;
 import ch.rasc.wamp2spring.message.YieldMessage;
+import ch.rasc.wamp2spring.util.ConcurrentLongHashMap;
 import ch.rasc.wamp2spring.util.IdGenerator;
 
 public class ProcedureRegistry {
@@ -41,9 +42,9 @@ public class ProcedureRegistry {
 
 	private final Map<String, Procedure> procedures = new ConcurrentHashMap<>();
 
-	private final Map<Long, String> registrations = new ConcurrentHashMap<>();
+	private final ConcurrentLongHashMap<String> registrations = new ConcurrentLongHashMap<>();
 
-	private final Map<Long, CallProc> pendingInvocations = new ConcurrentHashMap<>();
+	private final ConcurrentLongHashMap<CallProc> pendingInvocations = new ConcurrentLongHashMap<>();
 
 	private final Features features;
 
@@ -103,11 +104,10 @@ public class ProcedureRegistry {
 
 	private static List<ErrorMessage> createErrorsForPendingInvocations(Procedure proc) {
 		List<ErrorMessage> errorMessages = new ArrayList<>();
-		for (Long invocationRequestId : proc.getPendingInvocations()) {
-			errorMessages.add(new ErrorMessage(InvocationMessage.CODE,
-					invocationRequestId,
-					WampError.NO_SUCH_REGISTRATION.getExternalValue(), null, null));
-		}
+		proc.forEachPendingInvocation(
+				invocationRequestId -> errorMessages.add(new ErrorMessage(
+						InvocationMessage.CODE, invocationRequestId,
+						WampError.NO_SUCH_REGISTRATION.getExternalValue(), null, null)));
 		return errorMessages;
 	}
 
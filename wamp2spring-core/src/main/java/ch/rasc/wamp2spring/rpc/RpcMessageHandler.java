@@ -61,6 +61,7 @@ import ch.rasc.wamp2spring.message.WampMessage;
 import ch.rasc.wamp2spring.message.YieldMessage;
 import ch.rasc.wamp2spring.util.HandlerMethodService;
 import ch.rasc.wamp2spring.util.InvocableHandlerMethod;
+import ch.rasc.wamp2spring.util.UriDictionary;
 
 public class RpcMessageHandler implements MessageHandler, SmartLifecycle,
 		InitializingBean, ApplicationContextAware {
@@ -87,6 +88,8 @@ public class RpcMessageHandler implements MessageHandler, SmartLifecycle,
 
 	private final Features features;
 
+	private UriDictionary uriDictionary = UriDictionary.NONE;
+
 	public RpcMessageHandler(SubscribableChannel clientInboundChannel,
 			MessageChannel clientOutboundChannel, ProcedureRegistry procedureRegistry,
 			HandlerMethodService handlerMethodService, Features features) {
@@ -101,6 +104,14 @@ public class RpcMessageHandler implements MessageHandler, SmartLifecycle,
 		this.autoStartup = autoStartup;
 	}
 
+	/**
+	 * Sets the dictionary of the decoders, so the mapped procedures share the URI
+	 * instances of the decoded CALL messages
+	 */
+	public void setUriDictionary(UriDictionary uriDictionary) {
+		this.uriDictionary = uriDictionary;
+	}
+
 	@Override
 	public boolean isAutoStartup() {
 		return this.autoStartup;
@@ -346,13 +357,14 @@ public class RpcMessageHandler implements MessageHandler, SmartLifecycle,
 
 			InvocableHandlerMethod handlerMethod = new InvocableHandlerMethod(
 					new HandlerMethod(this.applicationContext.getBean(beanName), method));
+			this.handlerMethodService.prepare(handlerMethod);
 
 			String procedure = (String) AnnotationUtils.getValue(annotation);
 			if (!StringUtils.hasText(procedure)) {
 				procedure = beanName + "." + method.getName();
 			}
 
-			this.wampMethods.put(procedure, handlerMethod);
+			this.wampMethods.put(this.uriDictionary.intern(procedure), handlerMethod);
 
 			if (this.logger.isInfoEnabled()) {
 				this.logger.info("Mapped \"" + procedure + "\" onto " + handlerMethod);
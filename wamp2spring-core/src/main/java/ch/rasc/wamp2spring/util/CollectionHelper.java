@@ -90,4 +90,24 @@ public class CollectionHelper {
 		}
 		return null;
 	}
+
+	/**
+	 * Sorts the first values of the array and removes the duplicates. The array is
+	 * modified.
+	 *
+	 * @param values the values
+	 * @param size the number of values at the start of the array
+	 * @return the distinct values in ascending order, the provided array when it has the
+	 * exact size
+	 */
+	public static long[] toSortedDistinct(long[] values, int size) {
+		Arrays.sort(values, 0, size);
+		int distinct = 0;
+		for (int i = 0; i < size; i++) {
+			if (distinct == 0 || values[i] != values[distinct - 1]) {
+				values[distinct++] = values[i];
+			}
+		}
+		return distinct == values.length ? values : Arrays.copyOf(values, distinct);
+	}
 }
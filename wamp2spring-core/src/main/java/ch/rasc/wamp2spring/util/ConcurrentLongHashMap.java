@@ -0,0 +1,356 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * Concurrent map with primitive long keys. Used for the bookkeeping of subscriptions,
+ * registrations and invocations, which are all keyed by WAMP ids, so the keys are not
+ * boxed and an entry does not need a node object.
+ * <p>
+ * The map is split into sections, each an open addressing hash table with linear
+ * probing guarded by a {@link StampedLock}. Lookups are optimistic and only take the
+ * read lock when they overlap with a write to the same section. Null values are not
+ * supported.
+ *
+ * @param <V> the type of the values
+ */
+public class ConcurrentLongHashMap<V> {
+
+	private final Section<V>[] sections;
+
+	private final int sectionMask;
+
+	public ConcurrentLongHashMap() {
+		this(16, 16);
+	}
+
+	/**
+	 * @param expectedItems the expected number of entries
+	 * @param concurrencyLevel the number of sections, rounded up to a power of two
+	 */
+	@SuppressWarnings("unchecked")
+	public ConcurrentLongHashMap(int expectedItems, int concurrencyLevel) {
+		int numberOfSections = LongHashing.powerOfTwo(Math.max(1, concurrencyLevel));
+		this.sections = new Section[numberOfSections];
+		this.sectionMask = numberOfSections - 1;
+		int perSection = Math.max(1, expectedItems / numberOfSections);
+		for (int i = 0; i < numberOfSections; i++) {
+			this.sections[i] = new Section<>(perSection);
+		}
+	}
+
+	private Section<V> section(long hash) {
+		return this.sections[(int) (hash >>> 32) & this.sectionMask];
+	}
+
+	@Nullable
+	public V get(long key) {
+		long hash = LongHashing.hash(key);
+		return section(hash).get(key, (int) hash);
+	}
+
+	public boolean containsKey(long key) {
+		return get(key) != null;
+	}
+
+	/**
+	 * Associates the value with the key and returns the previous value
+	 */
+	@Nullable
+	public V put(long key, V value) {
+		long hash = LongHashing.hash(key);
+		return section(hash).put(key, value, (int) hash, false);
+	}
+
+	/**
+	 * Associates the value with the key if the key is not mapped yet. Returns the
+	 * existing value or null when the value was inserted.
+	 */
+	@Nullable
+	public V putIfAbsent(long key, V value) {
+		long hash = LongHashing.hash(key);
+		return section(hash).put(key, value, (int) hash, true);
+	}
+
+	@Nullable
+	public V remove(long key) {
+		long hash = LongHashing.hash(key);
+		return section(hash).remove(key, null, (int) hash);
+	}
+
+	/**
+	 * Removes the entry only if the key is mapped to the provided value
+	 */
+	public boolean remove(long key, V value) {
+		long hash = LongHashing.hash(key);
+		return section(hash).remove(key, value, (int) hash) != null;
+	}
+
+	public int size() {
+		int size = 0;
+		for (Section<V> section : this.sections) {
+			size += section.size;
+		}
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Returns the number of slots of all sections
+	 */
+	public int capacity() {
+		int capacity = 0;
+		for (Section<V> section : this.sections) {
+			capacity += section.table.mask + 1;
+		}
+		return capacity;
+	}
+
+	/**
+	 * Returns the number of sections
+	 */
+	public int sections() {
+		return this.sections.length;
+	}
+
+	/**
+	 * Returns a snapshot of the values
+	 */
+	public List<V> values() {
+		List<V> values = new ArrayList<>(size());
+		for (Section<V> section : this.sections) {
+			section.addValues(values);
+		}
+		return values;
+	}
+
+	public void clear() {
+		for (Section<V> section : this.sections) {
+			section.clear();
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("{");
+		for (Section<V> section : this.sections) {
+			section.appendTo(sb);
+		}
+		if (sb.length() > 1) {
+			sb.setLength(sb.length() - 2);
+		}
+		return sb.append('}').toString();
+	}
+
+	private static final class Table<V> {
+		final long[] keys;
+
+		final V[] values;
+
+		final int mask;
+
+		@SuppressWarnings("unchecked")
+		Table(int capacity) {
+			this.keys = new long[capacity];
+			this.values = (V[]) new Object[capacity];
+			this.mask = capacity - 1;
+		}
+
+		/**
+		 * Returns the slot of the key or the empty slot where the key belongs. Bounded by
+		 * the capacity, so a lookup that races with a write always terminates.
+		 */
+		int find(long key, int hash) {
+			int slot = hash & this.mask;
+			for (int i = 0; i <= this.mask; i++) {
+				if (this.values[slot] == null || this.keys[slot] == key) {
+					return slot;
+				}
+				slot = (slot + 1) & this.mask;
+			}
+			return -1;
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static final class Section<V> extends StampedLock {
+
+		private volatile Table<V> table;
+
+		private volatile int size;
+
+		Section(int expectedItems) {
+			this.table = new Table<>(LongHashing.capacityFor(expectedItems));
+		}
+
+		@Nullable
+		V get(long key, int hash) {
+			long stamp = tryOptimisticRead();
+			V value = find(this.table, key, hash);
+			if (validate(stamp)) {
+				return value;
+			}
+
+			stamp = readLock();
+			try {
+				return find(this.table, key, hash);
+			}
+			finally {
+				unlockRead(stamp);
+			}
+		}
+
+		@Nullable
+		private static <V> V find(Table<V> table, long key, int hash) {
+			int slot = table.find(key, hash);
+			return slot >= 0 ? table.values[slot] : null;
+		}
+
+		@Nullable
+		V put(long key, V value, int hash, boolean onlyIfAbsent) {
+			long stamp = writeLock();
+			try {
+				Table<V> current = this.table;
+				int slot = current.find(key, hash);
+				V existing = current.values[slot];
+				if (existing != null) {
+					if (!onlyIfAbsent) {
+						current.values[slot] = value;
+					}
+					return existing;
+				}
+
+				current.keys[slot] = key;
+				current.values[slot] = value;
+				this.size++;
+				if (LongHashing.isFull(this.size, current.mask + 1)) {
+					rehash(current);
+				}
+				return null;
+			}
+			finally {
+				unlockWrite(stamp);
+			}
+		}
+
+		private void rehash(Table<V> current) {
+			Table<V> larger = new Table<>((current.mask + 1) * 2);
+			for (int i = 0; i <= current.mask; i++) {
+				V value = current.values[i];
+				if (value != null) {
+					long key = current.keys[i];
+					int slot = larger.find(key, (int) LongHashing.hash(key));
+					larger.keys[slot] = key;
+					larger.values[slot] = value;
+				}
+			}
+			this.table = larger;
+		}
+
+		@Nullable
+		V remove(long key, @Nullable V expectedValue, int hash) {
+			long stamp = writeLock();
+			try {
+				Table<V> current = this.table;
+				int slot = current.find(key, hash);
+				V existing = current.values[slot];
+				if (existing == null
+						|| expectedValue != null && !expectedValue.equals(existing)) {
+					return null;
+				}
+				delete(current, slot);
+				this.size--;
+				return existing;
+			}
+			finally {
+				unlockWrite(stamp);
+			}
+		}
+
+		/**
+		 * Backward shift deletion, moves the following entries of the probe sequence
+		 * into the free slot so no tombstones are needed
+		 */
+		private static <V> void delete(Table<V> table, int slot) {
+			int free = slot;
+			int next = slot;
+			while (true) {
+				next = (next + 1) & table.mask;
+				if (table.values[next] == null) {
+					break;
+				}
+				int home = (int) LongHashing.hash(table.keys[next]) & table.mask;
+				if (LongHashing.canMove(home, free, next)) {
+					table.keys[free] = table.keys[next];
+					table.values[free] = table.values[next];
+					free = next;
+				}
+			}
+			table.values[free] = null;
+		}
+
+		void addValues(List<V> values) {
+			long stamp = readLock();
+			try {
+				for (V value : this.table.values) {
+					if (value != null) {
+						values.add(value);
+					}
+				}
+			}
+			finally {
+				unlockRead(stamp);
+			}
+		}
+
+		void appendTo(StringBuilder sb) {
+			long stamp = readLock();
+			try {
+				Table<V> current = this.table;
+				for (int i = 0; i <= current.mask; i++) {
+					if (current.values[i] != null) {
+						sb.append(current.keys[i]).append('=').append(current.values[i])
+								.append(", ");
+					}
+				}
+			}
+			finally {
+				unlockRead(stamp);
+			}
+		}
+
+		void clear() {
+			long stamp = writeLock();
+			try {
+				this.table = new Table<>(LongHashing.capacityFor(1));
+				this.size = 0;
+			}
+			finally {
+				unlockWrite(stamp);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.util;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongConsumer;
+
+/**
+ * Concurrent set of primitive longs. Built like {@link ConcurrentLongHashMap}, the
+ * slots only hold the keys and an occupied flag.
+ */
+public class ConcurrentLongHashSet {
+
+	private final Section[] sections;
+
+	private final int sectionMask;
+
+	public ConcurrentLongHashSet() {
+		this(16, 16);
+	}
+
+	/**
+	 * @param expectedItems the expected number of elements
+	 * @param concurrencyLevel the number of sections, rounded up to a power of two
+	 */
+	public ConcurrentLongHashSet(int expectedItems, int concurrencyLevel) {
+		int numberOfSections = LongHashing.powerOfTwo(Math.max(1, concurrencyLevel));
+		this.sections = new Section[numberOfSections];
+		this.sectionMask = numberOfSections - 1;
+		int perSection = Math.max(1, expectedItems / numberOfSections);
+		for (int i = 0; i < numberOfSections; i++) {
+			this.sections[i] = new Section(perSection);
+		}
+	}
+
+	private Section section(long hash) {
+		return this.sections[(int) (hash >>> 32) & this.sectionMask];
+	}
+
+	public boolean contains(long value) {
+		long hash = LongHashing.hash(value);
+		return section(hash).contains(value, (int) hash);
+	}
+
+	/**
+	 * Adds the value and returns true when it was not in the set before
+	 */
+	public boolean add(long value) {
+		long hash = LongHashing.hash(value);
+		return section(hash).add(value, (int) hash);
+	}
+
+	/**
+	 * Removes the value and returns true when it was in the set
+	 */
+	public boolean remove(long value) {
+		long hash = LongHashing.hash(value);
+		return section(hash).remove(value, (int) hash);
+	}
+
+	public int size() {
+		int size = 0;
+		for (Section section : this.sections) {
+			size += section.size;
+		}
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Calls the consumer with every element. Each section is copied before the consumer
+	 * is called, so the consumer may modify the set.
+	 */
+	public void forEach(LongConsumer consumer) {
+		for (Section section : this.sections) {
+			for (long value : section.toArray()) {
+				consumer.accept(value);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("[");
+		forEach(value -> sb.append(value).append(", "));
+		if (sb.length() > 1) {
+			sb.setLength(sb.length() - 2);
+		}
+		return sb.append(']').toString();
+	}
+
+	private static final class Table {
+		final long[] values;
+
+		final boolean[] used;
+
+		final int mask;
+
+		Table(int capacity) {
+			this.values = new long[capacity];
+			this.used = new boolean[capacity];
+			this.mask = capacity - 1;
+		}
+
+		int find(long value, int hash) {
+			int slot = hash & this.mask;
+			for (int i = 0; i <= this.mask; i++) {
+				if (!this.used[slot] || this.values[slot] == value) {
+					return slot;
+				}
+				slot = (slot + 1) & this.mask;
+			}
+			return -1;
+		}
+
+		boolean contains(long value, int hash) {
+			int slot = find(value, hash);
+			return slot >= 0 && this.used[slot];
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private static final class Section extends StampedLock {
+
+		private volatile Table table;
+
+		private volatile int size;
+
+		Section(int expectedItems) {
+			this.table = new Table(LongHashing.capacityFor(expectedItems));
+		}
+
+		boolean contains(long value, int hash) {
+			long stamp = tryOptimisticRead();
+			boolean contains = this.table.contains(value, hash);
+			if (validate(stamp)) {
+				return contains;
+			}
+
+			stamp = readLock();
+			try {
+				return this.table.contains(value, hash);
+			}
+			finally {
+				unlockRead(stamp);
+			}
+		}
+
+		boolean add(long value, int hash) {
+			long stamp = writeLock();
+			try {
+				Table current = this.table;
+				int slot = current.find(value, hash);
+				if (current.used[slot]) {
+					return false;
+				}
+				current.values[slot] = value;
+				current.used[slot] = true;
+				this.size++;
+				if (LongHashing.isFull(this.size, current.mask + 1)) {
+					rehash(current);
+				}
+				return true;
+			}
+			finally {
+				unlockWrite(stamp);
+			}
+		}
+
+		private void rehash(Table current) {
+			Table larger = new Table((current.mask + 1) * 2);
+			for (int i = 0; i <= current.mask; i++) {
+				if (current.used[i]) {
+					long value = current.values[i];
+					int slot = larger.find(value, (int) LongHashing.hash(value));
+					larger.values[slot] = value;
+					larger.used[slot] = true;
+				}
+			}
+			this.table = larger;
+		}
+
+		boolean remove(long value, int hash) {
+			long stamp = writeLock();
+			try {
+				Table current = this.table;
+				int slot = current.find(value, hash);
+				if (!current.used[slot]) {
+					return false;
+				}
+
+				// backward shift deletion, see ConcurrentLongHashMap
+				int free = slot;
+				int next = slot;
+				while (true) {
+					next = (next + 1) & current.mask;
+					if (!current.used[next]) {
+						break;
+					}
+					int home = (int) LongHashing.hash(current.values[next])
+							& current.mask;
+					if (LongHashing.canMove(home, free, next)) {
+						current.values[free] = current.values[next];
+						free = next;
+					}
+				}
+				current.used[free] = false;
+				this.size--;
+				return true;
+			}
+			finally {
+				unlockWrite(stamp);
+			}
+		}
+
+		long[] toArray() {
+			long stamp = readLock();
+			try {
+				Table current = this.table;
+				long[] values = new long[this.size];
+				int i = 0;
+				for (int slot = 0; slot <= current.mask; slot++) {
+					if (current.used[slot]) {
+						values[i++] = current.values[slot];
+					}
+				}
+				return values;
+			}
+			finally {
+				unlockRead(stamp);
+			}
+		}
+	}
+
+}
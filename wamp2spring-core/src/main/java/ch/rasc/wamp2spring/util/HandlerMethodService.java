@@ -73,6 +73,15 @@ public class HandlerMethodService {
 		this.objectMapper = objectMapper;
 	}
 
+	/**
+	 * Sets the helpers of a newly registered handler method and creates its invocation
+	 * plan
+	 */
+	public void prepare(InvocableHandlerMethod handlerMethod) {
+		setHelpers(handlerMethod);
+		handlerMethod.prepare();
+	}
+
 	@Nullable
 	public Object invoke(CallMessage callMessage, InvocableHandlerMethod handlerMethod)
 			throws Exception {
@@ -29,6 +29,18 @@ public class IdGenerator {
 	public static final long MIN = 1L;
 	public static final long MAX = 9007199254740992L;
 
+	/**
+	 * Creates a new random generated identification number in the range [{@link #MIN},
+	 * {@link #MAX}].
+	 * <p>
+	 * Used for global scope messages
+	 *
+	 * @return a new random identification number
+	 */
+	public static long newRandomId() {
+		return ThreadLocalRandom.current().nextLong(MIN, MAX + 1);
+	}
+
 	/**
 	 * Creates a new random generated identification number, that does not collide with an
 	 * existing ids in the provided Set.
@@ -39,17 +51,13 @@ public class IdGenerator {
 	 * @return a new random identification number
 	 */
 	public static long newRandomId(@Nullable Set<Long> existingIds) {
-		while (true) {
-			long candidateId = ThreadLocalRandom.current().nextLong();
-			if (MIN <= candidateId && candidateId <= MAX) {
-				if (existingIds == null) {
-					return candidateId;
-				}
-				if (!existingIds.contains(candidateId)) {
-					return candidateId;
-				}
+		long candidateId = newRandomId();
+		if (existingIds != null) {
+			while (existingIds.contains(candidateId)) {
+				candidateId = newRandomId();
 			}
 		}
+		return candidateId;
 	}
 
 	/**
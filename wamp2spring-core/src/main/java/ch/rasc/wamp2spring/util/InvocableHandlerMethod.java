@@ -15,16 +15,22 @@
  */
 package ch.rasc.wamp2spring.util;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.TypeVariable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
+import org.springframework.beans.BeanUtils;
 import org.springframework.core.MethodParameter;
 import org.springframework.core.ParameterNameDiscoverer;
 import org.springframework.core.convert.ConversionService;
@@ -43,6 +49,8 @@ import com.fasterxml.jackson.databind.type.CollectionType;
 import com.fasterxml.jackson.databind.type.TypeBindings;
 import com.fasterxml.jackson.databind.type.TypeFactory;
 
+import ch.rasc.wamp2spring.message.LazyArgumentList;
+import ch.rasc.wamp2spring.message.LazyArgumentMap;
 import ch.rasc.wamp2spring.message.WampMessage;
 
 public class InvocableHandlerMethod extends HandlerMethod {
@@ -55,26 +63,54 @@ public class InvocableHandlerMethod extends HandlerMethod {
 
 	private ObjectMapper objectMapper;
 
+	/**
+	 * How the parameters are bound and the method is called. Created by
+	 * {@link #prepare()} or the first invocation and again after one of the helpers
+	 * changed.
+	 */
+	@Nullable
+	private volatile InvocationPlan invocationPlan;
+
 	public InvocableHandlerMethod(HandlerMethod handlerMethod) {
 		super(handlerMethod);
 	}
 
 	public void setArgumentResolvers(
 			HandlerMethodArgumentResolverComposite argumentResolvers) {
-		this.argumentResolvers = argumentResolvers;
+		if (this.argumentResolvers != argumentResolvers) {
+			this.argumentResolvers = argumentResolvers;
+			this.invocationPlan = null;
+		}
 	}
 
 	public void setParameterNameDiscoverer(
 			ParameterNameDiscoverer parameterNameDiscoverer) {
-		this.parameterNameDiscoverer = parameterNameDiscoverer;
+		if (this.parameterNameDiscoverer != parameterNameDiscoverer) {
+			this.parameterNameDiscoverer = parameterNameDiscoverer;
+			this.invocationPlan = null;
+		}
 	}
 
 	public void setConversionService(ConversionService conversionService) {
-		this.conversionService = conversionService;
+		if (this.conversionService != conversionService) {
+			this.conversionService = conversionService;
+			this.invocationPlan = null;
+		}
 	}
 
 	public void setObjectMapper(ObjectMapper objectMapper) {
-		this.objectMapper = objectMapper;
+		if (this.objectMapper != objectMapper) {
+			this.objectMapper = objectMapper;
+			this.invocationPlan = null;
+		}
+	}
+
+	/**
+	 * Creates the invocation plan up front, so the first invocation does not pay for it.
+	 * Called when the handler method is registered, after the helpers are set.
+	 */
+	public void prepare() {
+		getInvocationPlan();
 	}
 
 	/**
@@ -94,13 +130,15 @@ public class InvocableHandlerMethod extends HandlerMethod {
 	@Nullable
 	public Object invoke(WampMessage message, List<Object> arguments,
 			Map<String, Object> argumentsKw) throws Exception {
-		Object[] args = getMethodArgumentValues(message, arguments, argumentsKw);
+		InvocationPlan plan = getInvocationPlan();
+		Object[] args = getMethodArgumentValues(plan.bindings, message, arguments,
+				argumentsKw);
 		if (this.logger.isTraceEnabled()) {
 			this.logger.trace("Invoking '"
 					+ ClassUtils.getQualifiedMethodName(getMethod(), getBeanType())
 					+ "' with arguments " + Arrays.toString(args));
 		}
-		Object returnValue = doInvoke(args);
+		Object returnValue = doInvoke(plan, args);
 		if (this.logger.isTraceEnabled()) {
 			this.logger.trace("Method ["
 					+ ClassUtils.getQualifiedMethodName(getMethod(), getBeanType())
@@ -109,17 +147,17 @@ public class InvocableHandlerMethod extends HandlerMethod {
 		return returnValue;
 	}
 
-	private Object[] getMethodArgumentValues(WampMessage message, List<Object> arguments,
-			Map<String, Object> argumentsKw) throws Exception {
+	private Object[] getMethodArgumentValues(ParameterBinding[] bindings,
+			WampMessage message, List<Object> arguments, Map<String, Object> argumentsKw)
+			throws Exception {
 
-		MethodParameter[] parameters = getMethodParameters();
-		Object[] args = new Object[parameters.length];
+		Object[] args = new Object[bindings.length];
 		int argIndex = 0;
-		for (int i = 0; i < parameters.length; i++) {
-			MethodParameter parameter = parameters[i];
-			parameter.initParameterNameDiscovery(this.parameterNameDiscoverer);
+		for (int i = 0; i < bindings.length; i++) {
+			ParameterBinding binding = bindings[i];
+			MethodParameter parameter = binding.parameter;
 
-			if (this.argumentResolvers.supportsParameter(parameter)) {
+			if (binding.resolvable) {
 				try {
 					args[i] = this.argumentResolvers.resolveArgument(parameter, message);
 					continue;
@@ -135,7 +173,14 @@ public class InvocableHandlerMethod extends HandlerMethod {
 			}
 
 			if (arguments != null && arguments.size() > argIndex) {
-				args[i] = convert(parameter, arguments.get(argIndex));
+				if (binding.objectType != null && arguments instanceof LazyArgumentList
+						&& ((LazyArgumentList) arguments).isObject(argIndex)) {
+					args[i] = ((LazyArgumentList) arguments).bind(argIndex,
+							this.objectMapper, binding.objectType);
+				}
+				else {
+					args[i] = convert(binding, arguments.get(argIndex));
+				}
 				if (args[i] != null) {
 					argIndex++;
 					continue;
@@ -143,11 +188,18 @@ public class InvocableHandlerMethod extends HandlerMethod {
 			}
 
 			if (argumentsKw != null) {
-				String paramName = parameter.getParameterName();
+				String paramName = binding.name;
 				if (paramName != null) {
+					if (binding.objectType != null
+							&& argumentsKw instanceof LazyArgumentMap
+							&& ((LazyArgumentMap) argumentsKw).isObject(paramName)) {
+						args[i] = ((LazyArgumentMap) argumentsKw).bind(paramName,
+								this.objectMapper, binding.objectType);
+						continue;
+					}
 					Object arg = argumentsKw.get(paramName);
 					if (arg != null) {
-						args[i] = convert(parameter, arg);
+						args[i] = convert(binding, arg);
 						continue;
 					}
 				}
@@ -162,10 +214,86 @@ public class InvocableHandlerMethod extends HandlerMethod {
 		return args;
 	}
 
+	private InvocationPlan getInvocationPlan() {
+		InvocationPlan plan = this.invocationPlan;
+		if (plan == null) {
+			MethodParameter[] parameters = getMethodParameters();
+			ParameterBinding[] bindings = new ParameterBinding[parameters.length];
+			for (int i = 0; i < parameters.length; i++) {
+				MethodParameter parameter = parameters[i];
+				parameter.initParameterNameDiscovery(this.parameterNameDiscoverer);
+				boolean resolvable = this.argumentResolvers.supportsParameter(parameter);
+				JavaType objectType = null;
+				if (!resolvable && isBoundFromObject(parameter.getParameterType())) {
+					objectType = this.objectMapper
+							.constructType(parameter.getGenericParameterType());
+				}
+				bindings[i] = new ParameterBinding(parameter, resolvable, objectType);
+			}
+			ReflectionUtils.makeAccessible(getBridgedMethod());
+			plan = new InvocationPlan(bindings, createInvoker());
+			this.invocationPlan = plan;
+		}
+		return plan;
+	}
+
+	/**
+	 * Creates a handle that takes the arguments as an array and returns the boxed
+	 * result. Returns null if the bean is not an instance of the class that declares the
+	 * method. The reflective call then reports the mismatch.
+	 */
+	@Nullable
+	private MethodHandle createInvoker() {
+		Method method = getBridgedMethod();
+		Object bean = getBean();
+		boolean isStatic = Modifier.isStatic(method.getModifiers());
+		if (!isStatic && !method.getDeclaringClass().isInstance(bean)) {
+			return null;
+		}
+		try {
+			MethodHandle handle = MethodHandles.lookup().unreflect(method)
+					.asFixedArity();
+			if (!isStatic) {
+				handle = handle.bindTo(bean);
+			}
+			return handle.asSpreader(Object[].class, method.getParameterCount())
+					.asType(MethodType.methodType(Object.class, Object[].class));
+		}
+		catch (IllegalAccessException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns true if a dictionary argument is converted to the type with Jackson. These
+	 * parameters are bound straight from the buffered tokens of a
+	 * {@link LazyArgumentList} or {@link LazyArgumentMap}.
+	 */
+	private boolean isBoundFromObject(Class<?> targetClass) {
+		return !BeanUtils.isSimpleValueType(targetClass) && !targetClass.isArray()
+				&& !Collection.class.isAssignableFrom(targetClass)
+				&& !Map.class.isAssignableFrom(targetClass)
+				&& !targetClass.isAssignableFrom(HashMap.class)
+				&& !this.conversionService.canConvert(HashMap.class, targetClass);
+	}
+
 	@Nullable
 	public Object convert(MethodParameter parameter, Object argument) {
+		return convert(parameter.getParameterType(), new TypeDescriptor(parameter),
+				argument);
+	}
+
+	@Nullable
+	private Object convert(ParameterBinding binding, Object argument) {
+		return convert(binding.parameter.getParameterType(), binding.typeDescriptor,
+				argument);
+	}
+
+	@Nullable
+	private Object convert(Class<?> targetClass, TypeDescriptor td,
+			@Nullable Object argument) {
 		if (argument == null) {
-			if (parameter.getParameterType().equals(Optional.class)) {
+			if (targetClass.equals(Optional.class)) {
 				return Optional.empty();
 			}
 
@@ -173,9 +301,6 @@ public class InvocableHandlerMethod extends HandlerMethod {
 		}
 
 		Class<?> sourceClass = argument.getClass();
-		Class<?> targetClass = parameter.getParameterType();
-
-		TypeDescriptor td = new TypeDescriptor(parameter);
 
 		if (targetClass.isAssignableFrom(sourceClass)) {
 			return convertListElements(td, argument);
@@ -253,11 +378,33 @@ public class InvocableHandlerMethod extends HandlerMethod {
 	}
 
 	/**
-	 * Invoke the handler method with the given argument values.
+	 * Invoke the handler method with the given argument values. The method handle of the
+	 * plan is used when every argument has exactly the type of its parameter. Other
+	 * arguments, which need a widening conversion or are invalid, go through
+	 * {@link Method#invoke(Object, Object...)}, which converts them or reports the
+	 * error.
 	 */
 	@Nullable
-	private Object doInvoke(Object... args) throws Exception {
-		ReflectionUtils.makeAccessible(getBridgedMethod());
+	private Object doInvoke(InvocationPlan plan, Object... args) throws Exception {
+		MethodHandle invoker = plan.invoker;
+		if (invoker == null || !plan.accepts(args)) {
+			return doInvokeReflectively(args);
+		}
+		try {
+			return (Object) invoker.invokeExact(args);
+		}
+		catch (Exception | Error ex) {
+			throw ex;
+		}
+		catch (Throwable ex) {
+			String text = getInvocationErrorMessage("Failed to invoke handler method",
+					args);
+			throw new IllegalStateException(text, ex);
+		}
+	}
+
+	@Nullable
+	private Object doInvokeReflectively(Object... args) throws Exception {
 		try {
 			return getBridgedMethod().invoke(getBean(), args);
 		}
@@ -337,4 +484,78 @@ public class InvocableHandlerMethod extends HandlerMethod {
 		return sb.toString();
 	}
 
+	private static final class InvocationPlan {
+
+		final ParameterBinding[] bindings;
+
+		@Nullable
+		final MethodHandle invoker;
+
+		InvocationPlan(ParameterBinding[] bindings, @Nullable MethodHandle invoker) {
+			this.bindings = bindings;
+			this.invoker = invoker;
+		}
+
+		/**
+		 * Returns true if the method handle can be called with the arguments
+		 */
+		boolean accepts(Object[] args) {
+			for (int i = 0; i < args.length; i++) {
+				if (!this.bindings[i].accepts(args[i])) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private static final class ParameterBinding {
+
+		final MethodParameter parameter;
+
+		/**
+		 * True if one of the argument resolvers supports the parameter
+		 */
+		final boolean resolvable;
+
+		@Nullable
+		final String name;
+
+		final TypeDescriptor typeDescriptor;
+
+		/**
+		 * The type dictionary arguments are bound to with Jackson, null if they are
+		 * converted
+		 */
+		@Nullable
+		final JavaType objectType;
+
+		/**
+		 * The parameter type, primitives replaced by their wrapper
+		 */
+		final Class<?> argumentType;
+
+		final boolean primitive;
+
+		ParameterBinding(MethodParameter parameter, boolean resolvable,
+				@Nullable JavaType objectType) {
+			this.parameter = parameter;
+			this.resolvable = resolvable;
+			this.name = parameter.getParameterName();
+			this.typeDescriptor = new TypeDescriptor(parameter);
+			this.objectType = objectType;
+			this.primitive = parameter.getParameterType().isPrimitive();
+			this.argumentType = ClassUtils
+					.resolvePrimitiveIfNecessary(parameter.getParameterType());
+		}
+
+		boolean accepts(@Nullable Object argument) {
+			if (argument == null) {
+				return !this.primitive;
+			}
+			return this.primitive ? argument.getClass() == this.argumentType
+					: this.argumentType.isInstance(argument);
+		}
+	}
+
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.util;
+
+/**
+ * Hashing helpers of the primitive long collections
+ */
+final class LongHashing {
+
+	private static final float FILL_FACTOR = 0.66f;
+
+	private LongHashing() {
+		// helper class
+	}
+
+	/**
+	 * Spreads the bits of the key. WAMP ids are either random or sequential, the mixing
+	 * makes sure sequential ids do not occupy neighbouring slots. The upper half selects
+	 * the section, the lower half the slot.
+	 */
+	static long hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return h ^ (h >>> 29);
+	}
+
+	static int powerOfTwo(int value) {
+		int highest = Integer.highestOneBit(value);
+		return highest == value ? value : highest << 1;
+	}
+
+	static int capacityFor(int expectedItems) {
+		return Math.max(8, powerOfTwo((int) Math.ceil(expectedItems / FILL_FACTOR)));
+	}
+
+	static boolean isFull(int size, int capacity) {
+		return size > capacity * FILL_FACTOR;
+	}
+
+	/**
+	 * Returns true when the entry in slot next, whose home slot is home, may move back
+	 * into the free slot without breaking its probe sequence
+	 */
+	static boolean canMove(int home, int free, int next) {
+		if (free <= next) {
+			return home <= free || home > next;
+		}
+		return home <= free && home > next;
+	}
+
+}
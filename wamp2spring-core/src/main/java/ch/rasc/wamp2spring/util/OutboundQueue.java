@@ -0,0 +1,471 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.util;
+
+import java.io.IOException;
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+
+import ch.rasc.wamp2spring.config.OutboundQueueLimits;
+import ch.rasc.wamp2spring.config.OutboundQueueLimits.OverflowPolicy;
+import ch.rasc.wamp2spring.message.EventBatchMessage;
+import ch.rasc.wamp2spring.message.EventMessage;
+import ch.rasc.wamp2spring.message.WampCodec;
+
+/**
+ * Bounded outbound queue of one session that applies the {@link OverflowPolicy} of the
+ * {@link OutboundQueueLimits}. Only {@link EventMessage}s are dropped or conflated, all
+ * other messages are always accepted, even when the queue is full.
+ * <p>
+ * With {@link OverflowPolicy#DISCONNECT} {@link #offer(Message)} returns false once
+ * the queue is full and keeps rejecting every further message. The transport is then
+ * expected to close the session. {@link OverflowPolicy#SPILL} behaves the same way once
+ * the spill limits are exceeded. Spilled events are returned as {@link SpilledFrame}s.
+ * Messages are returned in the order they were offered. Other messages offered while
+ * the spill file holds events are therefore only returned after these events.
+ * <p>
+ * An offered {@link EventBatchMessage} is unpacked and each of its events is counted
+ * and subject to the overflow policy like an event offered on its own. After
+ * {@link #enablePacking(int)} the events queued in memory are packed into an
+ * {@link EventBatchMessage} again when they are polled.
+ * <p>
+ * All methods are thread safe.
+ */
+public class OutboundQueue extends AbstractQueue<Message<Object>> {
+
+	private final int capacity;
+
+	private final OverflowPolicy overflowPolicy;
+
+	private final ArrayDeque<Message<Object>> messages = new ArrayDeque<>();
+
+	/**
+	 * Latest EVENT per subscription and topic. Only used by
+	 * {@link OverflowPolicy#CONFLATE}. The queue holds the first EVENT of a key, which
+	 * is replaced with the latest one when it is polled.
+	 */
+	@Nullable
+	private final Map<ConflationKey, EventMessage> latestEvents;
+
+	/**
+	 * Spill file of the session. Only used by {@link OverflowPolicy#SPILL}.
+	 */
+	@Nullable
+	private final SpillFile spillFile;
+
+	@Nullable
+	private final WampCodec codec;
+
+	private final AtomicBoolean draining = new AtomicBoolean();
+
+	private int maxPackedEvents = 1;
+
+	/**
+	 * Number of {@link SpillBarrier}s in {@link #messages}
+	 */
+	private int barriers;
+
+	private long lastBarrier = -1;
+
+	private boolean overflowed;
+
+	private long dropped;
+
+	public OutboundQueue(OutboundQueueLimits limits) {
+		this(limits, null, null);
+	}
+
+	/**
+	 * Creates a queue that spills events with {@link OverflowPolicy#SPILL}
+	 *
+	 * @param limits the queue settings
+	 * @param spillStore the shared store of the spill files
+	 * @param codec the codec that serializes the spilled events
+	 */
+	public OutboundQueue(OutboundQueueLimits limits,
+			@Nullable OutboundSpillStore spillStore, @Nullable WampCodec codec) {
+		this.spillFile = limits.getOverflowPolicy() == OverflowPolicy.SPILL
+				&& spillStore != null && codec != null ? spillStore.newFile() : null;
+		this.codec = codec;
+		this.capacity = limits.getCapacity();
+		this.overflowPolicy = limits.getOverflowPolicy();
+		this.latestEvents = this.overflowPolicy == OverflowPolicy.CONFLATE
+				? new HashMap<>()
+				: null;
+	}
+
+	/**
+	 * Packs consecutive events at the head of the queue into one
+	 * {@link EventBatchMessage} when they are polled. Only used for sessions that
+	 * negotiated the {@link EventBatchMessage#FEATURE} extension. Spilled events are
+	 * not packed.
+	 *
+	 * @param maxEvents the maximum number of events in one batch
+	 */
+	public synchronized void enablePacking(int maxEvents) {
+		this.maxPackedEvents = maxEvents;
+	}
+
+	@Override
+	public synchronized boolean offer(Message<Object> message) {
+		if (this.overflowed) {
+			return false;
+		}
+
+		if (message instanceof EventBatchMessage) {
+			for (EventMessage eventMessage : ((EventBatchMessage) message).getEvents()) {
+				if (!offerEvent(eventMessage)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		if (!(message instanceof EventMessage)) {
+			if (this.spillFile != null && !this.spillFile.isEmpty()
+					&& this.spillFile.appended() != this.lastBarrier) {
+				// the message must not overtake the events spilled so far
+				this.lastBarrier = this.spillFile.appended();
+				this.messages.add(new SpillBarrier(this.lastBarrier));
+				this.barriers++;
+			}
+			this.messages.add(message);
+			return true;
+		}
+
+		return offerEvent((EventMessage) message);
+	}
+
+	private boolean offerEvent(EventMessage eventMessage) {
+		ConflationKey key = null;
+		if (this.latestEvents != null) {
+			key = new ConflationKey(eventMessage);
+			if (this.latestEvents.replace(key, eventMessage) != null) {
+				this.dropped++;
+				return true;
+			}
+		}
+
+		if (this.spillFile != null
+				&& (!this.spillFile.isEmpty() || queued() >= this.capacity)) {
+			return spill(this.spillFile, eventMessage);
+		}
+
+		if (queued() >= this.capacity) {
+			switch (this.overflowPolicy) {
+			case DROP_NEWEST:
+				this.dropped++;
+				return true;
+			case DISCONNECT:
+			case SPILL:
+				this.overflowed = true;
+				return false;
+			default:
+				dropOldestEvent();
+			}
+		}
+
+		this.messages.add(eventMessage);
+		if (key != null) {
+			this.latestEvents.put(key, eventMessage);
+		}
+		return true;
+	}
+
+	private boolean spill(SpillFile file, EventMessage eventMessage) {
+		byte[] frame;
+		try {
+			frame = eventMessage.serialize(this.codec);
+		}
+		catch (IOException e) {
+			// the transport reports the error when it serializes the message
+			this.messages.add(eventMessage);
+			return true;
+		}
+		if (!file.append(frame)) {
+			this.overflowed = true;
+			return false;
+		}
+		return true;
+	}
+
+	private void dropOldestEvent() {
+		for (Iterator<Message<Object>> it = this.messages.iterator(); it.hasNext();) {
+			Message<Object> queued = it.next();
+			if (queued instanceof EventMessage) {
+				it.remove();
+				if (this.latestEvents != null) {
+					this.latestEvents.remove(new ConflationKey((EventMessage) queued));
+				}
+				this.dropped++;
+				return;
+			}
+		}
+	}
+
+	@Override
+	@Nullable
+	public synchronized Message<Object> poll() {
+		Message<Object> message = pollMemory();
+		if (this.maxPackedEvents > 1 && message instanceof EventMessage
+				&& this.messages.peek() instanceof EventMessage) {
+			return pack((EventMessage) message);
+		}
+		if (message == null && this.spillFile != null) {
+			byte[] frame = this.spillFile.read();
+			if (frame != null) {
+				return new SpilledFrame(frame);
+			}
+		}
+		return message;
+	}
+
+	/**
+	 * Removes and returns the head of the messages in memory. Returns null when the
+	 * memory is empty or the head has to wait for spilled events.
+	 */
+	@Nullable
+	private Message<Object> pollMemory() {
+		Message<Object> head;
+		while ((head = this.messages.peek()) instanceof SpillBarrier) {
+			if (!isPassed((SpillBarrier) head)) {
+				return null;
+			}
+			this.messages.poll();
+			this.barriers--;
+		}
+		return latest(this.messages.poll(), true);
+	}
+
+	private boolean isPassed(SpillBarrier barrier) {
+		return this.spillFile == null || this.spillFile.isEmpty()
+				|| this.spillFile.consumed() >= barrier.frames;
+	}
+
+	private int queued() {
+		return this.messages.size() - this.barriers;
+	}
+
+	@Override
+	@Nullable
+	public synchronized Message<Object> peek() {
+		Message<Object> message = null;
+		for (Message<Object> queued : this.messages) {
+			if (!(queued instanceof SpillBarrier)) {
+				message = latest(queued, false);
+				break;
+			}
+			if (!isPassed((SpillBarrier) queued)) {
+				break;
+			}
+		}
+		if (message == null && this.spillFile != null) {
+			byte[] frame = this.spillFile.peek();
+			if (frame != null) {
+				return new SpilledFrame(frame);
+			}
+		}
+		return message;
+	}
+
+	private EventBatchMessage pack(EventMessage first) {
+		List<EventMessage> events = new ArrayList<>();
+		events.add(first);
+		while (events.size() < this.maxPackedEvents
+				&& this.messages.peek() instanceof EventMessage) {
+			events.add((EventMessage) latest(this.messages.poll(), true));
+		}
+		return new EventBatchMessage(events);
+	}
+
+	@Nullable
+	private Message<Object> latest(@Nullable Message<Object> message, boolean remove) {
+		if (this.latestEvents != null && message instanceof EventMessage) {
+			ConflationKey key = new ConflationKey((EventMessage) message);
+			EventMessage latest = remove ? this.latestEvents.remove(key)
+					: this.latestEvents.get(key);
+			if (latest != null) {
+				return latest;
+			}
+		}
+		return message;
+	}
+
+	/**
+	 * Removes and returns all queued messages
+	 */
+	public synchronized List<Message<Object>> pollAll() {
+		List<Message<Object>> all = new ArrayList<>(queued());
+		Message<Object> message;
+		while ((message = poll()) != null) {
+			all.add(message);
+		}
+		return all;
+	}
+
+	/**
+	 * Hands the queued messages to the consumer until the queue is empty. Only one
+	 * thread drains the queue at a time, when another thread is already draining the
+	 * method returns immediately and the other thread picks up the messages.
+	 */
+	public void drain(Consumer<Message<Object>> consumer) {
+		while (this.draining.compareAndSet(false, true)) {
+			try {
+				Message<Object> message;
+				while ((message = poll()) != null) {
+					consumer.accept(message);
+				}
+			}
+			finally {
+				this.draining.set(false);
+			}
+
+			// a message offered after the last poll but before the release of the flag
+			// is not picked up by another thread
+			if (isEmpty()) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Returns true when the queue rejected a message with
+	 * {@link OverflowPolicy#DISCONNECT}
+	 */
+	public synchronized boolean isOverflowed() {
+		return this.overflowed;
+	}
+
+	/**
+	 * Returns the number of dropped and conflated EVENT messages
+	 */
+	public synchronized long getDropped() {
+		return this.dropped;
+	}
+
+	/**
+	 * Returns the number of queued messages including the spilled events
+	 */
+	@Override
+	public synchronized int size() {
+		int size = queued();
+		if (this.spillFile != null) {
+			size += this.spillFile.frames();
+		}
+		return size;
+	}
+
+	@Override
+	public synchronized boolean isEmpty() {
+		return queued() == 0 && (this.spillFile == null || this.spillFile.isEmpty());
+	}
+
+	/**
+	 * Discards the spilled events and releases the spill file. Called by the transport
+	 * when the session ends.
+	 */
+	public synchronized void close() {
+		if (this.spillFile != null) {
+			this.spillFile.close();
+		}
+	}
+
+	/**
+	 * Returns an iterator over a snapshot of the messages queued in memory
+	 */
+	@Override
+	public synchronized Iterator<Message<Object>> iterator() {
+		List<Message<Object>> snapshot = new ArrayList<>(queued());
+		for (Message<Object> message : this.messages) {
+			if (!(message instanceof SpillBarrier)) {
+				snapshot.add(latest(message, false));
+			}
+		}
+		return snapshot.iterator();
+	}
+
+	/**
+	 * Placeholder in front of a message that was queued in memory while the spill file
+	 * held events. The message is only returned once the events spilled before it have
+	 * been read.
+	 */
+	private static final class SpillBarrier implements Message<Object> {
+
+		private static final MessageHeaders EMPTY_HEADERS = new MessageHeaders(null);
+
+		/**
+		 * Number of frames appended to the spill file when the barrier was queued
+		 */
+		private final long frames;
+
+		SpillBarrier(long frames) {
+			this.frames = frames;
+		}
+
+		@Override
+		public Object getPayload() {
+			return this.frames;
+		}
+
+		@Override
+		public MessageHeaders getHeaders() {
+			return EMPTY_HEADERS;
+		}
+	}
+
+	private static final class ConflationKey {
+		private final long subscriptionId;
+
+		@Nullable
+		private final String topic;
+
+		ConflationKey(EventMessage eventMessage) {
+			this.subscriptionId = eventMessage.getSubscriptionId();
+			this.topic = eventMessage.getTopic();
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * Long.hashCode(this.subscriptionId) + Objects.hashCode(this.topic);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof ConflationKey)) {
+				return false;
+			}
+			ConflationKey other = (ConflationKey) obj;
+			return this.subscriptionId == other.subscriptionId
+					&& Objects.equals(this.topic, other.topic);
+		}
+	}
+
+}
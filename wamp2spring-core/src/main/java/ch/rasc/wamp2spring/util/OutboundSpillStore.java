@@ -0,0 +1,74 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.util;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ch.rasc.wamp2spring.config.OutboundQueueLimits;
+
+/**
+ * Shared budget of the spill files of all sessions. Created once per transport when
+ * the {@link OutboundQueueLimits.OverflowPolicy#SPILL} policy is configured and
+ * handed to the {@link OutboundQueue} of every session.
+ */
+public class OutboundSpillStore {
+
+	private final Path directory;
+
+	private final int maxBytesPerSession;
+
+	private final long maxBytesTotal;
+
+	private final AtomicLong usedBytes = new AtomicLong();
+
+	public OutboundSpillStore(OutboundQueueLimits limits) {
+		Path spillDirectory = limits.getSpillDirectory();
+		this.directory = spillDirectory != null ? spillDirectory
+				: Paths.get(System.getProperty("java.io.tmpdir"));
+		this.maxBytesPerSession = limits.getMaxSpillBytesPerSession();
+		this.maxBytesTotal = limits.getMaxSpillBytesTotal();
+	}
+
+	/**
+	 * Returns the number of bytes in the spill files of all sessions
+	 */
+	public long getUsedBytes() {
+		return this.usedBytes.get();
+	}
+
+	SpillFile newFile() {
+		return new SpillFile(this, this.directory, this.maxBytesPerSession);
+	}
+
+	boolean reserve(int bytes) {
+		long used;
+		do {
+			used = this.usedBytes.get();
+			if (used + bytes > this.maxBytesTotal) {
+				return false;
+			}
+		}
+		while (!this.usedBytes.compareAndSet(used, used + bytes));
+		return true;
+	}
+
+	void release(long bytes) {
+		this.usedBytes.addAndGet(-bytes);
+	}
+
+}
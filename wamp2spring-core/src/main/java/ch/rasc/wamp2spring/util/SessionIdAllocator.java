@@ -0,0 +1,70 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.util;
+
+/**
+ * Allocates the WAMP session ids of the connected clients. Ids are random numbers of
+ * the global scope and are unique among all sessions that are currently connected.
+ * <p>
+ * Allocation claims a random id with a single atomic insert and only retries when the
+ * id is already taken, which is very unlikely with 2^53 possible values. So it costs
+ * O(1) regardless of how many sessions are connected.
+ */
+public class SessionIdAllocator {
+
+	private final ConcurrentLongHashSet wampSessionIds = new ConcurrentLongHashSet();
+
+	/**
+	 * Allocates a new WAMP session id that is not used by another connected session.
+	 *
+	 * @return the new session id
+	 */
+	public long allocate() {
+		while (true) {
+			long candidateId = IdGenerator.newRandomId();
+			if (this.wampSessionIds.add(candidateId)) {
+				return candidateId;
+			}
+		}
+	}
+
+	/**
+	 * Releases a session id when the session has been closed. The id can then be
+	 * allocated again.
+	 *
+	 * @param wampSessionId the session id
+	 */
+	public void release(long wampSessionId) {
+		this.wampSessionIds.remove(wampSessionId);
+	}
+
+	/**
+	 * Returns true when the session id is currently allocated
+	 *
+	 * @param wampSessionId the session id
+	 */
+	public boolean isAllocated(long wampSessionId) {
+		return this.wampSessionIds.contains(wampSessionId);
+	}
+
+	/**
+	 * Returns the number of allocated session ids
+	 */
+	public int size() {
+		return this.wampSessionIds.size();
+	}
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.util;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * Spill file of one session. Frames are written with a length prefix into a memory
+ * mapped ring buffer and read back in order. A frame may wrap around the end of the
+ * file. The space of a frame is released as soon as it is read, so a session that
+ * reads as fast as new frames arrive never runs out of space. The file is created on
+ * the first append and deleted right after mapping it, so no file is left behind. Not
+ * thread safe, {@link OutboundQueue} guards the access.
+ */
+final class SpillFile {
+
+	private final OutboundSpillStore store;
+
+	private final Path directory;
+
+	private final int capacity;
+
+	@Nullable
+	private MappedByteBuffer buffer;
+
+	private int writePosition;
+
+	private int readPosition;
+
+	private int usedBytes;
+
+	private int frames;
+
+	private long appended;
+
+	private long consumed;
+
+	SpillFile(OutboundSpillStore store, Path directory, int capacity) {
+		this.store = store;
+		this.directory = directory;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Appends a frame. Returns false when the frame exceeds the limit of the session or
+	 * of the store or when the file could not be created.
+	 */
+	boolean append(byte[] frame) {
+		int size = Integer.BYTES + frame.length;
+		if (size > this.capacity - this.usedBytes || !this.store.reserve(size)) {
+			return false;
+		}
+
+		MappedByteBuffer mapped = this.buffer;
+		if (mapped == null) {
+			try {
+				mapped = map();
+			}
+			catch (IOException e) {
+				this.store.release(size);
+				return false;
+			}
+			this.buffer = mapped;
+		}
+
+		writeLength(mapped, this.writePosition, frame.length);
+		write(mapped, advance(this.writePosition, Integer.BYTES), frame);
+		this.writePosition = advance(this.writePosition, size);
+		this.usedBytes += size;
+		this.frames++;
+		this.appended++;
+		return true;
+	}
+
+	private MappedByteBuffer map() throws IOException {
+		Path file = Files.createTempFile(this.directory, "wamp2spring-spill-", ".bin");
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+			return channel.map(FileChannel.MapMode.READ_WRITE, 0, this.capacity);
+		}
+	}
+
+	/**
+	 * Reads the oldest frame or returns null when the file is empty
+	 */
+	@Nullable
+	byte[] read() {
+		byte[] frame = peek();
+		if (frame == null) {
+			return null;
+		}
+
+		int size = Integer.BYTES + frame.length;
+		this.readPosition = advance(this.readPosition, size);
+		this.usedBytes -= size;
+		this.frames--;
+		this.consumed++;
+		this.store.release(size);
+
+		if (this.frames == 0) {
+			// keep the next frames in one piece as long as possible
+			this.writePosition = 0;
+			this.readPosition = 0;
+		}
+		return frame;
+	}
+
+	/**
+	 * Returns the oldest frame without removing it or null when the file is empty
+	 */
+	@Nullable
+	byte[] peek() {
+		MappedByteBuffer mapped = this.buffer;
+		if (this.frames == 0 || mapped == null) {
+			return null;
+		}
+		byte[] frame = new byte[readLength(mapped, this.readPosition)];
+		read(mapped, advance(this.readPosition, Integer.BYTES), frame);
+		return frame;
+	}
+
+	boolean isEmpty() {
+		return this.frames == 0;
+	}
+
+	int frames() {
+		return this.frames;
+	}
+
+	/**
+	 * Returns the number of frames appended since the file was created
+	 */
+	long appended() {
+		return this.appended;
+	}
+
+	/**
+	 * Returns the number of frames read since the file was created
+	 */
+	long consumed() {
+		return this.consumed;
+	}
+
+	/**
+	 * Discards all frames and releases the mapping
+	 */
+	void close() {
+		this.store.release(this.usedBytes);
+		this.writePosition = 0;
+		this.readPosition = 0;
+		this.usedBytes = 0;
+		this.frames = 0;
+		this.buffer = null;
+	}
+
+	private int advance(int position, int bytes) {
+		int next = position + bytes;
+		return next >= this.capacity ? next - this.capacity : next;
+	}
+
+	private void write(MappedByteBuffer mapped, int position, byte[] bytes) {
+		int head = Math.min(bytes.length, this.capacity - position);
+		mapped.put(position, bytes, 0, head);
+		if (head < bytes.length) {
+			mapped.put(0, bytes, head, bytes.length - head);
+		}
+	}
+
+	private void read(MappedByteBuffer mapped, int position, byte[] bytes) {
+		int head = Math.min(bytes.length, this.capacity - position);
+		mapped.get(position, bytes, 0, head);
+		if (head < bytes.length) {
+			mapped.get(0, bytes, head, bytes.length - head);
+		}
+	}
+
+	private void writeLength(MappedByteBuffer mapped, int position, int length) {
+		for (int i = 0; i < Integer.BYTES; i++) {
+			mapped.put(advance(position, i), (byte) (length >>> (24 - 8 * i)));
+		}
+	}
+
+	private int readLength(MappedByteBuffer mapped, int position) {
+		int length = 0;
+		for (int i = 0; i < Integer.BYTES; i++) {
+			length = length << 8 | mapped.get(advance(position, i)) & 0xff;
+		}
+		return length;
+	}
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.util;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+
+/**
+ * An EVENT that was spilled to disk by an {@link OutboundQueue} and read back. The
+ * payload is the serialized message in the format of the session's codec, the
+ * transport writes it unchanged.
+ */
+public final class SpilledFrame implements Message<Object> {
+
+	private static final MessageHeaders EMPTY_HEADERS = new MessageHeaders(null);
+
+	private final byte[] bytes;
+
+	SpilledFrame(byte[] bytes) {
+		this.bytes = bytes;
+	}
+
+	public byte[] getBytes() {
+		return this.bytes;
+	}
+
+	@Override
+	public Object getPayload() {
+		return this.bytes;
+	}
+
+	@Override
+	public MessageHeaders getHeaders() {
+		return EMPTY_HEADERS;
+	}
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.util;
+
+/**
+ * Tokenizer for the dot separated components of topic and procedure URIs. Works on
+ * offsets into the URI, so walking the components and matching them against a wildcard
+ * pattern does not allocate.
+ * <p>
+ * The components follow the semantics of <code>String.split("\\.")</code>: trailing
+ * empty components are removed, an empty URI has one empty component and a URI that
+ * only consists of dots has no components.
+ * <p>
+ * Iterating the components of a URI:
+ *
+ * <pre class="code">
+ * int limit = UriComponents.limit(uri);
+ * for (int start = UriComponents.first(uri, limit); start != -1; start = UriComponents
+ * 		.next(uri, start, limit)) {
+ * 	int end = UriComponents.end(uri, start, limit);
+ * 	// component is uri[start, end)
+ * }
+ * </pre>
+ */
+public final class UriComponents {
+
+	private UriComponents() {
+		// utility class
+	}
+
+	/**
+	 * Returns the length of the URI without the trailing dots. The components end at
+	 * this offset.
+	 */
+	public static int limit(String uri) {
+		int limit = uri.length();
+		while (limit > 0 && uri.charAt(limit - 1) == '.') {
+			limit--;
+		}
+		return limit;
+	}
+
+	/**
+	 * Returns the start offset of the first component or -1 if the URI has no
+	 * components
+	 */
+	public static int first(String uri, int limit) {
+		if (limit == 0 && !uri.isEmpty()) {
+			return -1;
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the end offset (exclusive) of the component that starts at the offset
+	 */
+	public static int end(String uri, int start, int limit) {
+		int dot = uri.indexOf('.', start);
+		if (dot == -1 || dot > limit) {
+			return limit;
+		}
+		return dot;
+	}
+
+	/**
+	 * Returns the start offset of the component after the one that starts at the offset
+	 * or -1 if it is the last component
+	 */
+	public static int next(String uri, int start, int limit) {
+		int next = end(uri, start, limit) + 1;
+		return next > limit ? -1 : next;
+	}
+
+	/**
+	 * Returns the number of components
+	 */
+	public static int count(String uri) {
+		int limit = limit(uri);
+		int count = 0;
+		for (int start = first(uri, limit); start != -1; start = next(uri, start,
+				limit)) {
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Checks if the component uri[start, end) equals the provided component
+	 */
+	public static boolean equals(String uri, int start, int end, String component) {
+		int length = component.length();
+		return end - start == length && uri.regionMatches(start, component, 0, length);
+	}
+
+	/**
+	 * Checks if the URI matches the components of a wildcard pattern. An empty pattern
+	 * component matches any component.
+	 *
+	 * @param pattern the components of the wildcard pattern
+	 * @param uri the URI
+	 * @return true if the URI has the same number of components as the pattern and all
+	 * non empty pattern components are equal to the URI component at the same position
+	 */
+	public static boolean matchesWildcard(String[] pattern, String uri) {
+		int limit = limit(uri);
+		int start = first(uri, limit);
+		for (String component : pattern) {
+			if (start == -1) {
+				return false;
+			}
+			int end = end(uri, start, limit);
+			if (!component.isEmpty() && !equals(uri, start, end, component)) {
+				return false;
+			}
+			start = end + 1 > limit ? -1 : end + 1;
+		}
+		return start == -1;
+	}
+
+	/**
+	 * Splits the URI into its components. Used where the components are stored, for
+	 * matching use {@link #matchesWildcard(String[], String)} or the offset methods.
+	 */
+	public static String[] split(String uri) {
+		int limit = limit(uri);
+		String[] components = new String[count(uri)];
+		int i = 0;
+		for (int start = first(uri, limit); start != -1; start = next(uri, start,
+				limit)) {
+			components[i++] = uri.substring(start, end(uri, start, limit));
+		}
+		return components;
+	}
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.util;
+
+import org.springframework.lang.Nullable;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Bounded dictionary of canonical topic and procedure URIs. The decoders replace every
+ * decoded URI with its canonical instance, and the registries, the retention store and
+ * the destination matchers store the canonical instances. Lookups and comparisons of
+ * the same URI then hit the identity check of {@link String#equals(Object)} and the
+ * cached hash code instead of comparing and hashing the characters again, and the
+ * registries do not hold duplicate copies of a URI.
+ * <p>
+ * The dictionary holds at most {@link #getMaximumSize()} URIs and evicts rarely used
+ * ones first, so a flood of unique URIs does not displace the frequently used ones.
+ * An evicted URI stays valid, it is only no longer shared.
+ * <p>
+ * Each application context has its own dictionary, created by
+ * {@link ch.rasc.wamp2spring.config.WampConfiguration} from the
+ * {@link ch.rasc.wamp2spring.config.UriInterning} settings.
+ */
+public class UriDictionary {
+
+	/**
+	 * Dictionary that does not intern any URI. Used by the decoders that are created
+	 * without a dictionary.
+	 */
+	public static final UriDictionary NONE = new UriDictionary(0, 0);
+
+	@Nullable
+	private final Cache<String, String> uris;
+
+	private final int maximumSize;
+
+	private final int maxUriLength;
+
+	/**
+	 * @param maximumSize the maximum number of URIs in the dictionary
+	 * @param maxUriLength URIs longer than this are never added to the dictionary
+	 */
+	public UriDictionary(int maximumSize, int maxUriLength) {
+		this.maximumSize = maximumSize;
+		this.maxUriLength = maxUriLength;
+		this.uris = maximumSize > 0
+				? Caffeine.newBuilder().maximumSize(maximumSize).build()
+				: null;
+	}
+
+	/**
+	 * Returns the canonical instance of the URI
+	 *
+	 * @param uri the URI
+	 * @return the canonical instance, the URI itself when it is new or too long
+	 */
+	@Nullable
+	public String intern(@Nullable String uri) {
+		if (uri == null || this.uris == null || uri.length() > this.maxUriLength) {
+			return uri;
+		}
+		String canonical = this.uris.getIfPresent(uri);
+		if (canonical != null) {
+			return canonical;
+		}
+		canonical = this.uris.asMap().putIfAbsent(uri, uri);
+		return canonical != null ? canonical : uri;
+	}
+
+	public int getMaximumSize() {
+		return this.maximumSize;
+	}
+
+	public int getMaxUriLength() {
+		return this.maxUriLength;
+	}
+
+	/**
+	 * Returns the approximate number of URIs in the dictionary
+	 */
+	public long size() {
+		if (this.uris == null) {
+			return 0;
+		}
+		this.uris.cleanUp();
+		return this.uris.estimatedSize();
+	}
+
+}
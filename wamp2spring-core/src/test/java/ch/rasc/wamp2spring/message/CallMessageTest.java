@@ -21,10 +21,16 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.assertj.core.data.MapEntry;
 import org.junit.jupiter.api.Test;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 public class CallMessageTest extends BaseMessageTest {
 
@@ -134,4 +140,69 @@ public class CallMessageTest extends BaseMessageTest {
 		assertThat(callMessage.getArgumentsKw()).isNull();
 	}
 
+	@Test
+	public void deserializeLazyArguments() throws IOException {
+		String arguments = "[1,7000000000,1.5,\"s\",null,true,[1,[2.5]],{\"a\":{\"b\":[3]}}]";
+		String argumentsKw = "{\"n\":1,\"l\":[{\"x\":1}],\"o\":{\"y\":null}}";
+		String json = "[48,1,{},\"com.myapp.call\"," + arguments + "," + argumentsKw
+				+ "]";
+
+		JsonFactory msgpackFactory = new ObjectMapper(new MessagePackFactory())
+				.getFactory();
+		CallMessage jsonMessage = WampMessage.deserialize(getJsonFactory(),
+				json.getBytes(StandardCharsets.UTF_8));
+		CallMessage msgpackMessage = WampMessage.deserialize(msgpackFactory,
+				WampMessage.deserialize(getJsonFactory(),
+						json.getBytes(StandardCharsets.UTF_8)).serialize(msgpackFactory));
+
+		for (CallMessage callMessage : Arrays.asList(jsonMessage, msgpackMessage)) {
+
+			assertThat(callMessage.getArguments()).isInstanceOf(LazyArgumentList.class);
+			assertThat(callMessage.getArgumentsKw()).isInstanceOf(LazyArgumentMap.class);
+			LazyArgumentList lazyArguments = (LazyArgumentList) callMessage.getArguments();
+			assertThat(lazyArguments.isObject(6)).isFalse();
+			assertThat(lazyArguments.isObject(7)).isTrue();
+			assertThat(((LazyArgumentMap) callMessage.getArgumentsKw()).isObject("o"))
+					.isTrue();
+			assertThat(((LazyArgumentMap) callMessage.getArgumentsKw()).isObject("l"))
+					.isFalse();
+
+			// reading one argument does not decode the buffered siblings
+			assertThat(lazyArguments.get(0)).isEqualTo(1);
+			assertThat(lazyArguments.isDecoded(6)).isFalse();
+			assertThat(lazyArguments.isDecoded(7)).isFalse();
+			assertThat(lazyArguments.get(7)).isSameAs(lazyArguments.get(7));
+			assertThat(lazyArguments.isDecoded(7)).isTrue();
+			assertThat(lazyArguments.isDecoded(6)).isFalse();
+			LazyArgumentMap lazyArgumentsKw = (LazyArgumentMap) callMessage
+					.getArgumentsKw();
+			assertThat(lazyArgumentsKw.get("n")).isEqualTo(1);
+			assertThat(lazyArgumentsKw.get("l")).isSameAs(lazyArgumentsKw.get("l"));
+			assertThat(lazyArgumentsKw.isDecoded("l")).isTrue();
+			assertThat(lazyArgumentsKw.isDecoded("o")).isFalse();
+
+			// same values as decoding the arguments directly
+			assertThat(callMessage.getArguments()).isEqualTo(read(arguments))
+					.hasSize(8);
+			assertThat(callMessage.getArgumentsKw()).isEqualTo(readKw(argumentsKw))
+					.containsKey("o");
+			assertThat(callMessage.getArguments().get(1)).isEqualTo(7000000000L);
+			assertThat(callMessage.getArguments().get(2)).isEqualTo(1.5);
+		}
+	}
+
+	private List<Object> read(String json) throws IOException {
+		try (JsonParser jp = getJsonFactory().createParser(json)) {
+			jp.nextToken();
+			return ParserUtil.readArray(jp);
+		}
+	}
+
+	private Map<String, Object> readKw(String json) throws IOException {
+		try (JsonParser jp = getJsonFactory().createParser(json)) {
+			jp.nextToken();
+			return ParserUtil.readObject(jp);
+		}
+	}
+
 }
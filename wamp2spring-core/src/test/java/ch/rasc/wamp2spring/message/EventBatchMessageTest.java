@@ -0,0 +1,122 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.message;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class EventBatchMessageTest extends BaseMessageTest {
+
+	@Test
+	public void serializeTest() {
+		EventBatchMessage batchMessage = new EventBatchMessage(createEvents());
+
+		String json = serializeToJson(batchMessage);
+		assertThat(json).isEqualTo("[[36,1,11,{}],[36,1,12,{},[\"a\"]],"
+				+ "[36,2,13,{\"topic\":\"t\"},[],{\"k\":1}]]");
+	}
+
+	@Test
+	public void deserializeTest() throws IOException {
+		String json = "[[36,1,11,{}],[36,1,12,{},[\"a\"]],"
+				+ "[36,2,13,{\"topic\":\"t\"},[],{\"k\":1}]]";
+		assertEvents(WampMessage.deserialize(getJsonFactory(), json));
+	}
+
+	@Test
+	public void binaryRoundTripTest() throws IOException {
+		JsonFactory msgpackFactory = new ObjectMapper(new MessagePackFactory())
+				.getFactory();
+		byte[] bytes = new EventBatchMessage(createEvents()).serialize(msgpackFactory);
+		assertEvents(WampMessage.deserialize(msgpackFactory, ByteBuffer.wrap(bytes)));
+	}
+
+	@Test
+	public void sharedEncodingTest() throws IOException {
+		JacksonWampCodec codec = new JacksonWampCodec(WampCodec.JSON_PROTOCOL,
+				getJsonFactory(), false);
+		PublishMessage publishMessage = PublishMessage.builder(1, "topic")
+				.addArgument("a").build();
+		EventMessage event = new EventMessage(null, 1, 12, null, null, false,
+				publishMessage);
+		EventMessage first = event.copyForReceiver("ws1");
+		EventMessage second = event.copyForReceiver("ws2");
+
+		List<EventMessage> events = Arrays.asList(
+				new EventMessage(1, 11, null, null, false, null, null), first);
+		String expected = "[[36,1,11,{}],[36,1,12,{},[\"a\"]]]";
+		assertThat(new String(codec.encode(new EventBatchMessage(events)),
+				StandardCharsets.UTF_8)).isEqualTo(expected);
+		StringWriter writer = new StringWriter();
+		codec.encode(new EventBatchMessage(events), writer);
+		assertThat(writer.toString()).isEqualTo(expected);
+
+		// the batch stored the encoding of the event for the other receivers
+		assertThat(second.serialize(codec)).isSameAs(first.serialize(codec));
+		assertThat(new String(second.serialize(codec), StandardCharsets.UTF_8))
+				.isEqualTo("[36,1,12,{},[\"a\"]]");
+	}
+
+	@Test
+	public void deserializeOtherMessageTest() {
+		String json = "[[36,1,11,{}],[16,1,{},\"topic\"]]";
+		Assertions.assertThrows(IOException.class,
+				() -> WampMessage.deserialize(getJsonFactory(), json));
+	}
+
+	private static List<EventMessage> createEvents() {
+		return Arrays.asList(new EventMessage(1, 11, null, null, false, null, null),
+				new EventMessage(1, 12, null, null, false, Arrays.asList("a"), null),
+				new EventMessage(2, 13, "t", null, false, null,
+						Collections.singletonMap("k", 1)));
+	}
+
+	private static void assertEvents(WampMessage message) {
+		assertThat(message).isInstanceOf(EventBatchMessage.class);
+		List<EventMessage> events = ((EventBatchMessage) message).getEvents();
+		assertThat(events).hasSize(3);
+
+		assertThat(events.get(0).getSubscriptionId()).isEqualTo(1);
+		assertThat(events.get(0).getPublicationId()).isEqualTo(11);
+		assertThat(events.get(0).getArguments()).isNull();
+		assertThat(events.get(0).getArgumentsKw()).isNull();
+
+		assertThat(events.get(1).getPublicationId()).isEqualTo(12);
+		assertThat(events.get(1).getArguments()).containsExactly("a");
+		assertThat(events.get(1).getArgumentsKw()).isNull();
+
+		assertThat(events.get(2).getSubscriptionId()).isEqualTo(2);
+		assertThat(events.get(2).getPublicationId()).isEqualTo(13);
+		assertThat(events.get(2).getTopic()).isEqualTo("t");
+		assertThat(events.get(2).getArguments()).isEmpty();
+		assertThat(events.get(2).getArgumentsKw()).containsEntry("k", 1);
+	}
+
+}
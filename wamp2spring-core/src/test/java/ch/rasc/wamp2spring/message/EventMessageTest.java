@@ -232,4 +232,27 @@ public class EventMessageTest extends BaseMessageTest {
 		assertThat(eventMessage.getArgumentsKw()).isNull();
 	}
 
+	@Test
+	public void copyForReceiverSharesEncodingTest() throws IOException {
+		EventMessage eventMessage = new EventMessage(1, 2, "topic", null, false,
+				Collections.singletonList("Hello, world!"), null);
+		EventMessage first = eventMessage.copyForReceiver("ws1");
+		EventMessage second = eventMessage.copyForReceiver("ws2");
+
+		assertThat(first.getWebSocketSessionId()).isEqualTo("ws1");
+		assertThat(second.getWebSocketSessionId()).isEqualTo("ws2");
+		assertThat(eventMessage.getWebSocketSessionId()).isNull();
+
+		byte[] bytes = first.serialize(getJsonFactory());
+		assertThat(new String(bytes, StandardCharsets.UTF_8))
+				.isEqualTo("[36,1,2,{\"topic\":\"topic\"},[\"Hello, world!\"]]");
+		assertThat(second.serialize(getJsonFactory())).isSameAs(bytes);
+		assertThat(eventMessage.serialize(getJsonFactory())).isSameAs(bytes);
+
+		EventMessage other = new EventMessage(1, 2, "topic", null, false,
+				Collections.singletonList("Hello, world!"), null);
+		assertThat(other.serialize(getJsonFactory())).isEqualTo(bytes)
+				.isNotSameAs(bytes);
+	}
+
 }
@@ -58,6 +58,17 @@ public class HelloMessageTest extends BaseMessageTest {
 		assertThat(helloMessage.getRoles()).containsOnlyElementsOf(createRoles());
 	}
 
+	@Test
+	public void hasFeatureTest() {
+		HelloMessage helloMessage = new HelloMessage("aRealm", createRoles());
+		assertThat(helloMessage.hasFeature("subscriber", "subscriber_blackwhite_listing"))
+				.isTrue();
+		assertThat(helloMessage.hasFeature("publisher", "subscriber_blackwhite_listing"))
+				.isFalse();
+		assertThat(helloMessage.hasFeature("subscriber", "event_batching")).isFalse();
+		assertThat(helloMessage.hasFeature("caller", "publisher_exclusion")).isFalse();
+	}
+
 	private static List<WampRole> createRoles() {
 		List<WampRole> roles = new ArrayList<>();
 		WampRole publisher = new WampRole("publisher");
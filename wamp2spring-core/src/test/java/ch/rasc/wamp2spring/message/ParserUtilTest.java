@@ -18,7 +18,9 @@ package ch.rasc.wamp2spring.message;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 import org.assertj.core.data.MapEntry;
@@ -26,6 +28,7 @@ import org.junit.jupiter.api.Test;
 
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 public class ParserUtilTest {
@@ -89,4 +92,59 @@ public class ParserUtilTest {
 				.containsOnly(MapEntry.entry("c1", 111), MapEntry.entry("c2", 222));
 	}
 
+	@SuppressWarnings("resource")
+	@Test
+	public void testReadEntries() throws JsonParseException, IOException {
+		ObjectMapper om = new ObjectMapper();
+		JsonParser jp = om.getFactory().createParser(
+				"{\"b\":true,\"s\":\"one\",\"n\":12,\"l\":7000000000,\"d\":1.5,"
+						+ "\"ids\":[3,\"x\",{\"y\":[2]},1,3,1.5],\"o\":{\"p\":[1,2]},"
+						+ "\"b2\":\"true\",\"s2\":[\"two\"],\"n2\":{},\"ids2\":5}");
+		jp.nextToken();
+
+		List<String> keys = new ArrayList<>();
+		String key;
+		while ((key = ParserUtil.nextKey(jp)) != null) {
+			keys.add(key);
+			switch (key) {
+			case "b":
+				assertThat(ParserUtil.readBoolean(jp, false)).isTrue();
+				break;
+			case "s":
+				assertThat(ParserUtil.readString(jp)).isEqualTo("one");
+				break;
+			case "n":
+				assertThat(ParserUtil.readNumber(jp)).isEqualTo(12);
+				break;
+			case "l":
+				assertThat(ParserUtil.readNumber(jp)).isEqualTo(7000000000L);
+				break;
+			case "d":
+				assertThat(ParserUtil.readNumber(jp)).isEqualTo(1.5);
+				break;
+			case "ids":
+				assertThat(ParserUtil.readIdArray(jp)).containsExactly(1L, 3L);
+				break;
+			case "b2":
+				assertThat(ParserUtil.readBoolean(jp, true)).isTrue();
+				break;
+			case "s2":
+				assertThat(ParserUtil.readString(jp)).isNull();
+				break;
+			case "n2":
+				assertThat(ParserUtil.readNumber(jp)).isNull();
+				break;
+			case "ids2":
+				assertThat(ParserUtil.readIdArray(jp)).isNull();
+				break;
+			default:
+				jp.skipChildren();
+			}
+		}
+		assertThat(jp.currentToken()).isEqualTo(JsonToken.END_OBJECT);
+		assertThat(jp.nextToken()).isNull();
+		assertThat(keys).containsExactly("b", "s", "n", "l", "d", "ids", "o", "b2", "s2",
+				"n2", "ids2");
+	}
+
 }
@@ -19,8 +19,10 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 import org.assertj.core.data.MapEntry;
 import org.junit.jupiter.api.Test;
@@ -153,8 +155,15 @@ public class PublishMessageTest extends BaseMessageTest {
 		assertThat(publishMessage.getCode()).isEqualTo(16);
 		assertThat(publishMessage.getRequestId()).isEqualTo(2);
 		assertThat(publishMessage.getTopic()).isEqualTo("event");
-		assertThat(publishMessage.getEligible()).containsOnly(2, 3);
-		assertThat(publishMessage.getExclude()).containsOnly(7891255, 1245751);
+		assertThat(publishMessage.getEligible()).containsOnly(2L, 3L);
+		assertThat(publishMessage.getExclude()).containsOnly(7891255L, 1245751L);
+		assertThat(publishMessage.getEligible().contains(2)).isTrue();
+		// Integer ids match the long session ids
+		assertThat(publishMessage.isEligible(2L)).isTrue();
+		assertThat(publishMessage.isEligible(4L)).isFalse();
+		assertThat(publishMessage.isExcluded(1245751L)).isTrue();
+		assertThat(publishMessage.isExcluded(2L)).isFalse();
+		assertThat(publishMessage.getEligibleCount()).isEqualTo(2);
 		assertThat(publishMessage.isAcknowledge()).isFalse();
 		assertThat(publishMessage.isDiscloseMe()).isFalse();
 		assertThat(publishMessage.isRetain()).isFalse();
@@ -167,6 +176,30 @@ public class PublishMessageTest extends BaseMessageTest {
 				"[16,2,{\"exclude\":[1245751,7891255],\"eligible\":[2,3]},\"event\",[23],{\"color\":\"green\"}]");
 	}
 
+	@Test
+	public void eligibleIds() {
+		PublishMessage publishMessage = PublishMessage.builder(2, "event").build();
+		assertThat(publishMessage.getEligibleCount()).isEqualTo(-1);
+		assertThat(publishMessage.isEligible(5L)).isTrue();
+
+		// the same id as Integer and Long is only delivered once
+		publishMessage = PublishMessage.builder(2, "event").addEligible(9L)
+				.addEligible(5).addEligible(5L).addEligible(1).build();
+		assertThat(publishMessage.getEligible()).containsExactly(1L, 5L, 9L);
+		assertThat(publishMessage.getEligibleCount()).isEqualTo(3);
+		List<Long> ids = new ArrayList<>();
+		publishMessage.forEachEligibleId(ids::add);
+		assertThat(ids).containsExactly(1L, 5L, 9L);
+
+		// a reused builder keeps the ids of the first build
+		PublishMessage.Builder builder = PublishMessage.builder(3, "event")
+				.addExclude(7).addExclude(3);
+		PublishMessage first = builder.build();
+		PublishMessage second = builder.addExclude(3).addExclude(1).build();
+		assertThat(first.getExclude()).containsExactly(3L, 7L);
+		assertThat(second.getExclude()).containsExactly(1L, 3L, 7L);
+	}
+
 	@Test
 	public void deserializeTest() throws IOException {
 		String json = "[16, 239714735, {}, \"com.myapp.mytopic1\"]";
@@ -269,14 +302,25 @@ public class PublishMessageTest extends BaseMessageTest {
 		assertThat(publishMessage.getCode()).isEqualTo(16);
 		assertThat(publishMessage.getRequestId()).isEqualTo(523412L);
 		assertThat(publishMessage.getTopic()).isEqualTo("com.myapp.mytopic");
-		assertThat(publishMessage.getEligible()).containsExactly(2, 3);
-		assertThat(publishMessage.getExclude()).containsOnly(7891255, 1245751);
+		assertThat(publishMessage.getEligible()).containsExactly(2L, 3L);
+		assertThat(publishMessage.getExclude()).containsExactly(1245751L, 7891255L);
+		assertThat(publishMessage.isExcluded(7891255L)).isTrue();
 		assertThat(publishMessage.isAcknowledge()).isFalse();
 		assertThat(publishMessage.isDiscloseMe()).isFalse();
 		assertThat(publishMessage.isRetain()).isFalse();
 		assertThat(publishMessage.isExcludeMe()).isTrue();
 		assertThat(publishMessage.getArguments()).containsExactly(23);
 		assertThat(publishMessage.getArgumentsKw()).isNull();
+
+		json = "[16, 1, {\"x_custom\": {\"a\": [1, {\"b\": 2}]}, \"retain\": true, \"acknowledge\": \"yes\", \"exclude\": [5, \"x\", [6]], \"x_list\": []}, \"com.myapp.mytopic\", [23]]";
+		publishMessage = WampMessage.deserialize(getJsonFactory(),
+				json.getBytes(StandardCharsets.UTF_8));
+		assertThat(publishMessage.getTopic()).isEqualTo("com.myapp.mytopic");
+		assertThat(publishMessage.isRetain()).isTrue();
+		assertThat(publishMessage.isAcknowledge()).isFalse();
+		assertThat(publishMessage.getExclude()).containsOnly(5L);
+		assertThat(publishMessage.getEligible()).isNull();
+		assertThat(publishMessage.getArguments()).containsExactly(23);
 	}
 
 }
@@ -0,0 +1,148 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.message;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+
+import org.junit.jupiter.api.Test;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+import org.springframework.messaging.MessageHeaders;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class WampMessageTest extends BaseMessageTest {
+
+	private static final String JSON = "[32,713845233,{},\"com.myapp.mytopic1\"]";
+
+	@Test
+	public void deserializeString() throws IOException {
+		assertSubscribeMessage(WampMessage.deserialize(getJsonFactory(), JSON));
+	}
+
+	@Test
+	public void deserializeHeapBufferWithOffset() throws IOException {
+		byte[] json = JSON.getBytes(StandardCharsets.UTF_8);
+		byte[] framed = new byte[json.length + 10];
+		System.arraycopy(json, 0, framed, 7, json.length);
+
+		ByteBuffer buffer = ByteBuffer.wrap(framed, 5, json.length + 4).slice();
+		buffer.position(2);
+		buffer.limit(2 + json.length);
+		assertThat(buffer.arrayOffset()).isEqualTo(5);
+
+		assertSubscribeMessage(WampMessage.deserialize(getJsonFactory(), buffer));
+		assertThat(buffer.position()).isEqualTo(2);
+	}
+
+	@Test
+	public void deserializeDirectBuffer() throws IOException {
+		byte[] json = JSON.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(json.length + 3);
+		buffer.position(3);
+		buffer.put(json);
+		buffer.position(3);
+
+		assertSubscribeMessage(WampMessage.deserialize(getJsonFactory(), buffer));
+		assertThat(buffer.position()).isEqualTo(3);
+	}
+
+	@Test
+	public void deserializeBinaryFormat() throws IOException {
+		JsonFactory msgpackFactory = new ObjectMapper(new MessagePackFactory())
+				.getFactory();
+		SubscribeMessage message = new SubscribeMessage(713845233, "com.myapp.mytopic1");
+		ByteBuffer buffer = ByteBuffer.wrap(message.serialize(msgpackFactory));
+
+		assertSubscribeMessage(WampMessage.deserialize(msgpackFactory, buffer));
+	}
+
+	@Test
+	public void codecRoundTrip() throws IOException {
+		WampCodec codec = new JacksonWampCodec(WampCodec.MSGPACK_PROTOCOL,
+				new ObjectMapper(new MessagePackFactory()).getFactory(), true);
+		SubscribeMessage message = new SubscribeMessage(713845233, "com.myapp.mytopic1");
+
+		byte[] bytes = codec.encode(message);
+		assertSubscribeMessage(codec.decode(ByteBuffer.wrap(bytes)));
+		assertThat(message.serialize(codec)).isEqualTo(bytes);
+	}
+
+	@Test
+	public void textCodecRoundTrip() throws IOException {
+		WampCodec codec = new JacksonWampCodec(WampCodec.JSON_PROTOCOL, getJsonFactory(),
+				false);
+		assertSubscribeMessage(codec.decode(JSON));
+
+		StringWriter writer = new StringWriter();
+		codec.encode(codec.decode(JSON), writer);
+		assertThat(writer.toString()).isEqualTo(JSON);
+	}
+
+	@Test
+	public void headers() {
+		SubscribeMessage message = new SubscribeMessage(1, "com.myapp.mytopic1");
+		assertThat(message.getWebSocketSessionId()).isNull();
+		assertThat(message.getWampSessionId()).isNull();
+		assertThat(message.getPrincipal()).isNull();
+		assertThat((Integer) message.getHeader(WampMessageHeader.WAMP_MESSAGE_CODE))
+				.isEqualTo(SubscribeMessage.CODE);
+
+		MessageHeaders headers = message.getHeaders();
+		assertThat(headers).containsOnlyKeys(WampMessageHeader.WAMP_MESSAGE_CODE.name());
+		assertThat(message.getHeaders()).isSameAs(headers);
+
+		Principal principal = () -> "user";
+		message.setHeader(WampMessageHeader.WEBSOCKET_SESSION_ID, "ws1");
+		message.setHeader(WampMessageHeader.WAMP_SESSION_ID, 2);
+		message.setHeader(WampMessageHeader.PRINCIPAL, principal);
+		message.setHeader(WampMessageHeader.PRINCIPAL, null);
+		message.setHeader(WampMessageHeader.WAMP_MESSAGE_CODE, 99);
+
+		assertThat(message.getWebSocketSessionId()).isEqualTo("ws1");
+		assertThat(message.getWampSessionId()).isEqualTo(2L);
+		assertThat(message.getPrincipal()).isSameAs(principal);
+		assertThat((String) message.getHeader(WampMessageHeader.WEBSOCKET_SESSION_ID))
+				.isEqualTo("ws1");
+		assertThat((Integer) message.getHeader(WampMessageHeader.WAMP_MESSAGE_CODE))
+				.isEqualTo(SubscribeMessage.CODE);
+
+		headers = message.getHeaders();
+		assertThat(headers).hasSize(4);
+		assertThat(headers.get(WampMessageHeader.WEBSOCKET_SESSION_ID.name()))
+				.isEqualTo("ws1");
+		assertThat(headers.get(WampMessageHeader.WAMP_SESSION_ID.name())).isEqualTo(2L);
+		assertThat(headers.get(WampMessageHeader.PRINCIPAL.name())).isSameAs(principal);
+		assertThat(headers.get(WampMessageHeader.WAMP_MESSAGE_CODE.name()))
+				.isEqualTo(SubscribeMessage.CODE);
+		assertThat(headers.getId()).isNull();
+		assertThat(headers.getTimestamp()).isNull();
+	}
+
+	private static void assertSubscribeMessage(WampMessage message) {
+		assertThat(message).isInstanceOf(SubscribeMessage.class);
+		SubscribeMessage subscribeMessage = (SubscribeMessage) message;
+		assertThat(subscribeMessage.getRequestId()).isEqualTo(713845233);
+		assertThat(subscribeMessage.getTopic()).isEqualTo("com.myapp.mytopic1");
+	}
+
+}
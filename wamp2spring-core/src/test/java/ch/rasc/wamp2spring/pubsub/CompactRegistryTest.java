@@ -0,0 +1,134 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.pubsub;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import ch.rasc.wamp2spring.message.SubscribeMessage;
+import ch.rasc.wamp2spring.message.UnsubscribeMessage;
+import ch.rasc.wamp2spring.message.WampMessageHeader;
+
+public class CompactRegistryTest {
+
+	@Test
+	public void testSubscribers() {
+		SubscriptionRegistry registry = new SubscriptionRegistry(true);
+		SubscribeResult result1 = subscribe(registry, "topic", 123L);
+		SubscribeResult result2 = subscribe(registry, "topic", 12L);
+		subscribe(registry, "topic", 321L);
+		subscribe(registry, "other", 123L);
+
+		Subscription subscription = result1.getSubscription();
+		assertThat(result2.getSubscription()).isSameAs(subscription);
+		assertThat(subscription.getSubscribers()).hasSize(3);
+		assertThat(subscription.getSubscribers()).extracting(Subscriber::getWampSessionId)
+				.containsExactly(12L, 123L, 321L);
+		assertThat(subscription.getSubscriber(123L).getWebSocketSessionId())
+				.isEqualTo("ws123");
+		assertThat(subscription.getSubscriber(99L)).isNull();
+
+		// all subscriptions of a session share the subscriber
+		Subscription other = registry.findSubscriptions("other").iterator().next();
+		assertThat(other.getSubscriber(123L)).isSameAs(subscription.getSubscriber(123L));
+
+		UnsubscribeMessage unsubscribeMessage = new UnsubscribeMessage(2,
+				subscription.getSubscriptionId());
+		unsubscribeMessage.setHeader(WampMessageHeader.WAMP_SESSION_ID, 12L);
+		unsubscribeMessage.setHeader(WampMessageHeader.WEBSOCKET_SESSION_ID, "ws12");
+		UnsubscribeResult uresult = registry.unsubscribe(unsubscribeMessage);
+		assertThat(uresult.getError()).isNull();
+		assertThat(uresult.isDeleted()).isFalse();
+		assertThat(registry.listSubscribers(subscription.getSubscriptionId()))
+				.containsExactly(123L, 321L);
+
+		List<UnsubscribeResult> results = registry.removeWebSocketSessionId("ws123",
+				123L);
+		assertThat(results).hasSize(2);
+		assertThat(registry.listSubscribers(subscription.getSubscriptionId()))
+				.containsExactly(321L);
+		assertThat(registry.findSubscriptions("other")).isEmpty();
+
+		results = registry.removeWebSocketSessionId("ws321", 321L);
+		assertThat(results).hasSize(1);
+		assertThat(results.get(0).isDeleted()).isTrue();
+
+		// the subscriber of a session is kept until the session is closed
+		RegistryFootprint footprint = registry.footprint();
+		assertThat(footprint.getSubscriptions()).isEqualTo(0);
+		assertThat(footprint.getSessions()).isEqualTo(1);
+		assertThat(registry.removeWebSocketSessionId("ws12", 12L)).isEmpty();
+
+		footprint = registry.footprint();
+		assertThat(footprint.isCompact()).isTrue();
+		assertThat(footprint.getSubscriptions()).isEqualTo(0);
+		assertThat(footprint.getSessions()).isEqualTo(0);
+	}
+
+	@Test
+	public void testIteratorSkipsClosedSessions() {
+		SubscriptionRegistry registry = new SubscriptionRegistry(true);
+		SubscribeResult result = subscribe(registry, "topic", 1L);
+		subscribe(registry, "topic", 2L);
+		subscribe(registry, "topic", 3L);
+
+		Set<Subscriber> subscribers = result.getSubscription().getSubscribers();
+		Iterator<Subscriber> iterator = subscribers.iterator();
+		registry.removeWebSocketSessionId("ws2", 2L);
+		assertThat(iterator.next().getWampSessionId()).isEqualTo(1L);
+		assertThat(iterator.next().getWampSessionId()).isEqualTo(3L);
+		assertThat(iterator.hasNext()).isFalse();
+	}
+
+	@Test
+	public void testFootprint() {
+		SubscriptionRegistry defaultRegistry = new SubscriptionRegistry();
+		SubscriptionRegistry compactRegistry = new SubscriptionRegistry(true);
+		for (int i = 0; i < 1000; i++) {
+			long wampSessionId = i % 100 + 1;
+			subscribe(defaultRegistry, "topic." + i, wampSessionId);
+			subscribe(compactRegistry, "topic." + i, wampSessionId);
+		}
+
+		RegistryFootprint defaultFootprint = defaultRegistry.footprint();
+		RegistryFootprint compactFootprint = compactRegistry.footprint();
+		assertThat(defaultFootprint.isCompact()).isFalse();
+		assertThat(defaultFootprint.getSubscriptions()).isEqualTo(1000);
+		assertThat(defaultFootprint.getSubscribers()).isEqualTo(1000);
+		assertThat(defaultFootprint.getSessions()).isEqualTo(100);
+		assertThat(compactFootprint.getSubscriptions()).isEqualTo(1000);
+		assertThat(compactFootprint.getSubscribers()).isEqualTo(1000);
+		assertThat(compactFootprint.getSessions()).isEqualTo(100);
+
+		assertThat(compactFootprint.getEstimatedBytesPerSubscription() * 4)
+				.isLessThan(defaultFootprint.getEstimatedBytesPerSubscription());
+	}
+
+	private static SubscribeResult subscribe(SubscriptionRegistry registry, String topic,
+			long wampSessionId) {
+		SubscribeMessage subscribeMessage = new SubscribeMessage(1, topic);
+		subscribeMessage.setHeader(WampMessageHeader.WAMP_SESSION_ID, wampSessionId);
+		subscribeMessage.setHeader(WampMessageHeader.WEBSOCKET_SESSION_ID,
+				"ws" + wampSessionId);
+		return registry.subscribe(subscribeMessage);
+	}
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.pubsub;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import ch.rasc.wamp2spring.config.ParallelFanOut;
+
+public class FanOutLanesTest {
+
+	@Test
+	public void testLaneOrder() throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			FanOutLanes lanes = new FanOutLanes(settings(10, 4, executor));
+			List<Integer> result = Collections.synchronizedList(new ArrayList<>());
+			CountDownLatch done = new CountDownLatch(1000);
+			for (int i = 0; i < 1000; i++) {
+				int value = i;
+				lanes.execute(1, () -> {
+					result.add(value);
+					done.countDown();
+				});
+			}
+			assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+			for (int i = 0; i < 1000; i++) {
+				assertThat(result.get(i)).isEqualTo(i);
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testIsParallel() throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		// counted down when a lane has drained its queue and gave up the thread
+		CountDownLatch idle = new CountDownLatch(1);
+		Executor executor = command -> pool.execute(() -> {
+			try {
+				command.run();
+			}
+			finally {
+				idle.countDown();
+			}
+		});
+		try {
+			FanOutLanes lanes = new FanOutLanes(settings(10, 2, executor));
+			assertThat(lanes.isParallel(9)).isFalse();
+			assertThat(lanes.isParallel(10)).isTrue();
+
+			CountDownLatch block = new CountDownLatch(1);
+			CountDownLatch done = new CountDownLatch(1);
+			lanes.execute(0, () -> {
+				try {
+					block.await();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				done.countDown();
+			});
+
+			// small sets must not overtake queued work
+			assertThat(lanes.isParallel(1)).isTrue();
+
+			block.countDown();
+			assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+			assertThat(idle.await(10, TimeUnit.SECONDS)).isTrue();
+			assertThat(lanes.isParallel(1)).isFalse();
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testLaneOf() {
+		FanOutLanes lanes = new FanOutLanes(settings(10, 3, Runnable::run));
+		assertThat(lanes.size()).isEqualTo(3);
+		for (int i = 0; i < 50; i++) {
+			Subscriber subscriber = new Subscriber("ws" + i, (long) i);
+			int lane = lanes.laneOf(subscriber);
+			assertThat(lane).isBetween(0, 2);
+			assertThat(lanes.laneOf(new Subscriber("ws" + i, (long) i + 1)))
+					.isEqualTo(lane);
+		}
+	}
+
+	@Test
+	public void testRejected() {
+		FanOutLanes lanes = new FanOutLanes(settings(10, 1, command -> {
+			throw new RejectedExecutionException();
+		}));
+		List<Integer> result = new ArrayList<>();
+		lanes.execute(0, () -> result.add(1));
+		lanes.execute(0, () -> result.add(2));
+		assertThat(result).containsExactly(1, 2);
+		assertThat(lanes.isParallel(1)).isFalse();
+	}
+
+	private static ParallelFanOut settings(int threshold, int parallelism,
+			Executor executor) {
+		ParallelFanOut fanOut = new ParallelFanOut();
+		fanOut.enable();
+		fanOut.setThreshold(threshold);
+		fanOut.setParallelism(parallelism);
+		fanOut.setExecutor(executor);
+		return fanOut;
+	}
+
+}
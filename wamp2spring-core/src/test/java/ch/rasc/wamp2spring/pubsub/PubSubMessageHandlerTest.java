@@ -0,0 +1,123 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.pubsub;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.rasc.wamp2spring.config.Features;
+import ch.rasc.wamp2spring.config.ParallelFanOut;
+import ch.rasc.wamp2spring.message.EventMessage;
+import ch.rasc.wamp2spring.message.PublishMessage;
+import ch.rasc.wamp2spring.message.SubscribeMessage;
+import ch.rasc.wamp2spring.message.WampMessageHeader;
+import ch.rasc.wamp2spring.util.HandlerMethodService;
+
+public class PubSubMessageHandlerTest {
+
+	@Test
+	public void testEligibleKeepsLaneOrder() throws InterruptedException {
+		int noOfEvents = 20;
+		Map<String, List<Object>> received = new ConcurrentHashMap<>();
+		CountDownLatch done = new CountDownLatch(4 * noOfEvents);
+		MessageChannel clientOutboundChannel = (message, timeout) -> {
+			if (message instanceof EventMessage) {
+				EventMessage event = (EventMessage) message;
+				received.computeIfAbsent(event.getWebSocketSessionId(),
+						k -> new ArrayList<>()).add(event.getArguments().get(0));
+				done.countDown();
+			}
+			return true;
+		};
+
+		// the lanes only start once every publication has been handled
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		ParallelFanOut parallelFanOut = new ParallelFanOut();
+		parallelFanOut.enable();
+		parallelFanOut.setThreshold(2);
+		parallelFanOut.setParallelism(2);
+		parallelFanOut.setExecutor(command -> pool.execute(() -> {
+			try {
+				release.await();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			command.run();
+		}));
+
+		StaticApplicationContext applicationContext = new StaticApplicationContext();
+		applicationContext.refresh();
+		PubSubMessageHandler handler = new PubSubMessageHandler(
+				new ExecutorSubscribableChannel(), new ExecutorSubscribableChannel(),
+				clientOutboundChannel, new SubscriptionRegistry(),
+				new HandlerMethodService(new DefaultConversionService(), List.of(),
+						new ObjectMapper(), applicationContext),
+				new Features(), new MemoryEventStore(), parallelFanOut);
+		handler.setApplicationContext(applicationContext);
+		handler.start();
+
+		try {
+			for (long i = 1; i <= 3; i++) {
+				SubscribeMessage subscribeMessage = new SubscribeMessage(1, "topic");
+				subscribeMessage.setHeader(WampMessageHeader.WEBSOCKET_SESSION_ID,
+						"ws" + i);
+				subscribeMessage.setHeader(WampMessageHeader.WAMP_SESSION_ID, i);
+				handler.handleMessage(subscribeMessage);
+			}
+
+			List<Object> expected = new ArrayList<>();
+			List<Object> expectedWs1 = new ArrayList<>();
+			for (int i = 0; i < noOfEvents; i++) {
+				handler.handleMessage(
+						PublishMessage.builder(1, "topic").addArgument(i).build());
+				handler.handleMessage(PublishMessage.builder(1, "topic")
+						.addArgument(1000 + i).addEligible(1L).build());
+				expected.add(i);
+				expectedWs1.add(i);
+				expectedWs1.add(1000 + i);
+			}
+			release.countDown();
+
+			assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+			assertThat(received.get("ws1")).containsExactlyElementsOf(expectedWs1);
+			assertThat(received.get("ws2")).containsExactlyElementsOf(expected);
+			assertThat(received.get("ws3")).containsExactlyElementsOf(expected);
+		}
+		finally {
+			handler.stop();
+			pool.shutdownNow();
+		}
+	}
+
+}
@@ -64,4 +64,14 @@ public class CollectionHelperTest {
 				.isInstanceOf(Set.class).containsExactly(1L, 2L, 3L);
 	}
 
+	@Test
+	public void testToSortedDistinct() {
+		assertThat(CollectionHelper.toSortedDistinct(new long[0], 0)).isEmpty();
+		long[] values = { 3, 1, 2 };
+		assertThat(CollectionHelper.toSortedDistinct(values, 3)).isSameAs(values)
+				.containsExactly(1L, 2L, 3L);
+		assertThat(CollectionHelper.toSortedDistinct(new long[] { 9, 5, 9, 1, 5, 0, 0 },
+				5)).containsExactly(1L, 5L, 9L);
+	}
+
 }
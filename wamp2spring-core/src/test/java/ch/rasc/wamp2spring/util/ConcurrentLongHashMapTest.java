@@ -0,0 +1,122 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class ConcurrentLongHashMapTest {
+
+	@Test
+	public void testBasicOperations() {
+		ConcurrentLongHashMap<String> map = new ConcurrentLongHashMap<>(4, 2);
+		assertThat(map.isEmpty()).isTrue();
+		assertThat(map.put(1L, "one")).isNull();
+		assertThat(map.put(0L, "zero")).isNull();
+		assertThat(map.put(-5L, "minus five")).isNull();
+		assertThat(map.put(1L, "uno")).isEqualTo("one");
+		assertThat(map.putIfAbsent(1L, "eins")).isEqualTo("uno");
+		assertThat(map.putIfAbsent(2L, "two")).isNull();
+
+		assertThat(map.size()).isEqualTo(4);
+		assertThat(map.get(1L)).isEqualTo("uno");
+		assertThat(map.get(0L)).isEqualTo("zero");
+		assertThat(map.get(-5L)).isEqualTo("minus five");
+		assertThat(map.get(3L)).isNull();
+		assertThat(map.containsKey(2L)).isTrue();
+		assertThat(map.values()).containsOnly("uno", "zero", "minus five", "two");
+
+		assertThat(map.remove(2L, "deux")).isFalse();
+		assertThat(map.remove(2L, "two")).isTrue();
+		assertThat(map.remove(0L)).isEqualTo("zero");
+		assertThat(map.remove(0L)).isNull();
+		assertThat(map.size()).isEqualTo(2);
+
+		map.clear();
+		assertThat(map.isEmpty()).isTrue();
+		assertThat(map.get(1L)).isNull();
+	}
+
+	@Test
+	public void testAgainstHashMap() {
+		ConcurrentLongHashMap<Long> map = new ConcurrentLongHashMap<>(1, 1);
+		Map<Long, Long> expected = new HashMap<>();
+		Random random = new Random(42);
+		for (int i = 0; i < 200_000; i++) {
+			// a small key space produces many collisions and removals inside probe
+			// sequences
+			long key = random.nextInt(2_000);
+			if (random.nextBoolean()) {
+				assertThat(map.put(key, (long) i)).isEqualTo(expected.put(key, (long) i));
+			}
+			else {
+				assertThat(map.remove(key)).isEqualTo(expected.remove(key));
+			}
+		}
+		assertThat(map.size()).isEqualTo(expected.size());
+		for (long key = 0; key < 2_000; key++) {
+			assertThat(map.get(key)).isEqualTo(expected.get(key));
+		}
+	}
+
+	@Test
+	public void testConcurrentAccess() throws Exception {
+		ConcurrentLongHashMap<Long> map = new ConcurrentLongHashMap<>();
+		int threads = 8;
+		int perThread = 20_000;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			long base = (long) t * perThread;
+			futures.add(executor.submit(() -> {
+				start.await();
+				for (long key = base; key < base + perThread; key++) {
+					map.put(key, key);
+					assertThat(map.get(key)).isEqualTo(key);
+				}
+				for (long key = base; key < base + perThread; key += 2) {
+					assertThat(map.remove(key)).isEqualTo(key);
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		executor.shutdown();
+		assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+		assertThat(map.size()).isEqualTo(threads * perThread / 2);
+		for (long key = 0; key < threads * perThread; key++) {
+			assertThat(map.get(key)).isEqualTo(key % 2 == 0 ? null : key);
+		}
+	}
+
+}
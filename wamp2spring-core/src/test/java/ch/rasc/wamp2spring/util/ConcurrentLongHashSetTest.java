@@ -0,0 +1,83 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class ConcurrentLongHashSetTest {
+
+	@Test
+	public void testBasicOperations() {
+		ConcurrentLongHashSet set = new ConcurrentLongHashSet(4, 2);
+		assertThat(set.isEmpty()).isTrue();
+		assertThat(set.add(0L)).isTrue();
+		assertThat(set.add(7L)).isTrue();
+		assertThat(set.add(7L)).isFalse();
+		assertThat(set.add(IdGenerator.MAX)).isTrue();
+		assertThat(set.size()).isEqualTo(3);
+		assertThat(set.contains(0L)).isTrue();
+		assertThat(set.contains(7L)).isTrue();
+		assertThat(set.contains(8L)).isFalse();
+
+		List<Long> values = new ArrayList<>();
+		set.forEach(values::add);
+		assertThat(values).containsOnly(0L, 7L, IdGenerator.MAX);
+
+		assertThat(set.remove(7L)).isTrue();
+		assertThat(set.remove(7L)).isFalse();
+		assertThat(set.contains(7L)).isFalse();
+		assertThat(set.size()).isEqualTo(2);
+	}
+
+	@Test
+	public void testAgainstHashSet() {
+		ConcurrentLongHashSet set = new ConcurrentLongHashSet(1, 1);
+		Set<Long> expected = new HashSet<>();
+		Random random = new Random(7);
+		for (int i = 0; i < 200_000; i++) {
+			long value = random.nextInt(2_000);
+			if (random.nextBoolean()) {
+				assertThat(set.add(value)).isEqualTo(expected.add(value));
+			}
+			else {
+				assertThat(set.remove(value)).isEqualTo(expected.remove(value));
+			}
+		}
+		assertThat(set.size()).isEqualTo(expected.size());
+		for (long value = 0; value < 2_000; value++) {
+			assertThat(set.contains(value)).isEqualTo(expected.contains(value));
+		}
+	}
+
+	@Test
+	public void testRemoveWhileIterating() {
+		ConcurrentLongHashSet set = new ConcurrentLongHashSet();
+		for (long i = 1; i <= 100; i++) {
+			set.add(i);
+		}
+		set.forEach(set::remove);
+		assertThat(set.isEmpty()).isTrue();
+	}
+
+}
@@ -36,6 +36,14 @@ public class IdGeneratorTest {
 				IdGenerator.MAX);
 	}
 
+	@Test
+	public void testNewRandomIdRange() {
+		for (int i = 0; i < 10_000; i++) {
+			assertThat(IdGenerator.newRandomId()).isBetween(IdGenerator.MIN,
+					IdGenerator.MAX);
+		}
+	}
+
 	@Test
 	public void testNewLinearId() {
 		AtomicLong id = new AtomicLong(0);
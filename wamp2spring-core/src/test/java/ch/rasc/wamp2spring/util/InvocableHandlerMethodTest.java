@@ -17,6 +17,7 @@ package ch.rasc.wamp2spring.util;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.io.IOException;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.util.Arrays;
@@ -34,13 +35,20 @@ import org.springframework.core.MethodParameter;
 import org.springframework.core.convert.ConversionFailedException;
 import org.springframework.format.support.DefaultFormattingConversionService;
 import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
 import org.springframework.messaging.handler.HandlerMethod;
+import org.springframework.messaging.handler.invocation.HandlerMethodArgumentResolver;
 import org.springframework.messaging.handler.invocation.HandlerMethodArgumentResolverComposite;
 
+import com.fasterxml.jackson.databind.MappingJsonFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import ch.rasc.wamp2spring.config.PrincipalMethodArgumentResolver;
 import ch.rasc.wamp2spring.config.WampMessageMethodArgumentResolver;
+import ch.rasc.wamp2spring.message.CallMessage;
+import ch.rasc.wamp2spring.message.LazyArgumentList;
+import ch.rasc.wamp2spring.message.LazyArgumentMap;
+import ch.rasc.wamp2spring.message.WampMessage;
 
 @SuppressWarnings("unused")
 public class InvocableHandlerMethodTest {
@@ -249,6 +257,154 @@ public class InvocableHandlerMethodTest {
 						.hasSize(3).containsExactly("1", "2", "3");
 	}
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testInvokeWithDecodedArguments() throws Exception {
+		InvocableHandlerMethod handlerMethod = createHandlerMethod("dtoParams",
+				TestDto.class, List.class, TestWrapper.class, TestDto.class);
+
+		CallMessage callMessage = WampMessage.deserialize(
+				new MappingJsonFactory(new ObjectMapper()),
+				"[48,1,{},\"dto\",[{\"v1\":\"str\",\"v2\":1,\"v3\":2,\"v4\":\"3.1\"},"
+						+ "[{\"v1\":\"a\"},{\"v1\":\"b\"}],{\"value\":{\"v2\":3}}],"
+						+ "{\"kw\":{\"v1\":\"kw\"}}]");
+		assertThat(callMessage.getArguments()).isInstanceOf(LazyArgumentList.class);
+
+		TestDto dto = new TestDto();
+		dto.setV1("str");
+		dto.setV2(1);
+		dto.setV3(Integer.valueOf(2));
+		dto.setV4(new BigDecimal("3.1"));
+
+		for (int i = 0; i < 2; i++) {
+			List<Object> result = (List<Object>) handlerMethod.invoke(callMessage,
+					callMessage.getArguments(), callMessage.getArgumentsKw());
+			assertThat(result.get(0)).isEqualTo(dto);
+			assertThat((List<TestDto>) result.get(1)).extracting(TestDto::getV1)
+					.containsExactly("a", "b");
+			TestWrapper<TestDto> wrapper = (TestWrapper<TestDto>) result.get(2);
+			assertThat(wrapper.value).isInstanceOf(TestDto.class);
+			assertThat(wrapper.value.getV2()).isEqualTo(3);
+			assertThat(((TestDto) result.get(3)).getV1()).isEqualTo("kw");
+		}
+	}
+
+	@Test
+	public void testInvokeDoesNotDecodeBoundArguments() throws Exception {
+		InvocableHandlerMethod handlerMethod = createHandlerMethod("mixedParams",
+				String.class, TestDto.class);
+		MappingJsonFactory jsonFactory = new MappingJsonFactory(new ObjectMapper());
+
+		CallMessage callMessage = WampMessage.deserialize(jsonFactory,
+				"[48,1,{},\"mixed\",[\"n\",{\"v1\":\"x\"}]]");
+		assertThat(handlerMethod.invoke(callMessage, callMessage.getArguments(),
+				callMessage.getArgumentsKw())).isEqualTo("n:x");
+		assertThat(((LazyArgumentList) callMessage.getArguments()).isDecoded(1))
+				.isFalse();
+
+		callMessage = WampMessage.deserialize(jsonFactory,
+				"[48,1,{},\"mixed\",[],{\"name\":\"k\",\"dto\":{\"v1\":\"y\"}}]");
+		assertThat(handlerMethod.invoke(callMessage, callMessage.getArguments(),
+				callMessage.getArgumentsKw())).isEqualTo("k:y");
+		assertThat(((LazyArgumentMap) callMessage.getArgumentsKw()).isDecoded("dto"))
+				.isFalse();
+	}
+
+	@Test
+	public void testInvoke() throws Exception {
+		CallMessage callMessage = new CallMessage(1, "add", Arrays.asList(1, 2, "3"));
+
+		InvocableHandlerMethod handlerMethod = createHandlerMethod("add", Integer.TYPE,
+				Long.TYPE, String.class);
+		handlerMethod.prepare();
+		assertThat(handlerMethod.invoke(callMessage, callMessage.getArguments(), null))
+				.isEqualTo(6L);
+
+		handlerMethod = createHandlerMethod("noResult", String.class);
+		assertThat(handlerMethod.invoke(callMessage, callMessage.getArguments(), null))
+				.isNull();
+
+		InvocableHandlerMethod failingHandlerMethod = createHandlerMethod("fail",
+				String.class);
+		IOException e = Assertions.assertThrows(IOException.class,
+				() -> failingHandlerMethod.invoke(callMessage,
+						callMessage.getArguments(), null));
+		assertThat(e).hasMessage("1");
+
+		InvocableHandlerMethod npeHandlerMethod = createHandlerMethod("npe",
+				String.class);
+		Assertions.assertThrows(NullPointerException.class, () -> npeHandlerMethod
+				.invoke(callMessage, callMessage.getArguments(), null));
+	}
+
+	@Test
+	public void testInvokeWideningResolvedArgument() throws Exception {
+		// the resolver returns an Integer for a long parameter, the reflective call
+		// widens it
+		InvocableHandlerMethod handlerMethod = createHandlerMethod("longParam",
+				Long.TYPE);
+		HandlerMethodArgumentResolverComposite argumentResolvers = new HandlerMethodArgumentResolverComposite();
+		argumentResolvers.addResolver(new HandlerMethodArgumentResolver() {
+			@Override
+			public boolean supportsParameter(MethodParameter parameter) {
+				return parameter.getParameterType() == Long.TYPE;
+			}
+
+			@Override
+			public Object resolveArgument(MethodParameter parameter,
+					Message<?> message) {
+				return 7;
+			}
+		});
+		handlerMethod.setArgumentResolvers(argumentResolvers);
+
+		CallMessage callMessage = new CallMessage(1, "long");
+		assertThat(handlerMethod.invoke(callMessage, null, null)).isEqualTo(8L);
+	}
+
+	private InvocableHandlerMethod createHandlerMethod(String name,
+			Class<?>... parameterTypes) throws NoSuchMethodException {
+		Method method = getClass().getDeclaredMethod(name, parameterTypes);
+		InvocableHandlerMethod handlerMethod = new InvocableHandlerMethod(
+				new HandlerMethod(this, method));
+		HandlerMethodArgumentResolverComposite argumentResolvers = new HandlerMethodArgumentResolverComposite();
+		argumentResolvers.addResolver(new WampMessageMethodArgumentResolver());
+		handlerMethod.setArgumentResolvers(argumentResolvers);
+		handlerMethod.setConversionService(new DefaultFormattingConversionService());
+		handlerMethod.setObjectMapper(new ObjectMapper());
+		handlerMethod.setParameterNameDiscoverer(new DefaultParameterNameDiscoverer());
+		return handlerMethod;
+	}
+
+	private List<Object> dtoParams(TestDto dto, List<TestDto> list,
+			TestWrapper<TestDto> wrapper, TestDto kw) {
+		return Arrays.asList(dto, list, wrapper, kw);
+	}
+
+	private String mixedParams(String name, TestDto dto) {
+		return name + ":" + dto.getV1();
+	}
+
+	private long add(int a, long b, String c) {
+		return a + b + Integer.parseInt(c);
+	}
+
+	private void noResult(String param) {
+		// nothing here
+	}
+
+	private void fail(String param) throws IOException {
+		throw new IOException(param);
+	}
+
+	private void npe(String param) {
+		throw new NullPointerException(param);
+	}
+
+	private long longParam(long param) {
+		return param + 1;
+	}
+
 	private void stringParam(String param) {
 		// nothing here
 	}
@@ -277,6 +433,10 @@ public class InvocableHandlerMethodTest {
 		// nothing here
 	}
 
+	static class TestWrapper<T> {
+		public T value;
+	}
+
 	static class TestDto {
 		private String v1;
 		private int v2;
@@ -0,0 +1,350 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.messaging.Message;
+
+import com.fasterxml.jackson.databind.MappingJsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.rasc.wamp2spring.WampError;
+import ch.rasc.wamp2spring.config.OutboundQueueLimits;
+import ch.rasc.wamp2spring.config.OutboundQueueLimits.OverflowPolicy;
+import ch.rasc.wamp2spring.message.EventBatchMessage;
+import ch.rasc.wamp2spring.message.EventMessage;
+import ch.rasc.wamp2spring.message.GoodbyeMessage;
+import ch.rasc.wamp2spring.message.InvocationMessage;
+import ch.rasc.wamp2spring.message.JacksonWampCodec;
+import ch.rasc.wamp2spring.message.ResultMessage;
+import ch.rasc.wamp2spring.message.UnsubscribedMessage;
+import ch.rasc.wamp2spring.message.WampCodec;
+
+public class OutboundQueueTest {
+
+	@Test
+	public void testDropOldest() {
+		OutboundQueue queue = queue(OverflowPolicy.DROP_OLDEST, 3);
+		ResultMessage result = new ResultMessage(1, null, null);
+		assertThat(queue.offer(result)).isTrue();
+		for (int i = 0; i < 4; i++) {
+			assertThat(queue.offer(event(1, null, i))).isTrue();
+		}
+		assertThat(queue.size()).isEqualTo(3);
+		assertThat(queue.getDropped()).isEqualTo(2);
+
+		List<Message<Object>> messages = queue.pollAll();
+		assertThat(messages.get(0)).isSameAs(result);
+		assertThat(arguments(messages.subList(1, 3))).containsExactly(2, 3);
+		assertThat(queue.isEmpty()).isTrue();
+	}
+
+	@Test
+	public void testDropNewest() {
+		OutboundQueue queue = queue(OverflowPolicy.DROP_NEWEST, 2);
+		for (int i = 0; i < 5; i++) {
+			assertThat(queue.offer(event(1, null, i))).isTrue();
+		}
+		assertThat(queue.getDropped()).isEqualTo(3);
+		assertThat(arguments(queue.pollAll())).containsExactly(0, 1);
+	}
+
+	@Test
+	public void testOtherMessagesAreNeverDropped() {
+		OutboundQueue queue = queue(OverflowPolicy.DROP_NEWEST, 1);
+		assertThat(queue.offer(event(1, null, 0))).isTrue();
+		InvocationMessage invocation = new InvocationMessage(1, 2, null, null, null);
+		assertThat(queue.offer(invocation)).isTrue();
+		assertThat(queue.offer(event(1, null, 1))).isTrue();
+
+		assertThat(queue.size()).isEqualTo(2);
+		assertThat(queue.poll()).isInstanceOf(EventMessage.class);
+		assertThat(queue.poll()).isSameAs(invocation);
+		assertThat(queue.poll()).isNull();
+	}
+
+	@Test
+	public void testConflate() {
+		OutboundQueue queue = queue(OverflowPolicy.CONFLATE, 10);
+		queue.offer(event(1, null, 0));
+		queue.offer(event(2, null, 1));
+		queue.offer(event(1, null, 2));
+		queue.offer(event(3, "a.b", 3));
+		queue.offer(event(3, "a.c", 4));
+		queue.offer(event(3, "a.b", 5));
+		queue.offer(event(1, null, 6));
+
+		assertThat(queue.size()).isEqualTo(4);
+		assertThat(queue.getDropped()).isEqualTo(3);
+		assertThat(queue.peek()).isInstanceOfSatisfying(EventMessage.class,
+				e -> assertThat(e.getArguments()).containsExactly(6));
+		// the latest event takes over the position of the first event of its topic
+		assertThat(arguments(queue.pollAll())).containsExactly(6, 1, 5, 4);
+
+		queue.offer(event(1, null, 7));
+		assertThat(arguments(queue.pollAll())).containsExactly(7);
+	}
+
+	@Test
+	public void testConflateFull() {
+		OutboundQueue queue = queue(OverflowPolicy.CONFLATE, 2);
+		queue.offer(event(1, null, 0));
+		queue.offer(event(2, null, 1));
+		queue.offer(event(1, null, 2));
+		queue.offer(event(3, null, 3));
+		queue.offer(event(1, null, 4));
+
+		assertThat(arguments(queue.pollAll())).containsExactly(3, 4);
+	}
+
+	@Test
+	public void testDisconnect() {
+		OutboundQueue queue = queue(OverflowPolicy.DISCONNECT, 2);
+		assertThat(queue.offer(event(1, null, 0))).isTrue();
+		assertThat(queue.offer(event(1, null, 1))).isTrue();
+		assertThat(queue.isOverflowed()).isFalse();
+
+		assertThat(queue.offer(event(1, null, 2))).isFalse();
+		assertThat(queue.isOverflowed()).isTrue();
+		assertThat(queue.offer(new ResultMessage(1, null, null))).isFalse();
+		assertThat(arguments(queue.pollAll())).containsExactly(0, 1);
+	}
+
+	@Test
+	public void testBatch() {
+		OutboundQueue queue = queue(OverflowPolicy.DROP_NEWEST, 3);
+		queue.enablePacking(2);
+		List<EventMessage> events = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			events.add(event(1, null, i));
+		}
+		// the events of a batch are counted one by one
+		assertThat(queue.offer(new EventBatchMessage(events))).isTrue();
+		assertThat(queue.size()).isEqualTo(3);
+		assertThat(queue.getDropped()).isEqualTo(2);
+
+		Message<Object> batch = queue.poll();
+		assertThat(batch).isInstanceOf(EventBatchMessage.class);
+		assertThat(arguments(new ArrayList<>(((EventBatchMessage) batch).getEvents())))
+				.containsExactly(0, 1);
+		assertThat(arguments(queue.pollAll())).containsExactly(2);
+
+		queue = queue(OverflowPolicy.DISCONNECT, 3);
+		assertThat(queue.offer(new EventBatchMessage(events))).isFalse();
+		assertThat(queue.isOverflowed()).isTrue();
+	}
+
+	@Test
+	public void testSpill(@TempDir Path spillDirectory) throws IOException {
+		OutboundQueueLimits limits = spillLimits(spillDirectory, 2, 1024, 4096);
+		OutboundSpillStore store = new OutboundSpillStore(limits);
+		OutboundQueue queue = new OutboundQueue(limits, store, CODEC);
+
+		ResultMessage result = new ResultMessage(1, null, null);
+		assertThat(queue.offer(result)).isTrue();
+		for (int i = 0; i < 3; i++) {
+			assertThat(queue.offer(event(1, null, i))).isTrue();
+		}
+		assertThat(queue.size()).isEqualTo(4);
+		assertThat(store.getUsedBytes()).isGreaterThan(0);
+
+		assertThat(queue.poll()).isSameAs(result);
+		assertThat(arguments(queue.poll())).isEqualTo(0);
+		// spilled events stay in order, new events go to the spill file too
+		assertThat(queue.offer(event(1, null, 3))).isTrue();
+		assertThat(queue.peek()).isInstanceOf(SpilledFrame.class);
+		assertThat(arguments(queue.poll())).isEqualTo(1);
+		assertThat(arguments(queue.poll())).isEqualTo(2);
+		assertThat(arguments(queue.poll())).isEqualTo(3);
+		assertThat(queue.poll()).isNull();
+		assertThat(queue.isEmpty()).isTrue();
+		assertThat(store.getUsedBytes()).isEqualTo(0);
+
+		// the drained spill file is reused
+		for (int i = 0; i < 4; i++) {
+			assertThat(queue.offer(event(1, null, i))).isTrue();
+		}
+		List<Object> arguments = new ArrayList<>();
+		for (Message<Object> message : queue.pollAll()) {
+			arguments.add(arguments(message));
+		}
+		assertThat(arguments).containsExactly(0, 1, 2, 3);
+		queue.close();
+	}
+
+	@Test
+	public void testSpillKeepsOrder(@TempDir Path spillDirectory) throws IOException {
+		OutboundQueueLimits limits = spillLimits(spillDirectory, 1, 1024, 4096);
+		OutboundQueue queue = new OutboundQueue(limits, new OutboundSpillStore(limits),
+				CODEC);
+
+		UnsubscribedMessage unsubscribed = new UnsubscribedMessage(1);
+		GoodbyeMessage goodbye = new GoodbyeMessage(WampError.GOODBYE_AND_OUT);
+		ResultMessage result = new ResultMessage(2, null, null);
+		assertThat(queue.offer(event(1, null, 0))).isTrue();
+		assertThat(queue.offer(event(1, null, 1))).isTrue();
+		assertThat(queue.offer(event(1, null, 2))).isTrue();
+		assertThat(queue.offer(unsubscribed)).isTrue();
+		assertThat(queue.offer(event(1, null, 3))).isTrue();
+		assertThat(queue.offer(goodbye)).isTrue();
+		assertThat(queue.offer(result)).isTrue();
+		assertThat(queue.size()).isEqualTo(7);
+
+		// the other messages wait for the events spilled before them
+		assertThat(arguments(queue.poll())).isEqualTo(0);
+		assertThat(queue.peek()).isInstanceOf(SpilledFrame.class);
+		assertThat(arguments(queue.poll())).isEqualTo(1);
+		assertThat(arguments(queue.poll())).isEqualTo(2);
+		assertThat(queue.peek()).isSameAs(unsubscribed);
+		assertThat(queue.poll()).isSameAs(unsubscribed);
+		assertThat(arguments(queue.poll())).isEqualTo(3);
+		assertThat(queue.poll()).isSameAs(goodbye);
+		assertThat(queue.poll()).isSameAs(result);
+		assertThat(queue.poll()).isNull();
+		assertThat(queue.isEmpty()).isTrue();
+		queue.close();
+	}
+
+	@Test
+	public void testSpillReusesReadSpace(@TempDir Path spillDirectory)
+			throws IOException {
+		OutboundQueueLimits limits = spillLimits(spillDirectory, 1, 100, 4096);
+		OutboundSpillStore store = new OutboundSpillStore(limits);
+		OutboundQueue queue = new OutboundQueue(limits, store, CODEC);
+
+		for (int i = 0; i < 3; i++) {
+			assertThat(queue.offer(event(1, null, i))).isTrue();
+		}
+		// the spill file is never empty, the session reads as fast as events arrive
+		for (int i = 3; i < 200; i++) {
+			assertThat(queue.offer(event(1, null, i))).isTrue();
+			assertThat(arguments(queue.poll())).isEqualTo(i - 3);
+			assertThat(store.getUsedBytes()).isLessThanOrEqualTo(100L);
+		}
+		List<Object> arguments = new ArrayList<>();
+		for (Message<Object> message : queue.pollAll()) {
+			arguments.add(arguments(message));
+		}
+		assertThat(arguments).containsExactly(197, 198, 199);
+		assertThat(queue.isOverflowed()).isFalse();
+		assertThat(store.getUsedBytes()).isEqualTo(0);
+		queue.close();
+	}
+
+	@Test
+	public void testSpillLimits(@TempDir Path spillDirectory) {
+		OutboundQueueLimits limits = spillLimits(spillDirectory, 1, 100, 150);
+		OutboundSpillStore store = new OutboundSpillStore(limits);
+		OutboundQueue queue1 = new OutboundQueue(limits, store, CODEC);
+		OutboundQueue queue2 = new OutboundQueue(limits, store, CODEC);
+
+		int accepted = 0;
+		while (queue1.offer(event(1, null, accepted))) {
+			accepted++;
+		}
+		// limit of the session
+		assertThat(queue1.isOverflowed()).isTrue();
+		assertThat(store.getUsedBytes()).isBetween(50L, 100L);
+
+		// limit of all sessions
+		assertThat(queue2.offer(event(1, null, 0))).isTrue();
+		while (queue2.offer(event(1, null, 1))) {
+			// fill up
+		}
+		assertThat(store.getUsedBytes()).isLessThanOrEqualTo(150L);
+		assertThat(queue2.isOverflowed()).isTrue();
+
+		queue1.close();
+		queue2.close();
+		assertThat(store.getUsedBytes()).isEqualTo(0);
+	}
+
+	@Test
+	public void testDrain() {
+		OutboundQueue queue = queue(OverflowPolicy.DROP_OLDEST, 10);
+		List<Object> drained = new ArrayList<>();
+		queue.offer(event(1, null, 0));
+		queue.drain(message -> {
+			drained.add(((EventMessage) message).getArguments().get(0));
+			if (drained.size() == 1) {
+				// offered while the queue is draining, the running drain delivers it
+				queue.offer(event(1, null, 1));
+				queue.drain(m -> drained.add("nested"));
+			}
+		});
+		assertThat(drained).containsExactly(0, 1);
+		assertThat(queue.isEmpty()).isTrue();
+	}
+
+	private static final WampCodec CODEC = new JacksonWampCodec(
+			WampCodec.JSON_PROTOCOL, new MappingJsonFactory(new ObjectMapper()), false);
+
+	private static OutboundQueueLimits spillLimits(Path spillDirectory, int capacity,
+			int maxSpillBytesPerSession, long maxSpillBytesTotal) {
+		OutboundQueueLimits limits = new OutboundQueueLimits();
+		limits.enable();
+		limits.setCapacity(capacity);
+		limits.setOverflowPolicy(OverflowPolicy.SPILL);
+		limits.setSpillDirectory(spillDirectory);
+		limits.setMaxSpillBytesPerSession(maxSpillBytesPerSession);
+		limits.setMaxSpillBytesTotal(maxSpillBytesTotal);
+		return limits;
+	}
+
+	private static Object arguments(Message<Object> message) throws IOException {
+		EventMessage eventMessage;
+		if (message instanceof SpilledFrame) {
+			eventMessage = (EventMessage) CODEC
+					.decode(ByteBuffer.wrap(((SpilledFrame) message).getBytes()));
+		}
+		else {
+			eventMessage = (EventMessage) message;
+		}
+		return eventMessage.getArguments().get(0);
+	}
+
+	private static OutboundQueue queue(OverflowPolicy policy, int capacity) {
+		OutboundQueueLimits limits = new OutboundQueueLimits();
+		limits.enable();
+		limits.setCapacity(capacity);
+		limits.setOverflowPolicy(policy);
+		return new OutboundQueue(limits);
+	}
+
+	private static EventMessage event(long subscriptionId, String topic, int argument) {
+		List<Object> arguments = new ArrayList<>();
+		arguments.add(argument);
+		return new EventMessage(subscriptionId, argument, topic, null, false, arguments,
+				null);
+	}
+
+	private static List<Object> arguments(List<Message<Object>> messages) {
+		List<Object> arguments = new ArrayList<>();
+		for (Message<Object> message : messages) {
+			arguments.add(((EventMessage) message).getArguments().get(0));
+		}
+		return arguments;
+	}
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class SessionIdAllocatorTest {
+
+	@Test
+	public void testAllocateAndRelease() {
+		SessionIdAllocator allocator = new SessionIdAllocator();
+
+		Set<Long> ids = new HashSet<>();
+		for (int i = 0; i < 1_000; i++) {
+			long id = allocator.allocate();
+			assertThat(id).isBetween(IdGenerator.MIN, IdGenerator.MAX);
+			assertThat(ids.add(id)).isTrue();
+		}
+		assertThat(allocator.size()).isEqualTo(1_000);
+
+		for (Long id : ids) {
+			assertThat(allocator.isAllocated(id)).isTrue();
+			allocator.release(id);
+			assertThat(allocator.isAllocated(id)).isFalse();
+		}
+		assertThat(allocator.size()).isZero();
+	}
+
+}
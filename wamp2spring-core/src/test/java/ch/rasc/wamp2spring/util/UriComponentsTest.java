@@ -0,0 +1,94 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class UriComponentsTest {
+
+	private static final String[] URIS = { "", "a", "com.myapp.user", "com..user",
+			".com.user", "com.user.", "com.user..", "...", ".", "a.b.c.d.e", "..a" };
+
+	@Test
+	public void testSplitLikeStringSplit() {
+		for (String uri : URIS) {
+			assertThat(UriComponents.split(uri)).as(uri)
+					.containsExactly(uri.split("\\."));
+			assertThat(UriComponents.count(uri)).as(uri)
+					.isEqualTo(uri.split("\\.").length);
+		}
+	}
+
+	@Test
+	public void testOffsets() {
+		String uri = "com..user.";
+		int limit = UriComponents.limit(uri);
+		assertThat(limit).isEqualTo(9);
+
+		List<String> components = new ArrayList<>();
+		for (int start = UriComponents.first(uri, limit); start != -1; start = UriComponents
+				.next(uri, start, limit)) {
+			components.add(uri.substring(start, UriComponents.end(uri, start, limit)));
+		}
+		assertThat(components).containsExactly("com", "", "user");
+
+		assertThat(UriComponents.equals(uri, 5, 9, "user")).isTrue();
+		assertThat(UriComponents.equals(uri, 5, 9, "users")).isFalse();
+		assertThat(UriComponents.equals(uri, 0, 3, "co")).isFalse();
+	}
+
+	@Test
+	public void testMatchesWildcard() {
+		String[] pattern = UriComponents.split("crud..update");
+		assertThat(UriComponents.matchesWildcard(pattern, "crud.user.update")).isTrue();
+		assertThat(UriComponents.matchesWildcard(pattern, "crud..update")).isTrue();
+		assertThat(UriComponents.matchesWildcard(pattern, "crud.user.update.")).isTrue();
+		assertThat(UriComponents.matchesWildcard(pattern, "crud.user.delete")).isFalse();
+		assertThat(UriComponents.matchesWildcard(pattern, "crud.update")).isFalse();
+		assertThat(UriComponents.matchesWildcard(pattern, "crud.user.update.one"))
+				.isFalse();
+		assertThat(UriComponents.matchesWildcard(pattern, "crud.user.updates"))
+				.isFalse();
+
+		// same result as matching the split components
+		for (String uri : URIS) {
+			for (String patternUri : URIS) {
+				String[] p = UriComponents.split(patternUri);
+				assertThat(UriComponents.matchesWildcard(p, uri))
+						.as(patternUri + " " + uri)
+						.isEqualTo(matchesSplit(p, uri.split("\\.")));
+			}
+		}
+	}
+
+	private static boolean matchesSplit(String[] pattern, String[] components) {
+		if (pattern.length != components.length) {
+			return false;
+		}
+		for (int i = 0; i < components.length; i++) {
+			if (!pattern[i].isEmpty() && !components[i].equals(pattern[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.MappingJsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.rasc.wamp2spring.message.JacksonWampCodec;
+import ch.rasc.wamp2spring.message.PublishMessage;
+import ch.rasc.wamp2spring.message.WampCodec;
+
+public class UriDictionaryTest {
+
+	@Test
+	public void testIntern() {
+		UriDictionary dictionary = new UriDictionary(100, 20);
+		String uri = new String("com.myapp.topic");
+		assertThat(dictionary.intern(uri)).isSameAs(uri);
+		assertThat(dictionary.intern(new String("com.myapp.topic"))).isSameAs(uri);
+		assertThat(dictionary.intern(null)).isNull();
+
+		String longUri = new String("com.myapp.a.very.long.topic");
+		assertThat(dictionary.intern(longUri)).isSameAs(longUri);
+		assertThat(dictionary.intern(new String("com.myapp.a.very.long.topic")))
+				.isNotSameAs(longUri);
+		assertThat(dictionary.size()).isEqualTo(1);
+	}
+
+	@Test
+	public void testBounded() {
+		UriDictionary dictionary = new UriDictionary(100, 256);
+		for (int i = 0; i < 1000; i++) {
+			dictionary.intern("topic." + i);
+		}
+		assertThat(dictionary.size()).isLessThanOrEqualTo(100);
+		assertThat(dictionary.getMaximumSize()).isEqualTo(100);
+	}
+
+	@Test
+	public void testDecodedUrisAreShared() throws IOException {
+		MappingJsonFactory jsonFactory = new MappingJsonFactory(new ObjectMapper());
+		WampCodec codec = new JacksonWampCodec(WampCodec.JSON_PROTOCOL, jsonFactory,
+				false, new UriDictionary(100, 256));
+		PublishMessage publish1 = (PublishMessage) codec
+				.decode("[16,1,{},\"com.myapp.shared\"]");
+		PublishMessage publish2 = (PublishMessage) codec
+				.decode("[16,2,{},\"com.myapp.shared\"]");
+		assertThat(publish1.getTopic()).isEqualTo("com.myapp.shared");
+		assertThat(publish2.getTopic()).isSameAs(publish1.getTopic());
+	}
+
+	@Test
+	public void testDictionariesAreSeparate() throws IOException {
+		MappingJsonFactory jsonFactory = new MappingJsonFactory(new ObjectMapper());
+		WampCodec codec1 = new JacksonWampCodec(WampCodec.JSON_PROTOCOL, jsonFactory,
+				false, new UriDictionary(100, 256));
+		WampCodec codec2 = new JacksonWampCodec(WampCodec.JSON_PROTOCOL, jsonFactory,
+				false, new UriDictionary(100, 256));
+		WampCodec noDictionary = new JacksonWampCodec(WampCodec.JSON_PROTOCOL,
+				jsonFactory, false);
+		String json = "[16,1,{},\"com.myapp.separate\"]";
+		String topic1 = ((PublishMessage) codec1.decode(json)).getTopic();
+		String topic2 = ((PublishMessage) codec2.decode(json)).getTopic();
+		assertThat(topic2).isEqualTo(topic1).isNotSameAs(topic1);
+		assertThat(((PublishMessage) codec1.decode(json)).getTopic()).isSameAs(topic1);
+
+		String topic3 = ((PublishMessage) noDictionary.decode(json)).getTopic();
+		assertThat(((PublishMessage) noDictionary.decode(json)).getTopic())
+				.isNotSameAs(topic3);
+		assertThat(UriDictionary.NONE.intern(topic1)).isSameAs(topic1);
+		assertThat(UriDictionary.NONE.size()).isEqualTo(0);
+	}
+
+}
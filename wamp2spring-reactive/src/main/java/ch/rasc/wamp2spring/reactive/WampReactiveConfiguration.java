@@ -42,9 +42,9 @@ public class WampReactiveConfiguration extends WampConfiguration implements Impo
 
 	@Bean
 	public WampWebSocketHandler wampWebSocketHandler() {
-		return new WampWebSocketHandler(jsonJsonFactory(), msgpackJsonFactory(),
-				cborJsonFactory(), smileJsonFactory(), clientOutboundChannel(),
-				clientInboundChannel(), this.features);
+		return new WampWebSocketHandler(wampCodecs(), clientOutboundChannel(),
+				clientInboundChannel(), sessionIdAllocator(), this.features,
+				transportSettings());
 	}
 
 	@Bean
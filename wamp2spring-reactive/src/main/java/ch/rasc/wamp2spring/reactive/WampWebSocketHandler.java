@@ -15,48 +15,66 @@
  */
 package ch.rasc.wamp2spring.reactive;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
 import java.security.Principal;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.context.SmartLifecycle;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.lang.Nullable;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.SubscribableChannel;
 import org.springframework.web.reactive.socket.CloseStatus;
 import org.springframework.web.reactive.socket.WebSocketHandler;
 import org.springframework.web.reactive.socket.WebSocketMessage;
 import org.springframework.web.reactive.socket.WebSocketSession;
 
 import com.fasterxml.jackson.core.JsonFactory;
-import com.fasterxml.jackson.core.JsonGenerator;
 
 import ch.rasc.wamp2spring.WampError;
 import ch.rasc.wamp2spring.config.Feature;
 import ch.rasc.wamp2spring.config.Features;
+import ch.rasc.wamp2spring.config.OutboundBatching;
+import ch.rasc.wamp2spring.config.OutboundQueueLimits;
+import ch.rasc.wamp2spring.config.OutboundQueueLimits.OverflowPolicy;
+import ch.rasc.wamp2spring.config.TransportSettings;
 import ch.rasc.wamp2spring.event.WampDisconnectEvent;
 import ch.rasc.wamp2spring.event.WampSessionEstablishedEvent;
 import ch.rasc.wamp2spring.message.AbortMessage;
 import ch.rasc.wamp2spring.message.ErrorMessage;
+import ch.rasc.wamp2spring.message.EventBatchMessage;
+import ch.rasc.wamp2spring.message.EventMessage;
 import ch.rasc.wamp2spring.message.GoodbyeMessage;
 import ch.rasc.wamp2spring.message.HelloMessage;
 import ch.rasc.wamp2spring.message.InternalCloseMessage;
 import ch.rasc.wamp2spring.message.InvocationMessage;
+import ch.rasc.wamp2spring.message.JacksonWampCodec;
+import ch.rasc.wamp2spring.message.WampCodec;
 import ch.rasc.wamp2spring.message.WampMessage;
 import ch.rasc.wamp2spring.message.WampMessageHeader;
 import ch.rasc.wamp2spring.message.WampRole;
 import ch.rasc.wamp2spring.message.WelcomeMessage;
-import ch.rasc.wamp2spring.util.IdGenerator;
+import ch.rasc.wamp2spring.util.OutboundQueue;
+import ch.rasc.wamp2spring.util.OutboundSpillStore;
+import ch.rasc.wamp2spring.util.SessionIdAllocator;
+import ch.rasc.wamp2spring.util.SpilledFrame;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
 
 public class WampWebSocketHandler
 		implements WebSocketHandler, ApplicationEventPublisherAware, SmartLifecycle {
@@ -66,24 +84,23 @@ public class WampWebSocketHandler
 	private static final String WAMP_SESSION_ID = "wamp2spring.session.id";
 	private static final String WAMP_PRINCIPAL = "wamp2spring.principal";
 
-	public static final String JSON_PROTOCOL = "wamp.2.json";
+	public static final String JSON_PROTOCOL = WampCodec.JSON_PROTOCOL;
 
-	public static final String MSGPACK_PROTOCOL = "wamp.2.msgpack";
+	public static final String MSGPACK_PROTOCOL = WampCodec.MSGPACK_PROTOCOL;
 
-	public static final String CBOR_PROTOCOL = "wamp.2.cbor";
+	public static final String CBOR_PROTOCOL = WampCodec.CBOR_PROTOCOL;
 
-	public static final String SMILE_PROTOCOL = "wamp.2.smile";
+	public static final String SMILE_PROTOCOL = WampCodec.SMILE_PROTOCOL;
 
-	private static final List<String> supportedProtocols = Arrays.asList(MSGPACK_PROTOCOL,
-			JSON_PROTOCOL, CBOR_PROTOCOL, SMILE_PROTOCOL);
+	private final Map<String, WampCodec> codecs = new LinkedHashMap<>();
 
-	private final JsonFactory jsonFactory;
+	private final List<String> supportedProtocols;
 
-	private final JsonFactory msgpackFactory;
-
-	private final JsonFactory cborFactory;
-
-	private final JsonFactory smileFactory;
+	/**
+	 * Codec for text frames of sessions that negotiated a binary or no protocol
+	 */
+	@Nullable
+	private final WampCodec textCodec;
 
 	private final List<WampRole> roles;
 
@@ -91,22 +108,105 @@ public class WampWebSocketHandler
 
 	private final MessageChannel clientOutboundChannel;
 
+	private final SessionIdAllocator sessionIdAllocator;
+
+	private final OutboundBatching outboundBatching;
+
+	private final OutboundQueueLimits outboundQueueLimits;
+
+	/**
+	 * Budget of the spill files of all sessions. Only created with the
+	 * {@link OverflowPolicy#SPILL} policy.
+	 */
+	@Nullable
+	private final OutboundSpillStore spillStore;
+
+	/**
+	 * True if the router offers the {@link EventBatchMessage#FEATURE} extension
+	 */
+	private final boolean packEvents;
+
 	private ApplicationEventPublisher applicationEventPublisher;
 
 	private volatile boolean isRunning;
 
+	private static final int MIN_ENCODE_SIZE_HINT = 128;
+
+	private static final int MAX_ENCODE_SIZE_HINT = 64 * 1024;
+
 	private final Set<WebSocketSession> webSocketSessions = ConcurrentHashMap.newKeySet();
 
+	/**
+	 * Initial capacity of the outbound buffers, adjusted to the size of the recently
+	 * encoded messages. Updates from different threads may get lost, which is fine for
+	 * an estimate.
+	 */
+	private volatile int encodeSizeHint = 256;
+
+	/**
+	 * Outbound sinks of the connected sessions keyed by the WebSocket session id.
+	 * Messages from the clientOutboundChannel are routed directly to the sink of their
+	 * receiver.
+	 */
+	private final Map<String, SessionSink> sessionSinks = new ConcurrentHashMap<>();
+
+	private final MessageHandler outboundRouter = this::routeOutgoingMessage;
+
+	@Nullable
+	private Disposable outboundSubscription;
+
+	/**
+	 * Creates a handler for the four built-in sub-protocols. The handler allocates the
+	 * session ids with its own {@link SessionIdAllocator}.
+	 * @deprecated use
+	 * {@link #WampWebSocketHandler(List, MessageChannel, MessageChannel, SessionIdAllocator, Features)}
+	 * with {@link JacksonWampCodec#defaultCodecs(JsonFactory, JsonFactory, JsonFactory, JsonFactory)}
+	 */
+	@Deprecated
 	public WampWebSocketHandler(JsonFactory jsonFactory, JsonFactory msgpackFactory,
 			JsonFactory cborFactory, JsonFactory smileFactory,
 			MessageChannel clientOutboundChannel, MessageChannel clientInboundChannel,
 			Features features) {
-		this.jsonFactory = jsonFactory;
-		this.msgpackFactory = msgpackFactory;
-		this.cborFactory = cborFactory;
-		this.smileFactory = smileFactory;
+		this(JacksonWampCodec.defaultCodecs(jsonFactory, msgpackFactory, cborFactory,
+				smileFactory), clientOutboundChannel, clientInboundChannel,
+				new SessionIdAllocator(), features);
+	}
+
+	public WampWebSocketHandler(List<WampCodec> codecs,
+			MessageChannel clientOutboundChannel, MessageChannel clientInboundChannel,
+			SessionIdAllocator sessionIdAllocator, Features features) {
+		this(codecs, clientOutboundChannel, clientInboundChannel, sessionIdAllocator,
+				features, new TransportSettings());
+	}
+
+	public WampWebSocketHandler(List<WampCodec> codecs,
+			MessageChannel clientOutboundChannel, MessageChannel clientInboundChannel,
+			SessionIdAllocator sessionIdAllocator, Features features,
+			TransportSettings transportSettings) {
+		OutboundBatching outboundBatching = transportSettings.getOutboundBatching();
+		OutboundQueueLimits outboundQueueLimits = transportSettings
+				.getOutboundQueueLimits();
+		WampCodec firstTextCodec = null;
+		for (WampCodec codec : codecs) {
+			this.codecs.putIfAbsent(codec.getProtocol(), codec);
+			if (firstTextCodec == null && !codec.isBinary()) {
+				firstTextCodec = codec;
+			}
+		}
+		this.supportedProtocols = Collections
+				.unmodifiableList(new ArrayList<>(this.codecs.keySet()));
+		this.textCodec = firstTextCodec;
 		this.clientOutboundChannel = clientOutboundChannel;
 		this.clientInboundChannel = clientInboundChannel;
+		this.sessionIdAllocator = sessionIdAllocator;
+		this.outboundBatching = outboundBatching;
+		this.outboundQueueLimits = outboundQueueLimits;
+		this.spillStore = outboundQueueLimits.isEnabled()
+				&& outboundQueueLimits.getOverflowPolicy() == OverflowPolicy.SPILL
+						? new OutboundSpillStore(outboundQueueLimits)
+						: null;
+		this.packEvents = outboundBatching.isEnabled() && outboundBatching.isPackEvents()
+				&& features.isEnabled(Feature.BROKER);
 
 		this.roles = new ArrayList<>();
 
@@ -123,13 +223,16 @@ public class WampWebSocketHandler
 			for (Feature feature : features.enabledBrokerFeatures()) {
 				broker.addFeature(feature.getExternalValue());
 			}
+			if (this.packEvents) {
+				broker.addFeature(EventBatchMessage.FEATURE);
+			}
 			this.roles.add(broker);
 		}
 	}
 
 	@Override
 	public List<String> getSubProtocols() {
-		return supportedProtocols;
+		return this.supportedProtocols;
 	}
 
 	@Override
@@ -140,21 +243,36 @@ public class WampWebSocketHandler
 
 		webSocketSessions.add(session);
 
+		// the codec of the negotiated protocol is resolved once for the whole session
+		String acceptedProtocol = session.getHandshakeInfo().getSubProtocol();
+		WampCodec codec = acceptedProtocol != null ? this.codecs.get(acceptedProtocol)
+				: null;
+
+		// register the sink before the session starts receiving, so the WELCOME
+		// message is buffered even if the send stream is not subscribed yet
+		SessionSink sessionSink = this.outboundBatching.isEnabled()
+				? new BatchingSessionSink(session, this.outboundBatching, codec)
+				: new SessionSink(session, codec);
+		this.sessionSinks.put(session.getId(), sessionSink);
+
 		return Mono.when(
 			session.getHandshakeInfo().getPrincipal().doOnNext(p -> session.getAttributes().put(WAMP_PRINCIPAL, p)),
-			session.send(Flux.from(MessageChannelReactiveUtils.toPublisher(this.clientOutboundChannel))
-				.filter(msg -> resolveSessionId(msg).equals(session.getId()))
-				.map(msg -> handleOutgoingMessage(msg, session))
+			session.send(sessionSink.asFlux()
+				.mapNotNull(msg -> handleOutgoingMessage(msg, session, codec))
+				.doOnDiscard(WebSocketMessage.class, WebSocketMessage::release)
 			),
-			session.receive().doOnNext(inMsg -> handleIncomingMessage(inMsg, session))
+			session.receive().doOnNext(inMsg -> handleIncomingMessage(inMsg, session, codec))
 		).doFinally(sig -> {
 			webSocketSessions.remove(session);
+			this.sessionSinks.remove(session.getId(), sessionSink);
+			sessionSink.complete();
 
 			Long wampSessionId = (Long) session.getAttributes().get(WAMP_SESSION_ID);
 			Principal principalAttr = (Principal) session.getAttributes().get(WAMP_PRINCIPAL);
 
 			if (wampSessionId != null) {
 				this.applicationEventPublisher.publishEvent(new WampDisconnectEvent(wampSessionId, session.getId(), principalAttr));
+				this.sessionIdAllocator.release(wampSessionId);
 			}
 		});
 	}
@@ -162,6 +280,16 @@ public class WampWebSocketHandler
 	@Override
 	public void start() {
 		if (!this.isRunning()) {
+			if (this.clientOutboundChannel instanceof SubscribableChannel) {
+				((SubscribableChannel) this.clientOutboundChannel)
+						.subscribe(this.outboundRouter);
+			}
+			else {
+				this.outboundSubscription = Flux
+						.from(MessageChannelReactiveUtils
+								.<Object>toPublisher(this.clientOutboundChannel))
+						.subscribe(this::routeOutgoingMessage);
+			}
 			this.isRunning = true;
 		}
 	}
@@ -171,6 +299,15 @@ public class WampWebSocketHandler
 		if (this.isRunning()) {
 			this.isRunning = false;
 
+			if (this.clientOutboundChannel instanceof SubscribableChannel) {
+				((SubscribableChannel) this.clientOutboundChannel)
+						.unsubscribe(this.outboundRouter);
+			}
+			else if (this.outboundSubscription != null) {
+				this.outboundSubscription.dispose();
+				this.outboundSubscription = null;
+			}
+
 			Flux.fromIterable(webSocketSessions)
 				.flatMap(session -> session.close(CloseStatus.GOING_AWAY))
 				.doFinally(sig -> webSocketSessions.clear())
@@ -183,21 +320,20 @@ public class WampWebSocketHandler
 		return this.isRunning;
 	}
 
-	private void handleIncomingMessage(WebSocketMessage inMsg, WebSocketSession session) {
+	private void handleIncomingMessage(WebSocketMessage inMsg, WebSocketSession session,
+			@Nullable WampCodec codec) {
 		try {
 			WampMessage wampMessage = null;
 
 			if (inMsg.getType() == WebSocketMessage.Type.TEXT) {
-				byte[] bytes = new byte[inMsg.getPayload().readableByteCount()];
-				inMsg.getPayload().read(bytes);
-
-				wampMessage = WampMessage.deserialize(this.jsonFactory, bytes);
+				WampCodec useCodec = codec != null && !codec.isBinary() ? codec
+						: this.textCodec;
+				if (useCodec != null) {
+					wampMessage = decode(useCodec, inMsg.getPayload());
+				}
 			}
 			else if (inMsg.getType() == WebSocketMessage.Type.BINARY) {
-				ByteBuffer byteBuffer = inMsg.getPayload().asByteBuffer();
-
-				String acceptedProtocol = session.getHandshakeInfo().getSubProtocol();
-				if (acceptedProtocol == null) {
+				if (codec == null) {
 					if (logger.isErrorEnabled()) {
 						logger.error(
 								"Deserialization failed because no accepted protocol "
@@ -205,17 +341,8 @@ public class WampWebSocketHandler
 					}
 					return;
 				}
-				if (WampWebSocketHandler.MSGPACK_PROTOCOL.equals(acceptedProtocol)) {
-					wampMessage = WampMessage.deserialize(this.msgpackFactory,
-							byteBuffer.array());
-				}
-				else if (WampWebSocketHandler.SMILE_PROTOCOL.equals(acceptedProtocol)) {
-					wampMessage = WampMessage.deserialize(this.smileFactory,
-							byteBuffer.array());
-				}
-				else if (WampWebSocketHandler.CBOR_PROTOCOL.equals(acceptedProtocol)) {
-					wampMessage = WampMessage.deserialize(this.cborFactory,
-							byteBuffer.array());
+				if (codec.isBinary()) {
+					wampMessage = decode(codec, inMsg.getPayload());
 				}
 			}
 			else {
@@ -246,17 +373,21 @@ public class WampWebSocketHandler
 					session.close(CloseStatus.PROTOCOL_ERROR);
 				}
 
-				long newWampSessionId = IdGenerator.newRandomId(
-					webSocketSessions.stream()
-						.map(webSocketSession -> (Long) webSocketSession.getAttributes().get(WAMP_SESSION_ID))
-						.filter(Objects::nonNull)
-						.collect(Collectors.toSet())
-				);
+				long newWampSessionId = this.sessionIdAllocator.allocate();
 
 				session.getAttributes().put(WAMP_SESSION_ID, newWampSessionId);
 
-				WelcomeMessage welcomeMessage = new WelcomeMessage(
-						(HelloMessage) wampMessage, newWampSessionId, this.roles);
+				HelloMessage helloMessage = (HelloMessage) wampMessage;
+				if (this.packEvents
+						&& helloMessage.hasFeature("subscriber", EventBatchMessage.FEATURE)) {
+					SessionSink sessionSink = this.sessionSinks.get(session.getId());
+					if (sessionSink instanceof BatchingSessionSink) {
+						((BatchingSessionSink) sessionSink).enablePacking();
+					}
+				}
+
+				WelcomeMessage welcomeMessage = new WelcomeMessage(helloMessage,
+						newWampSessionId, this.roles);
 				this.clientOutboundChannel.send(welcomeMessage);
 
 				this.applicationEventPublisher
@@ -290,13 +421,124 @@ public class WampWebSocketHandler
 
 	}
 
+	/**
+	 * Serializes the message into a buffer of the session's factory, so pooled
+	 * factories can recycle the memory once the frame has been written. The initial
+	 * capacity follows the size of the recently encoded messages. Messages that share
+	 * their serialized form with other receivers are serialized only once and wrapped.
+	 */
+	private DataBuffer encode(WampMessage wampMessage, WampCodec codec,
+			DataBufferFactory bufferFactory) throws IOException {
+		if (wampMessage.isEncodingShared()) {
+			return bufferFactory.wrap(wampMessage.serialize(codec));
+		}
+
+		DataBuffer buffer = bufferFactory.allocateBuffer(this.encodeSizeHint);
+		try {
+			try (OutputStream out = buffer.asOutputStream()) {
+				codec.encode(wampMessage, out);
+			}
+		}
+		catch (Throwable ex) {
+			DataBufferUtils.release(buffer);
+			throw ex;
+		}
+
+		int size = buffer.readableByteCount();
+		int hint = this.encodeSizeHint;
+		// moving average of the recent sizes with some headroom, so most messages fit
+		// without the buffer having to grow
+		this.encodeSizeHint = Math.max(MIN_ENCODE_SIZE_HINT,
+				Math.min(MAX_ENCODE_SIZE_HINT, hint - (hint >> 3) + (size >> 2)));
+		return buffer;
+	}
+
+	/**
+	 * Parses the readable bytes of the payload without copying them. A payload backed
+	 * by a single buffer is handed to the parser as a {@link ByteBuffer} view, a
+	 * composite payload is streamed.
+	 */
+	@Nullable
+	private static WampMessage decode(WampCodec codec, DataBuffer payload)
+			throws IOException {
+		try (DataBuffer.ByteBufferIterator buffers = payload.readableByteBuffers()) {
+			if (buffers.hasNext()) {
+				ByteBuffer buffer = buffers.next();
+				if (!buffers.hasNext()) {
+					return codec.decode(buffer);
+				}
+			}
+		}
+		return codec.decode(payload.asInputStream());
+	}
+
+	@Nullable
 	private static String resolveSessionId(Message<?> message) {
+		if (message instanceof WampMessage) {
+			return ((WampMessage) message).getWebSocketSessionId();
+		}
 		return (String) message.getHeaders()
 				.get(WampMessageHeader.WEBSOCKET_SESSION_ID.name());
 	}
 
+	/**
+	 * Hands an outbound message to the sink of its receiver. Messages for sessions that
+	 * are no longer connected are dropped.
+	 */
+	@SuppressWarnings("unchecked")
+	private void routeOutgoingMessage(Message<?> message) {
+		String sessionId = resolveSessionId(message);
+		if (sessionId == null) {
+			return;
+		}
+		SessionSink sessionSink = this.sessionSinks.get(sessionId);
+		if (sessionSink != null) {
+			sessionSink.emit((Message<Object>) message);
+		}
+		else if (logger.isDebugEnabled()) {
+			logger.debug("No session " + sessionId + " for outbound message " + message);
+		}
+	}
+
+	/**
+	 * Closes a session that filled up its outbound queue and feeds back an error for
+	 * all queued INVOCATION messages.
+	 */
+	private void disconnectSlowConsumer(WebSocketSession session,
+			OutboundQueue outboundQueue, Message<Object> rejectedMessage) {
+		outboundQueue.close();
+		List<Message<Object>> undelivered = outboundQueue.pollAll();
+		undelivered.add(rejectedMessage);
+		for (Message<Object> message : undelivered) {
+			if (message instanceof InvocationMessage) {
+				this.clientInboundChannel.send(new ErrorMessage(
+						(InvocationMessage) message, WampError.NETWORK_FAILURE));
+			}
+		}
+
+		if (session.isOpen()) {
+			if (logger.isWarnEnabled()) {
+				logger.warn("Closing session " + session.getId()
+						+ " because its outbound queue is full");
+			}
+			session.close(CloseStatus.POLICY_VIOLATION).subscribe();
+		}
+	}
+
+	@Nullable
 	public WebSocketMessage handleOutgoingMessage(Message<Object> message,
-			WebSocketSession session) {
+			WebSocketSession session, @Nullable WampCodec codec) {
+		if (message instanceof SpilledFrame) {
+			// read back from the spill file, already serialized with the codec
+			if (codec == null) {
+				return null;
+			}
+			return new WebSocketMessage(
+					codec.isBinary() ? WebSocketMessage.Type.BINARY
+							: WebSocketMessage.Type.TEXT,
+					session.bufferFactory().wrap(((SpilledFrame) message).getBytes()));
+		}
+
 		if (!(message instanceof WampMessage)) {
 			logger.error("Expected WampMessage. Ignoring " + message + ".");
 			return null;
@@ -308,31 +550,11 @@ public class WampWebSocketHandler
 		}
 
 		WampMessage wampMessage = (WampMessage) message;
-		JsonFactory useFactory = this.jsonFactory;
-
-		boolean isBinary = false;
-
-		String acceptedProtocol = session.getHandshakeInfo().getSubProtocol();
-		if (acceptedProtocol != null) {
-			if (WampWebSocketHandler.MSGPACK_PROTOCOL.equals(acceptedProtocol)) {
-				isBinary = true;
-				useFactory = this.msgpackFactory;
-			}
-			else if (WampWebSocketHandler.SMILE_PROTOCOL.equals(acceptedProtocol)) {
-				isBinary = true;
-				useFactory = this.smileFactory;
-			}
-			else if (WampWebSocketHandler.CBOR_PROTOCOL.equals(acceptedProtocol)) {
-				isBinary = true;
-				useFactory = this.cborFactory;
-			}
 
-			try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-					JsonGenerator generator = useFactory.createGenerator(bos)) {
-				generator.writeStartArray();
-				wampMessage.serialize(generator);
-				generator.writeEndArray();
-				generator.close();
+		if (codec != null) {
+			DataBuffer payload = null;
+			try {
+				payload = encode(wampMessage, codec, session.bufferFactory());
 
 				if (wampMessage instanceof GoodbyeMessage) {
 					InternalCloseMessage cm = new InternalCloseMessage();
@@ -340,15 +562,14 @@ public class WampWebSocketHandler
 					this.clientOutboundChannel.send(cm);
 				}
 
-				if (isBinary) {
-					return session
-							.binaryMessage(factory -> factory.wrap(bos.toByteArray()));
-				}
-				return session.textMessage(
-						new String(bos.toByteArray(), StandardCharsets.UTF_8));
-
+				return new WebSocketMessage(codec.isBinary() ? WebSocketMessage.Type.BINARY
+						: WebSocketMessage.Type.TEXT, payload);
 			}
 			catch (Throwable ex) {
+				if (payload != null) {
+					DataBufferUtils.release(payload);
+				}
+
 				// Could be part of normal workflow (e.g. browser tab closed)
 				if (logger.isDebugEnabled()) {
 					logger.debug("Failed to send WebSocket message to client in session "
@@ -386,4 +607,169 @@ public class WampWebSocketHandler
 		this.applicationEventPublisher = applicationEventPublisher;
 	}
 
+	/**
+	 * Outbound message buffer of one session. The clientOutboundChannel delivers
+	 * messages from multiple threads, so emissions are serialized with the monitor of
+	 * the sink.
+	 * <p>
+	 * With {@link OutboundQueueLimits} enabled the buffer is a bounded
+	 * {@link OutboundQueue}. A session whose queue rejects a message is closed.
+	 */
+	private class SessionSink {
+		private final WebSocketSession session;
+
+		@Nullable
+		final OutboundQueue outboundQueue;
+
+		private final Sinks.Many<Message<Object>> sink;
+
+		SessionSink(WebSocketSession session, @Nullable WampCodec codec) {
+			this.session = session;
+			if (WampWebSocketHandler.this.outboundQueueLimits.isEnabled()) {
+				this.outboundQueue = new OutboundQueue(
+						WampWebSocketHandler.this.outboundQueueLimits,
+						WampWebSocketHandler.this.spillStore, codec);
+				this.sink = Sinks.many().unicast().onBackpressureBuffer(this.outboundQueue);
+			}
+			else {
+				this.outboundQueue = null;
+				this.sink = Sinks.many().unicast().onBackpressureBuffer();
+			}
+		}
+
+		synchronized void emit(Message<Object> message) {
+			next(message);
+		}
+
+		protected void next(Message<Object> message) {
+			if (this.sink.tryEmitNext(message) == Sinks.EmitResult.FAIL_OVERFLOW
+					&& this.outboundQueue != null) {
+				disconnectSlowConsumer(this.session, this.outboundQueue, message);
+			}
+		}
+
+		synchronized void complete() {
+			this.sink.tryEmitComplete();
+			if (this.outboundQueue != null) {
+				this.outboundQueue.close();
+				// messages the send stream did not pick up anymore
+				for (Message<Object> message : this.outboundQueue.pollAll()) {
+					if (message instanceof InvocationMessage) {
+						WampWebSocketHandler.this.clientInboundChannel.send(new ErrorMessage(
+								(InvocationMessage) message, WampError.NETWORK_FAILURE));
+					}
+				}
+			}
+		}
+
+		Flux<Message<Object>> asFlux() {
+			return this.sink.asFlux();
+		}
+	}
+
+	/**
+	 * Session sink that holds back EVENT messages and releases them in one burst. The
+	 * burst reaches the connection in one drain of the send stream, so all its frames
+	 * are written with a single flush. A batch is released when it reaches the
+	 * configured number of messages or bytes, when the linger time of the first message
+	 * expires or when any other message is emitted. The size of an EVENT is the size of
+	 * its shared encoding, which the send stream reuses.
+	 * <p>
+	 * Sessions that negotiated the {@link EventBatchMessage#FEATURE} extension receive
+	 * a released batch as one {@link EventBatchMessage}. A bounded {@link OutboundQueue}
+	 * applies its limits to every event of the batch.
+	 */
+	private final class BatchingSessionSink extends SessionSink {
+		private final OutboundBatching settings;
+
+		@Nullable
+		private final WampCodec codec;
+
+		private final List<EventMessage> pending = new ArrayList<>();
+
+		private long pendingBytes;
+
+		@Nullable
+		private Disposable lingerFlush;
+
+		private boolean packEvents;
+
+		BatchingSessionSink(WebSocketSession session, OutboundBatching settings,
+				@Nullable WampCodec codec) {
+			super(session, codec);
+			this.settings = settings;
+			this.codec = codec;
+		}
+
+		@Override
+		synchronized void emit(Message<Object> message) {
+			if (!(message instanceof EventMessage)) {
+				flush();
+				next(message);
+				return;
+			}
+
+			EventMessage eventMessage = (EventMessage) message;
+			this.pending.add(eventMessage);
+			this.pendingBytes += encodedSize(eventMessage);
+			if (this.pending.size() >= this.settings.getMaxMessages()
+					|| this.pendingBytes >= this.settings.getMaxBytes()) {
+				flush();
+			}
+			else if (this.lingerFlush == null) {
+				this.lingerFlush = Schedulers.parallel().schedule(this::flushExpired,
+						this.settings.getLingerMillis(), TimeUnit.MILLISECONDS);
+			}
+		}
+
+		synchronized void enablePacking() {
+			this.packEvents = true;
+			if (this.outboundQueue != null) {
+				// the bounded queue counts the events of a batch one by one and packs
+				// them again when the send stream polls them
+				this.outboundQueue.enablePacking(this.settings.getMaxMessages());
+			}
+		}
+
+		private int encodedSize(EventMessage eventMessage) {
+			if (this.codec != null && eventMessage.isEncodingShared()) {
+				try {
+					return eventMessage.serialize(this.codec).length;
+				}
+				catch (IOException e) {
+					// reported by the send stream when it encodes the message
+				}
+			}
+			return 0;
+		}
+
+		private synchronized void flushExpired() {
+			this.lingerFlush = null;
+			flush();
+		}
+
+		private void flush() {
+			if (this.lingerFlush != null) {
+				this.lingerFlush.dispose();
+				this.lingerFlush = null;
+			}
+			if (this.packEvents && this.pending.size() > 1) {
+				next(new EventBatchMessage(new ArrayList<>(this.pending)));
+			}
+			else {
+				for (EventMessage eventMessage : this.pending) {
+					next(eventMessage);
+				}
+			}
+			this.pending.clear();
+			this.pendingBytes = 0;
+		}
+
+		@Override
+		synchronized void complete() {
+			flush();
+			super.complete();
+		}
+	}
+
 }
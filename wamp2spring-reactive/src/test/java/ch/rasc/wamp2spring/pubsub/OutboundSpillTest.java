@@ -0,0 +1,105 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.pubsub;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import ch.rasc.wamp2spring.WampPublisher;
+import ch.rasc.wamp2spring.config.OutboundQueueLimits;
+import ch.rasc.wamp2spring.config.OutboundQueueLimits.OverflowPolicy;
+import ch.rasc.wamp2spring.config.WampConfigurer;
+import ch.rasc.wamp2spring.message.EventMessage;
+import ch.rasc.wamp2spring.message.SubscribeMessage;
+import ch.rasc.wamp2spring.message.WampMessage;
+import ch.rasc.wamp2spring.reactive.EnableReactiveWamp;
+import ch.rasc.wamp2spring.testsupport.BaseWampTest;
+import ch.rasc.wamp2spring.testsupport.WampClient;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT,
+		classes = OutboundSpillTest.Config.class)
+public class OutboundSpillTest extends BaseWampTest {
+
+	@Autowired
+	private ServerToClientService serverToClientService;
+
+	@Test
+	public void testNoEventIsLost() throws Exception {
+		try (WampClient wc1 = new WampClient(DataFormat.JSON);
+				WampClient wc2 = new WampClient(DataFormat.CBOR)) {
+			wc1.connect(wampEndpointUrl());
+			wc2.connect(wampEndpointUrl());
+
+			wc1.sendMessageWithResult(new SubscribeMessage(1, "topic"));
+			wc2.sendMessageWithResult(new SubscribeMessage(2, "topic"));
+
+			// most events do not fit into the queue and go through the spill files
+			int noOfEvents = 300;
+			wc1.getResult().reset(noOfEvents);
+			wc2.getResult().reset(noOfEvents);
+
+			WampPublisher wampPublisher = this.serverToClientService.getWampPublisher();
+			List<Integer> expected = new ArrayList<>();
+			for (int i = 0; i < noOfEvents; i++) {
+				wampPublisher.publishToAll("topic", i);
+				expected.add(i);
+			}
+
+			assertThat(arguments(wc1.getResult().getWampMessages()))
+					.containsExactlyInAnyOrderElementsOf(expected);
+			assertThat(arguments(wc2.getResult().getWampMessages()))
+					.containsExactlyInAnyOrderElementsOf(expected);
+		}
+	}
+
+	private static List<Object> arguments(List<WampMessage> messages) {
+		List<Object> arguments = new ArrayList<>();
+		for (WampMessage message : messages) {
+			assertThat(message).isInstanceOf(EventMessage.class);
+			arguments.add(((EventMessage) message).getArguments().get(0));
+		}
+		return arguments;
+	}
+
+	@Configuration
+	@EnableAutoConfiguration
+	@EnableReactiveWamp
+	static class Config implements WampConfigurer {
+		@Bean
+		public ServerToClientService serverToClientService(WampPublisher wampPublisher) {
+			return new ServerToClientService(wampPublisher);
+		}
+
+		@Override
+		public void configureOutboundQueueLimits(OutboundQueueLimits limits) {
+			limits.enable();
+			limits.setCapacity(1);
+			limits.setOverflowPolicy(OverflowPolicy.SPILL);
+			limits.setMaxSpillBytesPerSession(1024 * 1024);
+		}
+	}
+
+}
@@ -29,6 +29,9 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -181,6 +184,9 @@ public class SubscriptionRegistryTest {
 				.isEqualTo(result1.getSubscription().getSubscriptionId());
 		assertThat(uresult.getSubscription().getTopic()).isEqualTo("topic");
 		assertThat(uresult.getSubscription().getSubscribers()).hasSize(1);
+		assertThat(uresult.getSubscription().getSubscriber(123L)).isNull();
+		assertThat(uresult.getSubscription().getSubscriber(321L).getWebSocketSessionId())
+				.isEqualTo("2");
 
 		ra = new RegistryAssert();
 		ra.addSubscriber(MatchPolicy.EXACT, "topic",
@@ -340,6 +346,11 @@ public class SubscriptionRegistryTest {
 		assertThat(result2.getSubscription().getCreatedTimeMillis()).isGreaterThan(0);
 		assertThat(result2.getSubscription().getEventListenerHandlerMethods()).isNull();
 		assertThat(result2.getSubscription().getSubscribers()).hasSize(2);
+		assertThat(result2.getSubscription().getSubscriber(123L).getWebSocketSessionId())
+				.isEqualTo("1");
+		assertThat(result2.getSubscription().getSubscriber(321L).getWebSocketSessionId())
+				.isEqualTo("2");
+		assertThat(result2.getSubscription().getSubscriber(999L)).isNull();
 		assertThat(result2.getSubscription().getTopic()).isEqualTo("topic");
 		assertThat(result2.isCreated()).isFalse();
 
@@ -451,6 +462,62 @@ public class SubscriptionRegistryTest {
 				.getMatchSubscriptions("com.myapp2.foo.userevent")).isEmpty();
 	}
 
+	@Test
+	public void testPatternSubscriptionsAgreeWithDestinationMatch() {
+		String[] prefixTopics = { "", "com", "com.", "com.my", "com.myapp",
+				"com.myapp.topic", "com.myapp.topic.emergency", "com..topic", "org" };
+		String[] wildcardTopics = { "com..topic", "com.myapp.", "..emergency", "com..",
+				"com.myapp.topic", ".myapp.topic.", "org..topic" };
+		String[] queries = { "com", "com.myapp", "com.myapp.topic",
+				"com.myapp.topic.emergency", "com.myapp.topic.emergency-low",
+				"com.other.topic", "com..topic", "org.myapp.topic", "org", "com.myapp.",
+				"x.y.emergency", "com.myapp.topic.", "" };
+
+		List<Subscription> subscriptions = new ArrayList<>();
+		long wampSessionId = 1L;
+		for (String topic : prefixTopics) {
+			SubscribeMessage subscribeMessage = new SubscribeMessage(1, topic,
+					MatchPolicy.PREFIX);
+			subscribeMessage.setHeader(WampMessageHeader.WAMP_SESSION_ID, wampSessionId);
+			subscribeMessage.setHeader(WampMessageHeader.WEBSOCKET_SESSION_ID,
+					"ws" + wampSessionId++);
+			subscriptions.add(this.subscriptionRegistry.subscribe(subscribeMessage)
+					.getSubscription());
+		}
+		for (String topic : wildcardTopics) {
+			SubscribeMessage subscribeMessage = new SubscribeMessage(1, topic,
+					MatchPolicy.WILDCARD);
+			subscribeMessage.setHeader(WampMessageHeader.WAMP_SESSION_ID, wampSessionId);
+			subscribeMessage.setHeader(WampMessageHeader.WEBSOCKET_SESSION_ID,
+					"ws" + wampSessionId++);
+			subscriptions.add(this.subscriptionRegistry.subscribe(subscribeMessage)
+					.getSubscription());
+		}
+
+		for (String query : queries) {
+			Set<Long> expected = subscriptions.stream()
+					.filter(s -> s.getTopicMatch().matches(query))
+					.map(Subscription::getSubscriptionId).collect(Collectors.toSet());
+			assertThat(this.subscriptionRegistry.getMatchSubscriptions(query))
+					.as(query).hasSameElementsAs(expected);
+		}
+
+		for (Subscription subscription : subscriptions.subList(0, 8)) {
+			long sessionId = subscription.getSubscribers().iterator().next()
+					.getWampSessionId();
+			this.subscriptionRegistry.removeWebSocketSessionId("ws" + sessionId,
+					sessionId);
+		}
+		List<Subscription> remaining = subscriptions.subList(8, subscriptions.size());
+		for (String query : queries) {
+			Set<Long> expected = remaining.stream()
+					.filter(s -> s.getTopicMatch().matches(query))
+					.map(Subscription::getSubscriptionId).collect(Collectors.toSet());
+			assertThat(this.subscriptionRegistry.getMatchSubscriptions(query))
+					.as(query).hasSameElementsAs(expected);
+		}
+	}
+
 	@Test
 	public void testUnsubscribeNonExistentSubscription() {
 		UnsubscribeMessage unsubscribeMessage = new UnsubscribeMessage(33, 1);
@@ -786,6 +853,113 @@ public class SubscriptionRegistryTest {
 				.containsExactly(resultO2.getSubscription().getSubscriptionId());
 	}
 
+	@Test
+	public void testRemoveWebSocketSessionAfterUnsubscribe() {
+		SubscribeMessage subscribeMessage = new SubscribeMessage(1, "com.myapp.user");
+		subscribeMessage.setHeader(WampMessageHeader.WAMP_SESSION_ID, 123L);
+		subscribeMessage.setHeader(WampMessageHeader.WEBSOCKET_SESSION_ID, "one");
+		SubscribeResult result1 = this.subscriptionRegistry.subscribe(subscribeMessage);
+
+		subscribeMessage = new SubscribeMessage(2, "com.myapp..test",
+				MatchPolicy.WILDCARD);
+		subscribeMessage.setHeader(WampMessageHeader.WAMP_SESSION_ID, 123L);
+		subscribeMessage.setHeader(WampMessageHeader.WEBSOCKET_SESSION_ID, "one");
+		SubscribeResult result2 = this.subscriptionRegistry.subscribe(subscribeMessage);
+
+		subscribeMessage = new SubscribeMessage(3, "com.myapp.user");
+		subscribeMessage.setHeader(WampMessageHeader.WAMP_SESSION_ID, 124L);
+		subscribeMessage.setHeader(WampMessageHeader.WEBSOCKET_SESSION_ID, "two");
+		this.subscriptionRegistry.subscribe(subscribeMessage);
+
+		UnsubscribeMessage unsubscribeMessage = new UnsubscribeMessage(4,
+				result1.getSubscription().getSubscriptionId());
+		unsubscribeMessage.setHeader(WampMessageHeader.WAMP_SESSION_ID, 123L);
+		unsubscribeMessage.setHeader(WampMessageHeader.WEBSOCKET_SESSION_ID, "one");
+		assertThat(this.subscriptionRegistry.unsubscribe(unsubscribeMessage).getError())
+				.isNull();
+
+		List<UnsubscribeResult> results = this.subscriptionRegistry
+				.removeWebSocketSessionId("one", 123L);
+		assertThat(results).hasSize(1);
+		assertThat(results.get(0).getSubscription())
+				.isSameAs(result2.getSubscription());
+		assertThat(results.get(0).isDeleted()).isTrue();
+
+		assertThat(this.subscriptionRegistry.removeWebSocketSessionId("one", 123L))
+				.isEmpty();
+		assertThat(this.subscriptionRegistry.removeWebSocketSessionId("unknown", 1L))
+				.isEmpty();
+
+		RegistryAssert ra = new RegistryAssert();
+		ra.addSubscriber(MatchPolicy.EXACT, "com.myapp.user",
+				result1.getSubscription().getSubscriptionId(), 124L);
+		assertRegistry(ra);
+	}
+
+	@Test
+	public void testConcurrentSubscribeUnsubscribe() throws Exception {
+		String[] topics = { "com.myapp.topic", "com.myapp", "com..topic", "com.other",
+				"org.myapp.topic" };
+		MatchPolicy[] matchPolicy = { MatchPolicy.EXACT, MatchPolicy.PREFIX,
+				MatchPolicy.WILDCARD, MatchPolicy.PREFIX, MatchPolicy.EXACT };
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < 8; t++) {
+				long base = 1_000_000L * (t + 1);
+				futures.add(executor.submit(() -> {
+					for (int i = 0; i < 2_000; i++) {
+						int ix = i % topics.length;
+						long wampSessionId = base + i;
+						SubscribeMessage subscribeMessage = new SubscribeMessage(i,
+								topics[ix], matchPolicy[ix]);
+						subscribeMessage.setHeader(WampMessageHeader.WAMP_SESSION_ID,
+								wampSessionId);
+						subscribeMessage.setHeader(
+								WampMessageHeader.WEBSOCKET_SESSION_ID,
+								"ws" + wampSessionId);
+						SubscribeResult result = this.subscriptionRegistry
+								.subscribe(subscribeMessage);
+
+						assertThat(this.subscriptionRegistry.getSubscription(
+								result.getSubscription().getSubscriptionId())).isNotNull();
+						assertThat(this.subscriptionRegistry
+								.getMatchSubscriptions(topics[ix])).contains(
+										result.getSubscription().getSubscriptionId());
+
+						if (i % 2 == 0) {
+							UnsubscribeMessage unsubscribeMessage = new UnsubscribeMessage(
+									i, result.getSubscription().getSubscriptionId());
+							unsubscribeMessage.setHeader(
+									WampMessageHeader.WAMP_SESSION_ID, wampSessionId);
+							unsubscribeMessage.setHeader(
+									WampMessageHeader.WEBSOCKET_SESSION_ID,
+									"ws" + wampSessionId);
+							assertThat(this.subscriptionRegistry
+									.unsubscribe(unsubscribeMessage).getError()).isNull();
+						}
+						else {
+							assertThat(this.subscriptionRegistry.removeWebSocketSessionId(
+									"ws" + wampSessionId, wampSessionId)).hasSize(1);
+						}
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+
+		assertRegistry(new RegistryAssert());
+		for (String topic : topics) {
+			assertThat(this.subscriptionRegistry.getMatchSubscriptions(topic)).isEmpty();
+		}
+	}
+
 	@Test
 	public void testSubscribeEventHandlers() throws NoSuchMethodException {
 		InvocableHandlerMethod handlerMethod = new InvocableHandlerMethod(
@@ -33,6 +33,7 @@ import ch.rasc.wamp2spring.message.WampMessage;
 import ch.rasc.wamp2spring.message.WampMessageHeader;
 import ch.rasc.wamp2spring.message.YieldMessage;
 import ch.rasc.wamp2spring.rpc.ProcedureRegistry.CallProc;
+import ch.rasc.wamp2spring.util.ConcurrentLongHashMap;
 
 @SuppressWarnings("unchecked")
 public class ProcedureRegistryTest {
@@ -60,9 +61,9 @@ public class ProcedureRegistryTest {
 
 		Map<String, Procedure> procedures = (Map<String, Procedure>) ReflectionTestUtils
 				.getField(this.procedureRegistry, "procedures");
-		Map<Long, String> registrations = (Map<Long, String>) ReflectionTestUtils
+		ConcurrentLongHashMap<String> registrations = (ConcurrentLongHashMap<String>) ReflectionTestUtils
 				.getField(this.procedureRegistry, "registrations");
-		assertThat(registrations).hasSize(1);
+		assertThat(registrations.size()).isEqualTo(1);
 		assertThat(registrations.get(regId)).isEqualTo("service.add");
 		assertThat(procedures).hasSize(1);
 		Procedure proc = procedures.get("service.add");
@@ -81,9 +82,9 @@ public class ProcedureRegistryTest {
 
 		Map<String, Procedure> procedures = (Map<String, Procedure>) ReflectionTestUtils
 				.getField(this.procedureRegistry, "procedures");
-		Map<Long, String> registrations = (Map<Long, String>) ReflectionTestUtils
+		ConcurrentLongHashMap<String> registrations = (ConcurrentLongHashMap<String>) ReflectionTestUtils
 				.getField(this.procedureRegistry, "registrations");
-		assertThat(registrations).hasSize(1);
+		assertThat(registrations.size()).isEqualTo(1);
 		assertThat(registrations.get(regId)).isEqualTo("service.add");
 		assertThat(procedures).hasSize(1);
 		Procedure proc = procedures.get("service.add");
@@ -112,11 +113,11 @@ public class ProcedureRegistryTest {
 
 		Map<String, Procedure> procedures = (Map<String, Procedure>) ReflectionTestUtils
 				.getField(this.procedureRegistry, "procedures");
-		Map<Long, String> registrations = (Map<Long, String>) ReflectionTestUtils
+		ConcurrentLongHashMap<String> registrations = (ConcurrentLongHashMap<String>) ReflectionTestUtils
 				.getField(this.procedureRegistry, "registrations");
 
 		this.procedureRegistry.unregisterWebSocketSession("two");
-		assertThat(registrations).hasSize(1);
+		assertThat(registrations.size()).isEqualTo(1);
 		assertThat(registrations.get(regId)).isEqualTo("service.add");
 		assertThat(procedures).hasSize(1);
 		Procedure proc = procedures.get("service.add");
@@ -125,7 +126,7 @@ public class ProcedureRegistryTest {
 		assertThat(proc.getWebSocketSessionId()).isEqualTo("one");
 
 		this.procedureRegistry.unregisterWebSocketSession("one");
-		assertThat(registrations).isEmpty();
+		assertThat(registrations.isEmpty()).isTrue();
 		assertThat(procedures).isEmpty();
 	}
 
@@ -146,9 +147,10 @@ public class ProcedureRegistryTest {
 		assertThat(im.getRegistrationId()).isEqualTo(regId);
 		assertThat(im.getWebSocketSessionId()).isEqualTo("one");
 
-		Map<Long, CallProc> pendingInvocations = (Map<Long, CallProc>) ReflectionTestUtils
+		ConcurrentLongHashMap<CallProc> pendingInvocations = (ConcurrentLongHashMap<CallProc>) ReflectionTestUtils
 				.getField(this.procedureRegistry, "pendingInvocations");
-		assertThat(pendingInvocations).containsOnlyKeys(im.getRequestId());
+		assertThat(pendingInvocations.size()).isEqualTo(1);
+		assertThat(pendingInvocations.containsKey(im.getRequestId())).isTrue();
 		CallProc cp = pendingInvocations.get(im.getRequestId());
 		assertThat(cp.callMessage).isEqualTo(callMessage);
 	}
@@ -164,9 +166,9 @@ public class ProcedureRegistryTest {
 		assertThat(er.getRequestId()).isEqualTo(callMessage.getRequestId());
 		assertThat(er.getWebSocketSessionId()).isEqualTo("two");
 
-		Map<Long, CallMessage> pendingInvocations = (Map<Long, CallMessage>) ReflectionTestUtils
+		ConcurrentLongHashMap<CallMessage> pendingInvocations = (ConcurrentLongHashMap<CallMessage>) ReflectionTestUtils
 				.getField(this.procedureRegistry, "pendingInvocations");
-		assertThat(pendingInvocations).isEmpty();
+		assertThat(pendingInvocations.isEmpty()).isTrue();
 	}
 
 	@Test
@@ -191,9 +193,9 @@ public class ProcedureRegistryTest {
 				.removeInvocationCall(yieldMessage);
 		assertThat(callMessage).isEqualTo(callMessage2);
 
-		Map<Long, CallMessage> pendingInvocations = (Map<Long, CallMessage>) ReflectionTestUtils
+		ConcurrentLongHashMap<CallMessage> pendingInvocations = (ConcurrentLongHashMap<CallMessage>) ReflectionTestUtils
 				.getField(this.procedureRegistry, "pendingInvocations");
-		assertThat(pendingInvocations).isEmpty();
+		assertThat(pendingInvocations.isEmpty()).isTrue();
 	}
 
 	@Test
@@ -219,9 +221,9 @@ public class ProcedureRegistryTest {
 				.removeInvocationCall(errorMessage);
 		assertThat(callMessage).isEqualTo(callMessage2);
 
-		Map<Long, CallMessage> pendingInvocations = (Map<Long, CallMessage>) ReflectionTestUtils
+		ConcurrentLongHashMap<CallMessage> pendingInvocations = (ConcurrentLongHashMap<CallMessage>) ReflectionTestUtils
 				.getField(this.procedureRegistry, "pendingInvocations");
-		assertThat(pendingInvocations).isEmpty();
+		assertThat(pendingInvocations.isEmpty()).isTrue();
 
 		errorMessage = new ErrorMessage(im.getCode(), 111L, "error", null, null);
 		callMessage2 = this.procedureRegistry.removeInvocationCall(errorMessage);
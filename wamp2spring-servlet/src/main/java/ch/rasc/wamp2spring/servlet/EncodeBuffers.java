@@ -0,0 +1,106 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.servlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+
+import ch.rasc.wamp2spring.message.WampCodec;
+import ch.rasc.wamp2spring.message.WampMessage;
+
+/**
+ * Per thread encode buffers of the outbound path. The buffers are reset and reused for
+ * every message serialized on the same thread, so after a short warm up no buffer has
+ * to grow anymore. Buffers that grew beyond {@link #MAX_RETAINED_SIZE} for a single
+ * large message are dropped afterwards, to not keep the memory around.
+ * <p>
+ * The result is not a view of the recycled buffer but one exact-size copy of it per
+ * message, taken by {@link ByteArrayOutputStream#toByteArray()} and
+ * {@link StringWriter#toString()}. The session may queue a message and send it later
+ * from another thread (see
+ * {@link org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator}),
+ * so the payload must not be overwritten by the next message.
+ */
+class EncodeBuffers {
+
+	private static final int INITIAL_SIZE = 1024;
+
+	private static final int MAX_RETAINED_SIZE = 64 * 1024;
+
+	private static final ThreadLocal<EncodeBuffers> buffers = ThreadLocal
+			.withInitial(EncodeBuffers::new);
+
+	private RecyclableByteArrayOutputStream bytes = new RecyclableByteArrayOutputStream();
+
+	private StringWriter text = new StringWriter(INITIAL_SIZE);
+
+	/**
+	 * Serializes the message into a buffer that holds exactly the serialized bytes.
+	 */
+	static ByteBuffer encodeBinary(WampMessage message, WampCodec codec)
+			throws IOException {
+		EncodeBuffers encodeBuffers = buffers.get();
+		RecyclableByteArrayOutputStream out = encodeBuffers.bytes;
+		try {
+			codec.encode(message, out);
+			return ByteBuffer.wrap(out.toByteArray());
+		}
+		finally {
+			if (out.capacity() > MAX_RETAINED_SIZE) {
+				encodeBuffers.bytes = new RecyclableByteArrayOutputStream();
+			}
+			else {
+				out.reset();
+			}
+		}
+	}
+
+	/**
+	 * Serializes the message into a String without encoding it into UTF-8 bytes first.
+	 */
+	static String encodeText(WampMessage message, WampCodec codec)
+			throws IOException {
+		EncodeBuffers encodeBuffers = buffers.get();
+		StringWriter out = encodeBuffers.text;
+		try {
+			codec.encode(message, out);
+			return out.toString();
+		}
+		finally {
+			StringBuffer buffer = out.getBuffer();
+			if (buffer.capacity() > MAX_RETAINED_SIZE) {
+				encodeBuffers.text = new StringWriter(INITIAL_SIZE);
+			}
+			else {
+				buffer.setLength(0);
+			}
+		}
+	}
+
+	private static class RecyclableByteArrayOutputStream extends ByteArrayOutputStream {
+
+		RecyclableByteArrayOutputStream() {
+			super(INITIAL_SIZE);
+		}
+
+		int capacity() {
+			return this.buf.length;
+		}
+	}
+
+}
@@ -52,9 +52,8 @@ public class WampServletConfiguration extends WampConfiguration implements Impor
 
 	@Bean
 	public WampSubProtocolHandler wampSubProtocolHandler() {
-		return new WampSubProtocolHandler(jsonJsonFactory(), msgpackJsonFactory(),
-				cborJsonFactory(), smileJsonFactory(), clientInboundChannel(),
-				this.features);
+		return new WampSubProtocolHandler(wampCodecs(), clientInboundChannel(),
+				sessionIdAllocator(), this.features, transportSettings());
 	}
 
 	@Bean
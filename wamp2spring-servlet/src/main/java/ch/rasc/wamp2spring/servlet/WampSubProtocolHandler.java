@@ -15,21 +15,24 @@
  */
 package ch.rasc.wamp2spring.servlet;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.lang.Nullable;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
@@ -38,67 +41,156 @@ import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.messaging.SubProtocolHandler;
 
 import com.fasterxml.jackson.core.JsonFactory;
-import com.fasterxml.jackson.core.JsonGenerator;
 
 import ch.rasc.wamp2spring.WampError;
 import ch.rasc.wamp2spring.config.Feature;
 import ch.rasc.wamp2spring.config.Features;
+import ch.rasc.wamp2spring.config.OutboundBatching;
+import ch.rasc.wamp2spring.config.OutboundQueueLimits;
+import ch.rasc.wamp2spring.config.OutboundQueueLimits.OverflowPolicy;
+import ch.rasc.wamp2spring.config.TransportSettings;
 import ch.rasc.wamp2spring.event.WampDisconnectEvent;
 import ch.rasc.wamp2spring.event.WampSessionEstablishedEvent;
 import ch.rasc.wamp2spring.message.AbortMessage;
 import ch.rasc.wamp2spring.message.ErrorMessage;
+import ch.rasc.wamp2spring.message.EventBatchMessage;
+import ch.rasc.wamp2spring.message.EventMessage;
 import ch.rasc.wamp2spring.message.GoodbyeMessage;
 import ch.rasc.wamp2spring.message.HelloMessage;
 import ch.rasc.wamp2spring.message.InvocationMessage;
+import ch.rasc.wamp2spring.message.JacksonWampCodec;
+import ch.rasc.wamp2spring.message.WampCodec;
 import ch.rasc.wamp2spring.message.WampMessage;
 import ch.rasc.wamp2spring.message.WampMessageHeader;
 import ch.rasc.wamp2spring.message.WampRole;
 import ch.rasc.wamp2spring.message.WelcomeMessage;
-import ch.rasc.wamp2spring.util.IdGenerator;
+import ch.rasc.wamp2spring.util.OutboundQueue;
+import ch.rasc.wamp2spring.util.OutboundSpillStore;
+import ch.rasc.wamp2spring.util.SessionIdAllocator;
+import ch.rasc.wamp2spring.util.SpilledFrame;
 
 /**
  * A WebSocket {@link SubProtocolHandler} implementation for the WAMP v2 protocol.
  */
 public class WampSubProtocolHandler
-		implements SubProtocolHandler, ApplicationEventPublisherAware {
+		implements SubProtocolHandler, ApplicationEventPublisherAware, DisposableBean {
 
 	private static final Log logger = LogFactory.getLog(WampSubProtocolHandler.class);
 
-	public static final String JSON_PROTOCOL = "wamp.2.json";
+	public static final String JSON_PROTOCOL = WampCodec.JSON_PROTOCOL;
 
-	public static final String MSGPACK_PROTOCOL = "wamp.2.msgpack";
+	public static final String MSGPACK_PROTOCOL = WampCodec.MSGPACK_PROTOCOL;
 
-	public static final String CBOR_PROTOCOL = "wamp.2.cbor";
+	public static final String CBOR_PROTOCOL = WampCodec.CBOR_PROTOCOL;
 
-	public static final String SMILE_PROTOCOL = "wamp.2.smile";
+	public static final String SMILE_PROTOCOL = WampCodec.SMILE_PROTOCOL;
 
-	private static final List<String> supportedProtocols = Arrays.asList(MSGPACK_PROTOCOL,
-			JSON_PROTOCOL, CBOR_PROTOCOL, SMILE_PROTOCOL);
+	private static final String WAMP_CODEC = "wamp2spring.codec";
 
-	private final JsonFactory jsonFactory;
+	private static final String WAMP_WRITE_BATCH = "wamp2spring.write.batch";
 
-	private final JsonFactory msgpackFactory;
+	private static final String WAMP_OUTBOUND_QUEUE = "wamp2spring.outbound.queue";
 
-	private final JsonFactory cborFactory;
+	private final Map<String, WampCodec> codecs = new LinkedHashMap<>();
 
-	private final JsonFactory smileFactory;
+	private final List<String> supportedProtocols;
+
+	/**
+	 * Codec for text frames of sessions that negotiated a binary or no protocol
+	 */
+	@Nullable
+	private final WampCodec textCodec;
 
 	private final List<WampRole> roles;
 
-	private final Set<Long> wampSessionIds = ConcurrentHashMap.newKeySet();
+	private final SessionIdAllocator sessionIdAllocator;
 
 	private final MessageChannel clientInboundChannel;
 
+	private final OutboundBatching outboundBatching;
+
+	private final OutboundQueueLimits outboundQueueLimits;
+
+	/**
+	 * Budget of the spill files of all sessions. Only created with the
+	 * {@link OverflowPolicy#SPILL} policy.
+	 */
+	@Nullable
+	private final OutboundSpillStore spillStore;
+
+	/**
+	 * Runs the linger flushes of the write batches. Only created when batching is
+	 * enabled.
+	 */
+	@Nullable
+	private final ScheduledExecutorService batchFlushScheduler;
+
+	/**
+	 * True if the router offers the {@link EventBatchMessage#FEATURE} extension
+	 */
+	private final boolean packEvents;
+
 	private ApplicationEventPublisher applicationEventPublisher;
 
+	/**
+	 * Creates a handler for the four built-in sub-protocols. The handler allocates the
+	 * session ids with its own {@link SessionIdAllocator}.
+	 * @deprecated use
+	 * {@link #WampSubProtocolHandler(List, MessageChannel, SessionIdAllocator, Features)}
+	 * with {@link JacksonWampCodec#defaultCodecs(JsonFactory, JsonFactory, JsonFactory, JsonFactory)}
+	 */
+	@Deprecated
 	public WampSubProtocolHandler(JsonFactory jsonFactory, JsonFactory msgpackFactory,
 			JsonFactory cborFactory, JsonFactory smileFactory,
 			MessageChannel clientInboundChannel, Features features) {
-		this.jsonFactory = jsonFactory;
-		this.msgpackFactory = msgpackFactory;
-		this.cborFactory = cborFactory;
-		this.smileFactory = smileFactory;
+		this(JacksonWampCodec.defaultCodecs(jsonFactory, msgpackFactory, cborFactory,
+				smileFactory), clientInboundChannel, new SessionIdAllocator(), features);
+	}
+
+	public WampSubProtocolHandler(List<WampCodec> codecs,
+			MessageChannel clientInboundChannel, SessionIdAllocator sessionIdAllocator,
+			Features features) {
+		this(codecs, clientInboundChannel, sessionIdAllocator, features,
+				new TransportSettings());
+	}
+
+	public WampSubProtocolHandler(List<WampCodec> codecs,
+			MessageChannel clientInboundChannel, SessionIdAllocator sessionIdAllocator,
+			Features features, TransportSettings transportSettings) {
+		OutboundBatching outboundBatching = transportSettings.getOutboundBatching();
+		OutboundQueueLimits outboundQueueLimits = transportSettings
+				.getOutboundQueueLimits();
+		WampCodec firstTextCodec = null;
+		for (WampCodec codec : codecs) {
+			this.codecs.putIfAbsent(codec.getProtocol(), codec);
+			if (firstTextCodec == null && !codec.isBinary()) {
+				firstTextCodec = codec;
+			}
+		}
+		this.supportedProtocols = Collections
+				.unmodifiableList(new ArrayList<>(this.codecs.keySet()));
+		this.textCodec = firstTextCodec;
 		this.clientInboundChannel = clientInboundChannel;
+		this.sessionIdAllocator = sessionIdAllocator;
+		this.outboundBatching = outboundBatching;
+		this.outboundQueueLimits = outboundQueueLimits;
+		this.spillStore = outboundQueueLimits.isEnabled()
+				&& outboundQueueLimits.getOverflowPolicy() == OverflowPolicy.SPILL
+						? new OutboundSpillStore(outboundQueueLimits)
+						: null;
+
+		if (outboundBatching.isEnabled()) {
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(
+					"wampBatchFlush-");
+			threadFactory.setDaemon(true);
+			this.batchFlushScheduler = Executors
+					.newSingleThreadScheduledExecutor(threadFactory);
+		}
+		else {
+			this.batchFlushScheduler = null;
+		}
+		this.packEvents = outboundBatching.isEnabled() && outboundBatching.isPackEvents()
+				&& features.isEnabled(Feature.BROKER);
 
 		this.roles = new ArrayList<>();
 
@@ -115,13 +207,35 @@ public class WampSubProtocolHandler
 			for (Feature feature : features.enabledBrokerFeatures()) {
 				broker.addFeature(feature.getExternalValue());
 			}
+			if (this.packEvents) {
+				broker.addFeature(EventBatchMessage.FEATURE);
+			}
 			this.roles.add(broker);
 		}
 	}
 
 	@Override
 	public List<String> getSupportedProtocols() {
-		return supportedProtocols;
+		return this.supportedProtocols;
+	}
+
+	/**
+	 * Returns the codec of the protocol negotiated during the handshake. The codec is
+	 * looked up once and then stored in the session attributes.
+	 */
+	@Nullable
+	private WampCodec getCodec(WebSocketSession session) {
+		WampCodec codec = (WampCodec) session.getAttributes().get(WAMP_CODEC);
+		if (codec == null) {
+			String acceptedProtocol = session.getAcceptedProtocol();
+			if (acceptedProtocol != null) {
+				codec = this.codecs.get(acceptedProtocol);
+				if (codec != null) {
+					session.getAttributes().put(WAMP_CODEC, codec);
+				}
+			}
+		}
+		return codec;
 	}
 
 	/**
@@ -134,26 +248,17 @@ public class WampSubProtocolHandler
 		try {
 			WampMessage wampMessage = null;
 
+			WampCodec codec = getCodec(session);
 			if (webSocketMessage instanceof TextMessage) {
-				wampMessage = WampMessage.deserialize(this.jsonFactory,
-						((TextMessage) webSocketMessage).asBytes());
+				WampCodec useCodec = codec != null && !codec.isBinary() ? codec
+						: this.textCodec;
+				if (useCodec != null) {
+					wampMessage = useCodec
+							.decode(((TextMessage) webSocketMessage).getPayload());
+				}
 			}
 			else if (webSocketMessage instanceof BinaryMessage) {
-				BinaryMessage binaryMessage = (BinaryMessage) webSocketMessage;
-				ByteBuffer byteBuffer = binaryMessage.getPayload();
-
-				byte[] payloadBytes;
-				if (byteBuffer.hasArray()) {
-					payloadBytes = byteBuffer.array();
-				}
-				else {
-					ByteBuffer duplicate = byteBuffer.duplicate();
-					payloadBytes = new byte[duplicate.remaining()];
-					duplicate.get(payloadBytes);
-				}
-
-				String acceptedProtocol = session.getAcceptedProtocol();
-				if (acceptedProtocol == null) {
+				if (codec == null) {
 					if (logger.isErrorEnabled()) {
 						logger.error(
 								"Deserialization failed because no accepted protocol "
@@ -162,16 +267,9 @@ public class WampSubProtocolHandler
 					}
 					return;
 				}
-				if (WampSubProtocolHandler.MSGPACK_PROTOCOL.equals(acceptedProtocol)) {
-					wampMessage = WampMessage.deserialize(this.msgpackFactory,
-							payloadBytes);
-				}
-				else if (WampSubProtocolHandler.SMILE_PROTOCOL.equals(acceptedProtocol)) {
-					wampMessage = WampMessage.deserialize(this.smileFactory,
-							payloadBytes);
-				}
-				else if (WampSubProtocolHandler.CBOR_PROTOCOL.equals(acceptedProtocol)) {
-					wampMessage = WampMessage.deserialize(this.cborFactory, payloadBytes);
+				if (codec.isBinary()) {
+					wampMessage = codec
+							.decode(((BinaryMessage) webSocketMessage).getPayload());
 				}
 			}
 			else {
@@ -200,13 +298,22 @@ public class WampSubProtocolHandler
 					session.close(CloseStatus.PROTOCOL_ERROR);
 				}
 
-				long newWampSessionId = IdGenerator.newRandomId(this.wampSessionIds);
-				this.wampSessionIds.add(newWampSessionId);
+				long newWampSessionId = this.sessionIdAllocator.allocate();
 				session.getAttributes().put(WampMessageHeader.WAMP_SESSION_ID.name(),
 						newWampSessionId);
 
-				WelcomeMessage welcomeMessage = new WelcomeMessage(
-						(HelloMessage) wampMessage, newWampSessionId, this.roles);
+				HelloMessage helloMessage = (HelloMessage) wampMessage;
+				if (this.packEvents
+						&& helloMessage.hasFeature("subscriber", EventBatchMessage.FEATURE)) {
+					WriteBatch writeBatch = (WriteBatch) session.getAttributes()
+							.get(WAMP_WRITE_BATCH);
+					if (writeBatch != null) {
+						writeBatch.enablePacking();
+					}
+				}
+
+				WelcomeMessage welcomeMessage = new WelcomeMessage(helloMessage,
+						newWampSessionId, this.roles);
 				handleMessageToClient(session, welcomeMessage);
 
 				this.applicationEventPublisher
@@ -249,40 +356,134 @@ public class WampSubProtocolHandler
 			return;
 		}
 
-		WampMessage wampMessage = (WampMessage) message;
-		JsonFactory useFactory = this.jsonFactory;
+		OutboundQueue outboundQueue = (OutboundQueue) session.getAttributes()
+				.get(WAMP_OUTBOUND_QUEUE);
+		if (outboundQueue == null) {
+			sendMessageToClient(session, (WampMessage) message);
+			return;
+		}
 
-		boolean isBinary = false;
+		@SuppressWarnings("unchecked")
+		Message<Object> queuedMessage = (Message<Object>) message;
+		if (outboundQueue.offer(queuedMessage)) {
+			// the thread that wins the drain writes the messages of the other threads
+			// too, while they return immediately
+			outboundQueue.drain(msg -> {
+				if (msg instanceof SpilledFrame) {
+					sendSpilledFrame(session, (SpilledFrame) msg);
+				}
+				else {
+					sendMessageToClient(session, (WampMessage) msg);
+				}
+			});
+		}
+		else {
+			disconnectSlowConsumer(session, outboundQueue, queuedMessage);
+		}
+	}
+
+	/**
+	 * Closes a session that filled up its outbound queue and feeds back an error for
+	 * all queued INVOCATION messages.
+	 */
+	private void disconnectSlowConsumer(WebSocketSession session,
+			OutboundQueue outboundQueue, Message<Object> rejectedMessage) {
+		outboundQueue.close();
+		List<Message<Object>> undelivered = outboundQueue.pollAll();
+		undelivered.add(rejectedMessage);
+		for (Message<Object> message : undelivered) {
+			if (message instanceof InvocationMessage) {
+				this.clientInboundChannel.send(new ErrorMessage(
+						(InvocationMessage) message, WampError.NETWORK_FAILURE));
+			}
+		}
+
+		if (session.isOpen()) {
+			if (logger.isWarnEnabled()) {
+				logger.warn("Closing session " + session.getId()
+						+ " because its outbound queue is full");
+			}
+			try {
+				session.close(CloseStatus.POLICY_VIOLATION);
+			}
+			catch (IOException e) {
+				// Ignore
+			}
+		}
+	}
 
-		String acceptedProtocol = session.getAcceptedProtocol();
-		if (acceptedProtocol != null) {
-			if (WampSubProtocolHandler.MSGPACK_PROTOCOL.equals(acceptedProtocol)) {
-				isBinary = true;
-				useFactory = this.msgpackFactory;
+	/**
+	 * Writes an EVENT that the outbound queue read back from its spill file. The frame
+	 * is already serialized with the codec of the session.
+	 */
+	private void sendSpilledFrame(WebSocketSession session, SpilledFrame spilledFrame) {
+		WampCodec codec = getCodec(session);
+		if (codec == null) {
+			return;
+		}
+		try {
+			WebSocketMessage<?> frame = codec.isBinary()
+					? new BinaryMessage(spilledFrame.getBytes())
+					: new TextMessage(spilledFrame.getBytes());
+			WriteBatch writeBatch = (WriteBatch) session.getAttributes()
+					.get(WAMP_WRITE_BATCH);
+			if (writeBatch != null) {
+				writeBatch.send(frame, true);
 			}
-			else if (WampSubProtocolHandler.SMILE_PROTOCOL.equals(acceptedProtocol)) {
-				isBinary = true;
-				useFactory = this.smileFactory;
+			else {
+				session.sendMessage(frame);
+			}
+		}
+		catch (Throwable ex) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Failed to send WebSocket message to client in session "
+						+ session.getId(), ex);
 			}
-			else if (WampSubProtocolHandler.CBOR_PROTOCOL.equals(acceptedProtocol)) {
-				isBinary = true;
-				useFactory = this.cborFactory;
+			try {
+				session.close(CloseStatus.PROTOCOL_ERROR);
 			}
+			catch (IOException e) {
+				// Ignore
+			}
+		}
+	}
 
-			try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
-					JsonGenerator generator = useFactory.createGenerator(bos)) {
-				generator.writeStartArray();
-				wampMessage.serialize(generator);
-				generator.writeEndArray();
-				generator.close();
+	private void sendMessageToClient(WebSocketSession session, WampMessage wampMessage) {
+		WampCodec codec = getCodec(session);
+		if (codec != null) {
+			try {
+				WriteBatch writeBatch = (WriteBatch) session.getAttributes()
+						.get(WAMP_WRITE_BATCH);
+				if (writeBatch != null && wampMessage instanceof EventMessage
+						&& writeBatch.pack((EventMessage) wampMessage)) {
+					return;
+				}
 
-				if (isBinary) {
-					session.sendMessage(new BinaryMessage(bos.toByteArray()));
+				WebSocketMessage<?> frame;
+				if (wampMessage.isEncodingShared()) {
+					// serialized once for all receivers of the event
+					byte[] bytes = wampMessage.serialize(codec);
+					if (codec.isBinary()) {
+						frame = new BinaryMessage(bytes);
+					}
+					else {
+						frame = new TextMessage(bytes);
+					}
+				}
+				else if (codec.isBinary()) {
+					frame = new BinaryMessage(EncodeBuffers.encodeBinary(wampMessage, codec));
 				}
 				else {
-					session.sendMessage(new TextMessage(bos.toByteArray()));
+					frame = new TextMessage(EncodeBuffers.encodeText(wampMessage, codec));
 				}
 
+				if (writeBatch != null) {
+					// only events are delayed, everything else flushes the batch
+					writeBatch.send(frame, wampMessage instanceof EventMessage);
+				}
+				else {
+					session.sendMessage(frame);
+				}
 			}
 			catch (Throwable ex) {
 				// Could be part of normal workflow (e.g. browser tab closed)
@@ -294,9 +495,9 @@ public class WampSubProtocolHandler
 				// Is this an outbound invocation message. In that case we need to feed
 				// back
 				// an error message
-				if (message instanceof InvocationMessage) {
+				if (wampMessage instanceof InvocationMessage) {
 					ErrorMessage errorMessage = new ErrorMessage(
-							(InvocationMessage) message, WampError.NETWORK_FAILURE);
+							(InvocationMessage) wampMessage, WampError.NETWORK_FAILURE);
 					this.clientInboundChannel.send(errorMessage);
 				}
 
@@ -318,6 +519,9 @@ public class WampSubProtocolHandler
 
 	@Override
 	public String resolveSessionId(Message<?> message) {
+		if (message instanceof WampMessage) {
+			return ((WampMessage) message).getWebSocketSessionId();
+		}
 		return (String) message.getHeaders()
 				.get(WampMessageHeader.WEBSOCKET_SESSION_ID.name());
 	}
@@ -325,23 +529,60 @@ public class WampSubProtocolHandler
 	@Override
 	public void afterSessionStarted(WebSocketSession session,
 			MessageChannel outputChannel) {
-		// nothing here
+		// bind the codec of the negotiated protocol to the session
+		WampCodec codec = getCodec(session);
+		if (this.outboundQueueLimits.isEnabled()) {
+			session.getAttributes().put(WAMP_OUTBOUND_QUEUE,
+					new OutboundQueue(this.outboundQueueLimits, this.spillStore, codec));
+		}
+		if (this.batchFlushScheduler != null && codec != null) {
+			WriteBatch writeBatch = WriteBatch.create(session, this.outboundBatching,
+					this.batchFlushScheduler, codec);
+			if (writeBatch != null) {
+				session.getAttributes().put(WAMP_WRITE_BATCH, writeBatch);
+			}
+		}
 	}
 
 	@Override
 	public void afterSessionEnded(WebSocketSession session, CloseStatus closeStatus,
 			MessageChannel outputChannel) {
 
+		WriteBatch writeBatch = (WriteBatch) session.getAttributes()
+				.remove(WAMP_WRITE_BATCH);
+		if (writeBatch != null) {
+			writeBatch.close();
+		}
+
+		OutboundQueue outboundQueue = (OutboundQueue) session.getAttributes()
+				.remove(WAMP_OUTBOUND_QUEUE);
+		if (outboundQueue != null) {
+			outboundQueue.close();
+			for (Message<Object> message : outboundQueue.pollAll()) {
+				if (message instanceof InvocationMessage) {
+					this.clientInboundChannel.send(new ErrorMessage(
+							(InvocationMessage) message, WampError.NETWORK_FAILURE));
+				}
+			}
+		}
+
 		Long wampSessionId = (Long) session.getAttributes()
 				.get(WampMessageHeader.WAMP_SESSION_ID.name());
 		if (wampSessionId != null) {
 			this.applicationEventPublisher.publishEvent(new WampDisconnectEvent(
 					wampSessionId, session.getId(), session.getPrincipal()));
-			this.wampSessionIds.remove(wampSessionId);
+			this.sessionIdAllocator.release(wampSessionId);
 			session.getAttributes().remove(WampMessageHeader.WAMP_SESSION_ID.name());
 		}
 	}
 
+	@Override
+	public void destroy() {
+		if (this.batchFlushScheduler != null) {
+			this.batchFlushScheduler.shutdownNow();
+		}
+	}
+
 	@Override
 	public String toString() {
 		return "WampSubProtocolHandler " + getSupportedProtocols();
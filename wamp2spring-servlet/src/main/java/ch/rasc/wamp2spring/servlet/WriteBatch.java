@@ -0,0 +1,251 @@
+/*
+ * Copyright the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ch.rasc.wamp2spring.servlet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.lang.Nullable;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import ch.rasc.wamp2spring.config.OutboundBatching;
+import ch.rasc.wamp2spring.message.EventBatchMessage;
+import ch.rasc.wamp2spring.message.EventMessage;
+import ch.rasc.wamp2spring.message.WampCodec;
+import ch.rasc.wamp2spring.message.WampMessage;
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.Session;
+
+/**
+ * Outbound write batch of one WebSocket session.
+ * <p>
+ * Frames are written with batching allowed on the container endpoint, so the container
+ * collects them in its output buffer instead of flushing every frame. The endpoint is
+ * flushed when the batch reaches the configured number of frames or bytes, when the
+ * linger time of the first frame expires or when a frame that must not be delayed is
+ * written.
+ * <p>
+ * When the session negotiated the {@link EventBatchMessage#FEATURE} extension the
+ * events are not written one by one but held back and written as one
+ * {@link EventBatchMessage} when the batch is flushed.
+ */
+final class WriteBatch {
+
+	private static final Log logger = LogFactory.getLog(WriteBatch.class);
+
+	private final WebSocketSession session;
+
+	private final RemoteEndpoint.Basic remote;
+
+	private final OutboundBatching settings;
+
+	private final ScheduledExecutorService scheduler;
+
+	private final WampCodec codec;
+
+	private final List<EventMessage> packedEvents = new ArrayList<>();
+
+	private boolean packEvents;
+
+	private int pendingMessages;
+
+	private long pendingBytes;
+
+	@Nullable
+	private ScheduledFuture<?> lingerFlush;
+
+	private WriteBatch(WebSocketSession session, RemoteEndpoint.Basic remote,
+			OutboundBatching settings, ScheduledExecutorService scheduler,
+			WampCodec codec) {
+		this.session = session;
+		this.remote = remote;
+		this.settings = settings;
+		this.scheduler = scheduler;
+		this.codec = codec;
+	}
+
+	/**
+	 * Creates a batch for the session. Returns null when the session is not backed by a
+	 * standard WebSocket session that supports batching.
+	 */
+	@Nullable
+	static WriteBatch create(WebSocketSession session, OutboundBatching settings,
+			ScheduledExecutorService scheduler, WampCodec codec) {
+		WebSocketSession lastSession = session;
+		if (session instanceof WebSocketSessionDecorator) {
+			lastSession = ((WebSocketSessionDecorator) session).getLastSession();
+		}
+		if (lastSession instanceof NativeWebSocketSession) {
+			Session nativeSession = ((NativeWebSocketSession) lastSession)
+					.getNativeSession(Session.class);
+			if (nativeSession != null) {
+				try {
+					RemoteEndpoint.Basic remote = nativeSession.getBasicRemote();
+					remote.setBatchingAllowed(true);
+					return new WriteBatch(session, remote, settings, scheduler, codec);
+				}
+				catch (IOException | RuntimeException e) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Batching not supported in session " + session.getId(),
+								e);
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * From now on events are packed into {@link EventBatchMessage}s
+	 */
+	synchronized void enablePacking() {
+		this.packEvents = true;
+	}
+
+	/**
+	 * Writes the frame into the batch.
+	 *
+	 * @param message the frame
+	 * @param batchable false if the frame has to be flushed immediately. Flushing also
+	 * writes out all frames batched before.
+	 */
+	synchronized void send(WebSocketMessage<?> message, boolean batchable)
+			throws IOException {
+		// events held back for packing go out first to keep the order
+		writePackedEvents();
+		this.session.sendMessage(message);
+		if (!batchable) {
+			flush();
+			return;
+		}
+
+		this.pendingMessages++;
+		this.pendingBytes += message.getPayloadLength();
+		flushIfFull();
+	}
+
+	/**
+	 * Holds the event back until the batch is flushed. Returns false when the session
+	 * did not negotiate packing, the caller then writes the event with
+	 * {@link #send(WebSocketMessage, boolean)}.
+	 */
+	synchronized boolean pack(EventMessage eventMessage) throws IOException {
+		if (!this.packEvents) {
+			return false;
+		}
+
+		this.packedEvents.add(eventMessage);
+		this.pendingMessages++;
+		if (eventMessage.isEncodingShared()) {
+			// the estimate reuses the encoding shared by all receivers of the event
+			this.pendingBytes += eventMessage.serialize(this.codec).length;
+		}
+		flushIfFull();
+		return true;
+	}
+
+	private void flushIfFull() throws IOException {
+		if (this.pendingMessages >= this.settings.getMaxMessages()
+				|| this.pendingBytes >= this.settings.getMaxBytes()) {
+			flush();
+		}
+		else if (this.lingerFlush == null) {
+			this.lingerFlush = this.scheduler.schedule(this::flushExpired,
+					this.settings.getLingerMillis(), TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void writePackedEvents() throws IOException {
+		if (this.packedEvents.isEmpty()) {
+			return;
+		}
+
+		WampMessage message;
+		if (this.packedEvents.size() == 1) {
+			message = this.packedEvents.get(0);
+		}
+		else {
+			message = new EventBatchMessage(new ArrayList<>(this.packedEvents));
+		}
+		this.packedEvents.clear();
+
+		byte[] bytes = message.serialize(this.codec);
+		if (this.codec.isBinary()) {
+			this.session.sendMessage(new BinaryMessage(bytes));
+		}
+		else {
+			this.session.sendMessage(new TextMessage(bytes));
+		}
+	}
+
+	private void flush() throws IOException {
+		cancelLingerFlush();
+		writePackedEvents();
+		this.pendingMessages = 0;
+		this.pendingBytes = 0;
+		this.remote.flushBatch();
+	}
+
+	private synchronized void flushExpired() {
+		this.lingerFlush = null;
+		if (this.pendingMessages == 0) {
+			return;
+		}
+		try {
+			flush();
+		}
+		catch (IOException | RuntimeException ex) {
+			// Could be part of normal workflow (e.g. browser tab closed)
+			if (logger.isDebugEnabled()) {
+				logger.debug("Failed to flush WebSocket messages to client in session "
+						+ this.session.getId(), ex);
+			}
+			try {
+				this.session.close(CloseStatus.PROTOCOL_ERROR);
+			}
+			catch (IOException e) {
+				// Ignore
+			}
+		}
+	}
+
+	/**
+	 * Stops the linger timer. Called when the session ended.
+	 */
+	synchronized void close() {
+		cancelLingerFlush();
+	}
+
+	private void cancelLingerFlush() {
+		if (this.lingerFlush != null) {
+			this.lingerFlush.cancel(false);
+			this.lingerFlush = null;
+		}
+	}
+
+}
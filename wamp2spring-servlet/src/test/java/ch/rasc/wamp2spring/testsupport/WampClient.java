@@ -95,6 +95,12 @@ public class WampClient implements AutoCloseable {
 		roles.add(new WampRole("publisher"));
 		roles.add(new WampRole("subscriber"));
 		roles.add(new WampRole("caller"));
+		connect(wampEndpointUrl, roles);
+	}
+
+	public void connect(URI wampEndpointUrl, List<WampRole> roles)
+			throws InterruptedException, ExecutionException, IOException,
+			TimeoutException {
 		HelloMessage helloMessage = new HelloMessage("realm", roles);
 
 		WebSocketClient webSocketClient = new StandardWebSocketClient();